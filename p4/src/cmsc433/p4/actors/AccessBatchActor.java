@@ -0,0 +1,202 @@
+package cmsc433.p4.actors;
+
+import java.util.ArrayList;
+
+import cmsc433.p4.enums.AccessRequestDenialReason;
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.enums.AccessType;
+import cmsc433.p4.messages.AccessReleaseMsg;
+import cmsc433.p4.messages.AccessRequestBatchDeniedMsg;
+import cmsc433.p4.messages.AccessRequestBatchGrantedMsg;
+import cmsc433.p4.messages.AccessRequestBatchMsg;
+import cmsc433.p4.messages.AccessRequestDeniedMsg;
+import cmsc433.p4.messages.AccessRequestGrantedMsg;
+import cmsc433.p4.messages.AccessRequestMsg;
+import cmsc433.p4.util.AccessRelease;
+import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.ResourceLock;
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+
+/**
+ * Short-lived actor that acquires one batch of access requests for a user.
+ *
+ * Requests are sent to the user's resource manager on the user's behalf: the user
+ * becomes the holder while responses come back here.  Request i of the batch goes by
+ * the correlation ID i + 1 after the batch's own, so each grant can be given back by
+ * itself, leaving alone any other grant the user holds on the same resource.
+ *
+ * Every request is first tried at once without waiting, so a batch whose resources are
+ * free is acquired in a single round trip.  If some are busy, the grants from the start
+ * of the batch's global order up to the first busy resource are kept, any others are
+ * given back, and the rest are requested one at a time in global order.  A batch only
+ * ever waits while holding resources earlier in that order, so two batches can never
+ * wait for each other.  A batch without a correlation ID is requested one at a time
+ * from the start.
+ *
+ * When every request is granted the user gets a single granted message; if one is
+ * denied, everything acquired so far is released and the user gets a single denied
+ * message.  Either way the actor then stops.
+ *
+ */
+public class AccessBatchActor extends UntypedActor {
+
+	private final AccessRequestBatchMsg batchMsg;	// Batch being acquired
+	private final ActorRef manager;					// Manager to route requests through
+	private final boolean[] held;					// Whether each request's grant is held
+	private int trying = 0;							// Tries still to be answered
+	private AccessRequestDeniedMsg failure = null;	// Earliest try denied for good
+	private int next = 0;							// Index of request awaiting a response
+
+	/**
+	 * Props structure-generator for this class.
+	 *
+	 * @param batchMsg	Batch to acquire
+	 * @param manager	Resource manager of the user making the request
+	 * @return			Props structure
+	 */
+	static Props props (AccessRequestBatchMsg batchMsg, ActorRef manager) {
+		return Props.create(AccessBatchActor.class, batchMsg, manager);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param batchMsg	Batch to acquire
+	 * @param manager	Resource manager of the user making the request
+	 */
+	private AccessBatchActor(AccessRequestBatchMsg batchMsg, ActorRef manager) {
+		super();
+		this.batchMsg = batchMsg;
+		this.manager = manager;
+		this.held = new boolean[batchMsg.getBatch().getRequests().size()];
+	}
+
+	@Override
+	public void preStart() {
+		if (batchMsg.getRequestId() == 0 || held.length < 2) {
+			requestNext();
+		} else {
+			tryAll();
+		}
+	}
+
+	//Correlation ID of request i of the batch, or 0 if the batch has none.
+	private int idOf(int i) {
+		return batchMsg.getRequestId() == 0 ? 0 : batchMsg.getRequestId() + 1 + i;
+	}
+
+	//Index in the batch of the request a response is for.
+	private int indexOf(int requestId) {
+		return batchMsg.getRequestId() == 0 ? next : requestId - batchMsg.getRequestId() - 1;
+	}
+
+	//Try every request at once, without waiting for any resource.
+	private void tryAll() {
+		ArrayList<AccessRequest> requests = batchMsg.getBatch().getRequests();
+		for (int i = 0; i < requests.size(); i++) {
+			AccessRequest request = requests.get(i);
+			AccessRequest attempt = new AccessRequest(request.getResourceName(), nonBlocking(request.getType()), request.getLeaseMs());
+			manager.tell(new AccessRequestMsg(attempt, batchMsg.getReplyTo(), batchMsg.getUserId(), getSelf(), idOf(i)), getSelf());
+		}
+		trying = requests.size();
+	}
+
+	private static AccessRequestType nonBlocking(AccessRequestType type) {
+		if (type == AccessRequestType.CONCURRENT_READ_BLOCKING) {
+			return AccessRequestType.CONCURRENT_READ_NONBLOCKING;
+		} else if (type == AccessRequestType.EXCLUSIVE_WRITE_BLOCKING) {
+			return AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING;
+		}
+		return type;
+	}
+
+	//A try was answered.  Once all are, keep the grants at the start of the order, give
+	//back the others, and go on in order from the first request not granted.
+	private void tried() {
+		trying -= 1;
+		if (trying > 0) {
+			return;
+		}
+		if (failure != null) {
+			rollBack(failure);
+			return;
+		}
+		while (next < held.length && held[next]) {
+			next += 1;
+		}
+		for (int i = next + 1; i < held.length; i++) {
+			if (held[i]) {
+				release(i);
+			}
+		}
+		requestNext();
+	}
+
+	//Ask for the next request in the batch, or report success if there are none left.
+	private void requestNext() {
+		ArrayList<AccessRequest> requests = batchMsg.getBatch().getRequests();
+		if (next < requests.size()) {
+			manager.tell(new AccessRequestMsg(requests.get(next), batchMsg.getReplyTo(), batchMsg.getUserId(), getSelf(), idOf(next)), getSelf());
+		} else {
+			batchMsg.getReplyTo().tell(new AccessRequestBatchGrantedMsg(batchMsg.getBatch(), batchMsg.getRequestId()), getSelf());
+			getContext().stop(getSelf());
+		}
+	}
+
+	//Give back the grant made for request i.
+	private void release(int i) {
+		AccessRequest granted = batchMsg.getBatch().getRequests().get(i);
+		AccessType type = ResourceLock.accessTypeOf(granted.getType());
+		AccessRelease release = new AccessRelease(granted.getResourceName(), type);
+		manager.tell(new AccessReleaseMsg(release, batchMsg.getReplyTo(), batchMsg.getUserId(), idOf(i)), getSelf());
+		held[i] = false;
+	}
+
+	//Give back everything acquired so far, then report the denial.
+	private void rollBack(AccessRequestDeniedMsg denied) {
+		for (int i = held.length - 1; i >= 0; i--) {
+			if (held[i]) {
+				release(i);
+			}
+		}
+
+		AccessRequest request = batchMsg.getBatch().getRequests().get(indexOf(denied.getRequestId()));
+		batchMsg.getReplyTo().tell(new AccessRequestBatchDeniedMsg(batchMsg.getBatch(), request, denied.getReason(), batchMsg.getRequestId()), getSelf());
+		getContext().stop(getSelf());
+	}
+
+	@Override
+	public void onReceive(Object msg) throws Exception {
+		if (msg instanceof AccessRequestGrantedMsg) {
+			held[indexOf(((AccessRequestGrantedMsg)msg).getRequestId())] = true;
+			if (trying > 0) {
+				tried();
+			} else {
+				next += 1;
+				requestNext();
+			}
+		}
+		else if (msg instanceof AccessRequestDeniedMsg) {
+			AccessRequestDeniedMsg denied = (AccessRequestDeniedMsg)msg;
+			if (trying > 0) {
+				//A busy resource is asked for again in order, if the request may wait for it.
+				int i = indexOf(denied.getRequestId());
+				AccessRequestType type = batchMsg.getBatch().getRequests().get(i).getType();
+				boolean waits = (type != nonBlocking(type));
+				if ((denied.getReason() != AccessRequestDenialReason.RESOURCE_BUSY || !waits)
+						&& (failure == null || i < indexOf(failure.getRequestId()))) {
+					failure = denied;
+				}
+				tried();
+			} else {
+				rollBack(denied);
+			}
+		}
+		else {
+			unhandled(msg);
+		}
+	}
+
+}
@@ -1,11 +1,23 @@
 package cmsc433.p4.actors;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import cmsc433.p4.messages.LogMsg;
 import cmsc433.p4.messages.LogResultMsg;
+import cmsc433.p4.messages.LogShardRegisterMsg;
+import cmsc433.p4.messages.LogShardRequestMsg;
+import cmsc433.p4.messages.LogShardResponseMsg;
+import cmsc433.p4.enums.LogFormat;
+import cmsc433.p4.util.BinaryLogWriter;
+import cmsc433.p4.util.LogSink;
+import cmsc433.p4.util.LogWriter;
+import cmsc433.p4.util.ShardedLog;
+import cmsc433.p4.util.SimulationConfig;
 import akka.actor.ActorRef;
-import akka.actor.ActorSystem;
+import akka.actor.ActorRefFactory;
 import akka.actor.Props;
 import akka.actor.UntypedActor;
 
@@ -15,51 +27,231 @@ import akka.actor.UntypedActor;
  */
 public class LoggerActor extends UntypedActor {
 	
-	// Event log
+	// Loggers started in this JVM, so that log file names are unique even within a millisecond
+	private static final AtomicInteger loggersStarted = new AtomicInteger();
+	
+	// Event log, when kept in memory
 	private ArrayList<Object> log = new ArrayList<Object>();
 	
+	// Settings; a log directory means events are streamed to disk instead
+	private SimulationConfig config;
+	
+	// Whether each event type is kept, by ordinal.  Users report their start and
+	// termination even when those are not kept, so that we know when to finish.
+	private boolean[] logged;
+	
+	// Sink for streamed events, or null if the log is kept in memory
+	private LogSink writer = null;
+	
 	// Users who have started but not terminated.
 	private ArrayList<ActorRef> activeUsers = new ArrayList<ActorRef>();
 	
+	// Users still to terminate, or negative if the number of users is not known.
+	private int remainingUsers;
+	
 	// Destination for eventual log.
 	
 	private ActorRef simulationManager;
+	
+	// Shards only: the main logger, which tracks users and collects every shard's log,
+	// and whether our part has been handed to it.  Events logged after that, such as
+	// releases still being handled when the last user terminated, are passed on to the
+	// main logger to keep.
+	private ActorRef mainLogger = null;
+	private int shardId = 0;
+	private boolean handedOver = false;
+	
+	// Main logger only: shards keeping part of the log with their IDs, how many are to
+	// register, and the parts collected so far once every user has terminated, by shard
+	// ID, our own being part 0.  A shard may register only after that, if it has no users
+	// to report, so parts are collected until every expected shard's is in.  Events a
+	// shard passes on after handing over its part are added to that part.
+	private LinkedHashMap<ActorRef, Integer> shards = new LinkedHashMap<ActorRef, Integer>();
+	private int expectedShards = 0;
+	private ArrayList<ArrayList<Object>> parts = null;
+	private int partsIn = 0;
 
 	/**
 	 * Props structure-generator for this class.
 	 * @return  Props structure
 	 */
-	static Props props (ActorRef simulationManager) {
-		return Props.create(LoggerActor.class, simulationManager);
+	static Props props (ActorRef simulationManager, int users, int shards, SimulationConfig config) {
+		return Props.create(LoggerActor.class, simulationManager, users, shards, config);
+	}
+	
+	/**
+	 * Props structure-generator for logger shards.
+	 * @return  Props structure
+	 */
+	static Props shardProps (ActorRef mainLogger, int shard, SimulationConfig config) {
+		return Props.create(LoggerActor.class, mainLogger, shard, config);
 	}
 	
 	/**
 	 * Factory method for creating resource managers
 	 * @param simulationManager	Actor to whom to send log when simulation is done
-	 * @param system			Actor system in which manager will execute
+	 * @param context			Actor system, or context of the actor whose child the logger is
+	 * @return					Reference to new manager
+	 */
+	public static ActorRef makeLogger (ActorRef simulationManager, ActorRefFactory context) {
+		return makeLogger(simulationManager, context, -1);
+	}
+	
+	/**
+	 * Factory method for creating loggers that wait for a known number of users
+	 * @param simulationManager	Actor to whom to send log when simulation is done
+	 * @param context			Actor system, or context of the actor whose child the logger is
+	 * @param users				Number of users in the simulation, or -1 if not known
 	 * @return					Reference to new manager
 	 */
-	public static ActorRef makeLogger (ActorRef simulationManager, ActorSystem system) {
-		ActorRef newLogger = system.actorOf(props(simulationManager));
+	public static ActorRef makeLogger (ActorRef simulationManager, ActorRefFactory context, int users) {
+		return makeLogger(simulationManager, context, users, new SimulationConfig());
+	}
+	
+	/**
+	 * Factory method for creating loggers that wait for a known number of users
+	 * @param simulationManager	Actor to whom to send log when simulation is done
+	 * @param context			Actor system, or context of the actor whose child the logger is
+	 * @param users				Number of users in the simulation, or -1 if not known
+	 * @param config			System-wide settings; says whether to stream the log to disk
+	 * @return					Reference to new manager
+	 */
+	public static ActorRef makeLogger (ActorRef simulationManager, ActorRefFactory context, int users, SimulationConfig config) {
+		return makeLogger(simulationManager, context, users, 0, config);
+	}
+	
+	/**
+	 * Factory method for creating loggers that wait for a known number of users, and
+	 * collect the log from a known number of shards made with makeLoggerShard
+	 * @param simulationManager	Actor to whom to send log when simulation is done
+	 * @param context			Actor system, or context of the actor whose child the logger is
+	 * @param users				Number of users in the simulation, or -1 if not known
+	 * @param shards			Number of shards that will report to the logger
+	 * @param config			System-wide settings; says whether to stream the log to disk
+	 * @return					Reference to new manager
+	 */
+	public static ActorRef makeLogger (ActorRef simulationManager, ActorRefFactory context, int users, int shards,
+			SimulationConfig config) {
+		ActorRef newLogger = context.actorOf(config.getDispatchers().forLogger(props(simulationManager, users, shards, config)));
 		return newLogger;
 	}
 	
+	/**
+	 * Factory method for creating logger shards.  A shard keeps in memory the events
+	 * sent to it, and hands them to the main logger once every user has terminated;
+	 * the main logger returns all parts together, to be merged by sequence number.
+	 * @param mainLogger		Logger made by makeLogger that the shard reports to
+	 * @param context			Actor system, or context of the actor whose child the shard is
+	 * @param shard				ID of the shard, from 1 and distinct among the main logger's
+	 * 							shards; breaks ties between parts when they are merged
+	 * @param config			System-wide settings; says which events to keep
+	 * @return					Reference to new shard
+	 */
+	public static ActorRef makeLoggerShard (ActorRef mainLogger, ActorRefFactory context, int shard, SimulationConfig config) {
+		return context.actorOf(config.getDispatchers().forLogger(shardProps(mainLogger, shard, config)));
+	}
+	
 	/**
 	 * Constructor
 	 * 
 	 * @param simulationManager	Actor to send result to when simulation is finished.
+	 * @param users				Number of users in the simulation, or -1 if not known
+	 * @param shards			Number of shards that will report to the logger
+	 * @param config			System-wide settings
 	 */
-	private LoggerActor(ActorRef simulationManager) {
+	private LoggerActor(ActorRef simulationManager, int users, int shards, SimulationConfig config) {
 		super();
 		this.simulationManager = simulationManager;
+		this.remainingUsers = users;
+		this.expectedShards = shards;
+		this.config = config;
+		this.logged = config.getLoggedEvents();
+	}
+	
+	/**
+	 * Constructor for shards
+	 * 
+	 * @param mainLogger		Logger tracking users and collecting the shard's events
+	 * @param shard				ID of the shard, from 1
+	 * @param config			System-wide settings
+	 */
+	private LoggerActor(ActorRef mainLogger, int shard, SimulationConfig config) {
+		this(null, -1, 0, config);
+		this.mainLogger = mainLogger;
+		this.shardId = shard;
+	}
+	
+	@Override
+	public void preStart() throws Exception {
+		if (mainLogger != null) {
+			mainLogger.tell(new LogShardRegisterMsg(shardId), getSelf());
+		} else if (config.getLogDirectory() != null) {
+			if (expectedShards > 0) {
+				throw new Exception("Logger shards cannot report to a logger streaming to disk");
+			}
+			File directory = new File(config.getLogDirectory());
+			String prefix = "events-" + System.currentTimeMillis() + "-" + loggersStarted.incrementAndGet();
+			if (config.getLogFormat() == LogFormat.BINARY) {
+				writer = new BinaryLogWriter(directory, prefix, config.getLogFileEvents());
+			} else {
+				writer = new LogWriter(directory, prefix, config.getLogBufferSize(), config.getLogFileEvents());
+			}
+		}
+	}
+	
+	@Override
+	public void postStop() throws Exception {
+		if (writer != null) {
+			writer.close();
+			writer = null;
+		}
+	}
+
+	// True once no user is running and, if we know how many users there are, all of
+	// them have terminated.  Users start in no particular order, so without the count
+	// the first user to finish before another starts would end the simulation early.
+	private boolean allUsersDone() {
+		return activeUsers.isEmpty() && remainingUsers <= 0;
+	}
+
+	// True once the shard with the given ID has handed us its part.
+	private boolean partIn(int shard) {
+		return parts != null && shard < parts.size() && parts.get(shard) != null;
 	}
 
 	@Override
 	public void onReceive(Object msg) throws Exception {
 		// TODO Auto-generated method stub
 		if (msg instanceof LogMsg) {  // Message is event to log.
-			log.add(msg);
 			LogMsg lMsg = (LogMsg)msg;
+			
+			// A shard keeps its own events; the main logger only sees user starts and
+			// terminations from it, to know when the simulation is over, and whatever it
+			// logs once it has handed over its part.
+			if (handedOver) {
+				if (logged[lMsg.getType().ordinal()]) {
+					mainLogger.tell(msg, getSelf());
+				}
+				return;
+			}
+			Integer shard = shards.get(getSender());
+			if (shard != null && partIn(shard)) {
+				parts.get(shard).add(msg);
+				return;
+			}
+			if ((parts != null || shard == null) && logged[lMsg.getType().ordinal()]) {
+				if (writer != null) {
+					writer.append(lMsg);
+				} else {
+					log.add(msg);
+				}
+			}
+			if (mainLogger != null) {
+				if (lMsg.getType() == LogMsg.EventType.USER_START || lMsg.getType() == LogMsg.EventType.USER_TERMINATE) {
+					mainLogger.tell(msg, getSelf());
+				}
+				return;
+			}
 
 			// Check if event corresponds to user start; if so, add to list of users
 			if (lMsg.getType() == LogMsg.EventType.USER_START) {
@@ -70,11 +262,56 @@ public class LoggerActor extends UntypedActor {
 			// of users.  If list becomes empty, send log out
 			else if (lMsg.getType() == LogMsg.EventType.USER_TERMINATE) {
 				activeUsers.remove(lMsg.getUser());
-				if (activeUsers.isEmpty()) {
-					simulationManager.tell(new LogResultMsg(log), getSelf());
+				remainingUsers--;
+				if (allUsersDone()) {
+					if (writer != null) {
+						//Later events still go to the files; the writer is closed when we stop.
+						writer.flush();
+						simulationManager.tell(new LogResultMsg(writer.getLogFiles()), getSelf());
+					} else if (expectedShards == 0 && shards.isEmpty()) {
+						simulationManager.tell(new LogResultMsg(log), getSelf());
+					} else {
+						parts = new ArrayList<ArrayList<Object>>();
+						parts.add(log);
+						partsIn = 1;
+						for (ActorRef shardLogger : shards.keySet()) {
+							shardLogger.tell(new LogShardRequestMsg(), getSelf());
+						}
+					}
 				}
 			}
 		}
+		else if (msg instanceof LogShardRegisterMsg) {
+			if (writer != null) {
+				throw new Exception("Logger shards cannot report to a logger streaming to disk");
+			}
+			int shard = ((LogShardRegisterMsg)msg).getShard();
+			if (shard < 1 || shards.containsValue(shard)) {
+				throw new Exception("Logger shard ID " + shard + " is not from 1 or is taken");
+			}
+			shards.put(getSender(), shard);
+			//Collection has already begun without this shard.
+			if (parts != null) {
+				getSender().tell(new LogShardRequestMsg(), getSelf());
+			}
+		}
+		else if (msg instanceof LogShardRequestMsg) {
+			//A copy, so that nobody reads our list while we write it; later events go to the
+			//main logger, whose own part is read only once the actor system has shut down.
+			getSender().tell(new LogShardResponseMsg(new ArrayList<Object>(log)), getSelf());
+			handedOver = true;
+		}
+		else if (msg instanceof LogShardResponseMsg) {
+			int shard = shards.get(getSender());
+			while (parts.size() <= shard) {
+				parts.add(null);
+			}
+			parts.set(shard, ((LogShardResponseMsg)msg).getLog());
+			partsIn += 1;
+			if (partsIn == Math.max(expectedShards, shards.size()) + 1) {
+				simulationManager.tell(new LogResultMsg(new ShardedLog(parts)), getSelf());
+			}
+		}
 		else {
 			throw new Exception ("Invalid message sent to logger");
 		}
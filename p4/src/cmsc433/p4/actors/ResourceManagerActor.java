@@ -1,43 +1,25 @@
 package cmsc433.p4.actors;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.HashSet;
-import java.util.Iterator;
 
 import cmsc433.p4.enums.*;
 import cmsc433.p4.messages.*;
 import cmsc433.p4.util.*;
 import akka.actor.ActorRef;
-import akka.actor.ActorSystem;
+import akka.actor.ActorRefFactory;
+import akka.actor.Cancellable;
 import akka.actor.Props;
 import akka.actor.UntypedActor;
 
 public class ResourceManagerActor extends UntypedActor {
 	
-	//Contains info on user and access level associated with given resource.
-	private class UserAccess {
-			
-		private ActorRef user;
-		private AccessType access;
-			
-		private UserAccess(ActorRef user, AccessType access) {
-			this.user = user;
-			this.access = access;
-		}
-			
-		private ActorRef getUser() {
-			return user;
-		}
-			
-		private AccessType getAccess() {
-			return access;
-		}
-		
-	}
-	
 	private class DiscoverClass {
 		private Object requestMsg;
 		private int count = 0;
@@ -64,40 +46,119 @@ public class ResourceManagerActor extends UntypedActor {
 		
 	}
 	
+	//How often wait-for edges are reported and, at the coordinator, searched for cycles.
+	private static final long DEADLOCK_CHECK_INTERVAL_MS = 100;
+	
 	private ActorRef logger;					// Actor to send logging messages to
-	private Map<String, ActorRef> knownRemote = new HashMap<String, ActorRef>(); //Remote resource + manager.
-	private Map<String, Resource> localResource = new HashMap<String, Resource>(); //Resources local to manager.
-	private HashSet<ActorRef> allManagers = new HashSet<ActorRef>(); //All managers in ActorSystem
+	private boolean[] logged;					// Whether each event type is logged, by ordinal
+	private ActorRef identity;					// Manager named in log entries: ourselves, or our parent if we are a partition
+	private FairnessPolicy policy;				// Default fairness policy for local resources
+	private DiscoveryMode discoveryMode;		// How remote resources are found
+	private boolean timed;						// Whether locks keep latency histograms
+	private DispatcherProfile dispatchers;		// Dispatchers of the actors we create
+	private Interner names = new Interner(); //Dense IDs, ours alone, of the names of resources we know, local or remote.
+	private IntObjectMap<ActorRef> knownRemote = new IntObjectMap<ActorRef>(); //Remote resource ID + manager.
+	private IntObjectMap<Resource> localResource = new IntObjectMap<Resource>(); //Resources local to manager, by ID.
+	private LinkedHashSet<ActorRef> allManagers = new LinkedHashSet<ActorRef>(); //All managers in ActorSystem, in a fixed order
 	private HashSet<ActorRef> localUsers = new HashSet<ActorRef>(); //Users this manager will deal with.
 	
-	//Queue of requests that are being blocked.
-	private List<AccessRequestMsg> accessQueue = new LinkedList<AccessRequestMsg>();	
+	//Map of resource ID and its lock state (readers, reentrant holds, writer, blocked requests), how we implement locking.
+	private IntObjectMap<ResourceLock> resourceAccess = new IntObjectMap<ResourceLock>(); 
+	
+	//Map of resource IDs marked for disable and actor that did it.
+	private IntObjectMap<List<ManagementRequestMsg>> pendingDisable = new IntObjectMap<List<ManagementRequestMsg>>();
+	
+	//Last lease token handed out; tokens tell current leases from released or renewed ones.
+	private long leaseCounter = 0;
+	
+	//Next deadlock check, set only once our wait-for edges may have changed or, at the
+	//coordinator, a report has come in or a search left suspects to confirm; whether our
+	//last report had edges; and the manager that collects every manager's wait-for edges.
+	private Cancellable deadlockCheck = null;
+	private boolean edgesReported = false;
+	private ActorRef deadlockCoordinator = null;
+	
+	//Latest report from each of our partitions that came in before we knew the coordinator.
+	//Reports are only sent when edges change, so they are kept to be passed on then.
+	private Map<ActorRef, WaitForGraphReportMsg> heldReports = new LinkedHashMap<ActorRef, WaitForGraphReportMsg>();
+	
+	//Coordinator only: latest wait-for edges from each reporter, and victims picked last
+	//round.  A victim is only denied if the same cycle shows up in two rounds in a row, as
+	//reports are not taken at the same instant and may show a cycle that never existed.
+	private Map<ActorRef, ArrayList<WaitForEdge>> waitForReports = new LinkedHashMap<ActorRef, ArrayList<WaitForEdge>>();
+	private HashSet<String> deadlockSuspects = new HashSet<String>();
+	
+	//Map of unknown resource names we are trying to find.  A name only gets an ID once
+	//its owner is found, so names that exist nowhere take none.
+	private HashMap<String, List<DiscoverClass>> discoveryMap = new HashMap<String, List<DiscoverClass>>();
+	
+	//Names recently found to exist nowhere; requests for them are denied without asking.
+	private NotFoundCache notFound;
+	
+	//Sharded mode only: children owning disjoint slices of the local resources, and their
+	//locks and wait queues.  The parent keeps localResource to answer discovery, but the
+	//Resource objects belong to the children.
+	private ActorRef[] partitions = null;
 	
-	//Map of resource and list of users and access they have on that resource, how we implement locking.
-	private Map<String, List<UserAccess>> resourceAccess = new HashMap<String, List<UserAccess>>(); 
+	//Directory mode only: ring of all managers, and this manager's shard of the directory
+	//(owners of the resources whose names hash to us).
+	private HashRing directoryRing = null;
+	private Map<String, ActorRef> directory = new HashMap<String, ActorRef>();
 	
-	//Map of resources marked for disable and actor that did it.
-	private Map<String, List<ManagementRequestMsg>> pendingDisable = new HashMap<String, List<ManagementRequestMsg>>();
+	//Sharded mode only: actors waiting for lock metrics, the partitions' metrics
+	//gathered so far, and how many partitions have yet to answer.
+	private ArrayList<ActorRef> metricsRequesters = new ArrayList<ActorRef>();
+	private HashMap<String, LockMetrics> metricsCollected = null;
+	private int metricsAwaited = 0;
 	
-	//Map of unknown resources we are trying to find.
-	private Map<String, List<DiscoverClass>> discoveryMap = new HashMap<String, List<DiscoverClass>>();
+	/**
+	 * Props structure-generator for this class.
+	 * @return  Props structure
+	 */
+	static Props props (ActorRef logger, FairnessPolicy policy, SimulationConfig config) {
+		return props(logger, policy, config, false);
+	}
 	
 	/**
 	 * Props structure-generator for this class.
+	 * @param partition		Whether the manager is a child serving part of its parent's resources
 	 * @return  Props structure
 	 */
-	static Props props (ActorRef logger) {
-		return Props.create(ResourceManagerActor.class, logger);
+	static Props props (ActorRef logger, FairnessPolicy policy, SimulationConfig config, boolean partition) {
+		return Props.create(ResourceManagerActor.class, logger, policy, config, partition);
+	}
+	
+	/**
+	 * Factory method for creating resource managers
+	 * @param logger			Actor to send logging messages to
+	 * @param context			Actor system, or context of the actor whose child the manager is
+	 * @return					Reference to new manager
+	 */
+	public static ActorRef makeResourceManager (ActorRef logger, ActorRefFactory context) {
+		return makeResourceManager(logger, context, FairnessPolicy.READER_PREFERRING);
+	}
+	
+	/**
+	 * Factory method for creating resource managers
+	 * @param logger			Actor to send logging messages to
+	 * @param context			Actor system, or context of the actor whose child the manager is
+	 * @param policy			Fairness policy for local resources that do not set their own
+	 * @return					Reference to new manager
+	 */
+	public static ActorRef makeResourceManager (ActorRef logger, ActorRefFactory context, FairnessPolicy policy) {
+		return makeResourceManager(logger, context, policy, new SimulationConfig());
 	}
 	
 	/**
 	 * Factory method for creating resource managers
 	 * @param logger			Actor to send logging messages to
-	 * @param system			Actor system in which manager will execute
+	 * @param context			Actor system, or context of the actor whose child the manager is
+	 * @param policy			Fairness policy for local resources that do not set their own
+	 * @param config			System-wide settings of the simulation
 	 * @return					Reference to new manager
 	 */
-	public static ActorRef makeResourceManager (ActorRef logger, ActorSystem system) {
-		ActorRef newManager = system.actorOf(props(logger));
+	public static ActorRef makeResourceManager (ActorRef logger, ActorRefFactory context, FairnessPolicy policy, SimulationConfig config) {
+		ActorRef newManager = context.actorOf(config.getDispatchers().forManager(props(logger, policy, config)));
 		return newManager;
 	}
 	
@@ -109,14 +170,37 @@ public class ResourceManagerActor extends UntypedActor {
 		logger.tell(msg, getSelf());
 	}
 	
+	//Whether events of this type are logged.  Checked before a LogMsg is built, so a
+	//type that is filtered out costs neither an allocation nor a message.
+	private boolean logs (LogMsg.EventType type) {
+		return logged[type.ordinal()];
+	}
+	
 	/**
 	 * Constructor
 	 * 
 	 * @param logger			Actor to send logging messages to
+	 * @param policy			Fairness policy for local resources that do not set their own
+	 * @param config			System-wide settings of the simulation
+	 * @param partition			Whether this is a child serving part of its parent's resources
 	 */
-	private ResourceManagerActor(ActorRef logger) {
+	private ResourceManagerActor(ActorRef logger, FairnessPolicy policy, SimulationConfig config, boolean partition) {
 		super();
 		this.logger = logger;
+		this.logged = config.getLoggedEvents();
+		this.policy = policy;
+		this.discoveryMode = config.getDiscoveryMode();
+		this.timed = config.isLockMetrics();
+		this.dispatchers = config.getDispatchers();
+		this.notFound = new NotFoundCache(config.getNotFoundCacheTtlMs(), config.getNotFoundCacheSize());
+		this.identity = partition ? getContext().parent() : getSelf();
+		
+		if (!partition && config.getShards() > 1) {
+			partitions = new ActorRef[config.getShards()];
+			for (int i = 0; i < partitions.length; i++) {
+				partitions[i] = getContext().actorOf(config.getDispatchers().forManager(props(logger, policy, config, true)));
+			}
+		}
 	}
 	
 	//Carries out configuration requests to this actor.
@@ -132,6 +216,37 @@ public class ResourceManagerActor extends UntypedActor {
 				}
 			}
 			
+			//New managers may own names we gave up on.
+			notFound.clear();
+			
+			//Every manager picks the same coordinator: the least manager reference.
+			deadlockCoordinator = getSelf();
+			for (ActorRef actor : allManagers) {
+				if (actor.compareTo(deadlockCoordinator) < 0) {
+					deadlockCoordinator = actor;
+				}
+			}
+			if (hasWaiters()) {
+				armDeadlockCheck();
+			}
+			for (WaitForGraphReportMsg report : heldReports.values()) {
+				waitForReportHelper(report);
+			}
+			heldReports.clear();
+			
+			if (discoveryMode == DiscoveryMode.DIRECTORY) {
+				ArrayList<ActorRef> members = new ArrayList<ActorRef>(allManagers);
+				members.add(getSelf());
+				directoryRing = new HashRing(members);
+				ArrayList<String> names = new ArrayList<String>();
+				for (int i = 0; i < localResource.capacity(); i++) {
+					if (localResource.valueAt(i) != null) {
+						names.add(localResource.valueAt(i).getName());
+					}
+				}
+				registerInDirectory(names);
+			}
+			
 			sender.tell(new AddRemoteManagersResponseMsg(msg), getSelf());
 			
 		} else if (o instanceof AddInitialLocalResourcesRequestMsg) {
@@ -140,11 +255,46 @@ public class ResourceManagerActor extends UntypedActor {
 			ArrayList<Resource> list = new ArrayList<Resource>(msg.getLocalResources());
 			
 			for (Resource resource : list) {
-				resource.enable();
 				String name = resource.getName();
-				localResource.put(name, resource);
-				logger.tell(LogMsg.makeLocalResourceCreatedLogMsg(getSelf(), name), getSelf());
-				logger.tell(LogMsg.makeResourceStatusChangedLogMsg(getSelf(), name, resource.getStatus()), getSelf());
+				localResource.put(names.idOf(name), resource);
+				if (partitions == null) {
+					resource.enable();
+					if (logs(LogMsg.EventType.LOCAL_RESOURCE_CREATED)) {
+						logger.tell(LogMsg.makeLocalResourceCreatedLogMsg(identity, name), getSelf());
+					}
+					if (logs(LogMsg.EventType.RESOURCE_STATUS_CHANGED)) {
+						logger.tell(LogMsg.makeResourceStatusChangedLogMsg(identity, name, resource.getStatus()), getSelf());
+					}
+				}
+			}
+			
+			//Hand each partition its slice; it enables and logs them.
+			if (partitions != null) {
+				ArrayList<ArrayList<Resource>> slices = new ArrayList<ArrayList<Resource>>();
+				for (int i = 0; i < partitions.length; i++) {
+					slices.add(new ArrayList<Resource>());
+				}
+				for (Resource resource : list) {
+					slices.get(partitionIndex(names.find(resource.getName()))).add(resource);
+				}
+				for (int i = 0; i < partitions.length; i++) {
+					if (!slices.get(i).isEmpty()) {
+						partitions[i].tell(new AddInitialLocalResourcesRequestMsg(slices.get(i)), getSelf());
+					}
+				}
+			}
+			
+			//Resources added after the managers are introduced must be registered, and other
+			//managers may have cached their names as not found.
+			ArrayList<String> names = new ArrayList<String>();
+			for (Resource resource : list) {
+				names.add(resource.getName());
+			}
+			if (directoryRing != null) {
+				registerInDirectory(names);
+			}
+			for (ActorRef manager : allManagers) {
+				manager.tell(new ResourceCreatedMsg(names), getSelf());
 			}
 			
 			AddInitialLocalResourcesResponseMsg response = new AddInitialLocalResourcesResponseMsg(msg);
@@ -157,126 +307,90 @@ public class ResourceManagerActor extends UntypedActor {
 			
 			localUsers.addAll(list);
 			
+			//Users go by dense IDs in their requests, handed out here.
+			int userId = msg.getFirstUserId();
+			for (ActorRef user : list) {
+				user.tell(new UserIdMsg(userId), getSelf());
+				userId += 1;
+			}
+			
 			AddLocalUsersResponseMsg response = new AddLocalUsersResponseMsg(msg);
 			sender.tell(response, getSelf());
 		}
 	}
 	
 	//Handle all access requests.
-	private void accessRequestHelper(AccessRequestMsg msg, boolean isQueued) {
+	private void accessRequestHelper(AccessRequestMsg msg) {
 		AccessRequest access = msg.getAccessRequest();
+		ActorRef user = msg.getUser();
 		ActorRef sender = msg.getReplyTo();
+		int resourceId = names.find(access.getResourceName());
 		
-		if (!isQueued) {
-			logger.tell(LogMsg.makeAccessRequestReceivedLogMsg(msg.getReplyTo(), getSelf(), access), getSelf());
+		if (logs(LogMsg.EventType.ACCESS_REQUEST_RECEIVED)) {
+			logger.tell(LogMsg.makeAccessRequestReceivedLogMsg(user, identity, access), getSelf());
 		}
 			
-		if (!localResource.containsKey(access.getResourceName())) {
+		Resource local = localResource.get(resourceId);
+		if (local == null) {
 			
-			if (knownRemote.containsKey(access.getResourceName())) {
-				ActorRef theRemote = knownRemote.get(access.getResourceName());
-				theRemote.tell(msg, getSelf());
-				logger.tell(LogMsg.makeAccessRequestForwardedLogMsg(getSelf(), theRemote, access), getSelf());
-			} else {
-				
-				//Check for the desired target.
-				DiscoverClass aDiscover = new DiscoverClass(msg);
-				
-				if (discoveryMap.containsKey(access.getResourceName())) {
-					discoveryMap.get(access.getResourceName()).add(aDiscover);
-				} else {
-					for (ActorRef managers : allManagers) {
-						aDiscover.incrementCount();
-						WhoHasResourceRequestMsg message = new WhoHasResourceRequestMsg(access.getResourceName(), getSelf());
-						managers.tell(message, getSelf());
-					}
-					List<DiscoverClass> lst = new LinkedList<DiscoverClass>();
-					lst.add(aDiscover);
-					discoveryMap.put(access.getResourceName(), lst);
+			ActorRef theRemote = knownRemote.get(resourceId);
+			if (theRemote != null) {
+				theRemote.tell(forwardCopy(msg), getSelf());
+				if (logs(LogMsg.EventType.ACCESS_REQUEST_FORWARDED)) {
+					logger.tell(LogMsg.makeAccessRequestForwardedLogMsg(identity, theRemote, access), getSelf());
 				}
+			} else {
 				
+				discover(access.getResourceName(), msg);
 			}
 			
 		} else {
 			AccessRequestType typeRequest = access.getType();
-			String resourceName = access.getResourceName();
+			ResourceLock lock = lockFor(resourceId);
+			
+			//A retry of a request still queued is answered once, when the original is; a retry
+			//of a request whose grant is still held is granted again without a second hold.
+			if (msg.getRequestId() != 0) {
+				if (lock.isWaiting(msg.getUserId(), msg.getRequestId())) {
+					return;
+				}
+				if (lock.isGranted(msg.getUserId(), msg.getRequestId())) {
+					sender.tell(new AccessRequestGrantedMsg(msg), getSelf());
+					return;
+				}
+			}
 			
 			//Make sure the resource wasn't disabled for some reason.
-			ResourceStatus status = localResource.get(resourceName).getStatus();
-			if (status == ResourceStatus.DISABLED || pendingDisable.containsKey(resourceName)) {
+			ResourceStatus status = local.getStatus();
+			if (status == ResourceStatus.DISABLED || pendingDisable.containsKey(resourceId)) {
 				AccessRequestDenialReason whyTho = AccessRequestDenialReason.RESOURCE_DISABLED;
-				AccessRequestDeniedMsg denied = new AccessRequestDeniedMsg(access, whyTho);
+				AccessRequestDeniedMsg denied = new AccessRequestDeniedMsg(msg, whyTho);
 				sender.tell(denied, getSelf());
-				logger.tell(LogMsg.makeAccessRequestDeniedLogMsg(sender, getSelf(), access, whyTho), getSelf());
+				if (logs(LogMsg.EventType.ACCESS_REQUEST_DENIED)) {
+					logger.tell(LogMsg.makeAccessRequestDeniedLogMsg(user, identity, access, whyTho), getSelf());
+				}
 				return;
 			}
 			
-			if (!resourceAccess.containsKey(resourceName)) {
-				resourceAccess.put(resourceName, new ArrayList<UserAccess>());
-			}
+			AccessType accessType = ResourceLock.accessTypeOf(typeRequest);
 			
-			if (resourceAccess.get(resourceName).isEmpty()) {
-				
-				if (typeRequest == AccessRequestType.CONCURRENT_READ_BLOCKING || typeRequest == AccessRequestType.CONCURRENT_READ_NONBLOCKING) {
-					UserAccess object = new UserAccess(sender, AccessType.CONCURRENT_READ);
-					resourceAccess.get(resourceName).add(object);
-					sender.tell(new AccessRequestGrantedMsg(access), getSelf());
-					logger.tell(LogMsg.makeAccessRequestGrantedLogMsg(sender, getSelf(), access), getSelf());
-				} else if (typeRequest == AccessRequestType.EXCLUSIVE_WRITE_BLOCKING || typeRequest == AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING) {
-					UserAccess object = new UserAccess(sender, AccessType.EXCLUSIVE_WRITE);
-					resourceAccess.get(resourceName).add(object);
-					sender.tell(new AccessRequestGrantedMsg(access), getSelf());
-					logger.tell(LogMsg.makeAccessRequestGrantedLogMsg(sender, getSelf(), access), getSelf());
-				}
+			//See if there are conditions preventing grant request.
+			if (lock.canGrantNew(msg.getUserId(), accessType)) {
+				grantAccess(lock, msg);
+				waitForChanged(lock);
 				
 			} else {
-				List<UserAccess> list = resourceAccess.get(resourceName);
-				boolean canAccess = true;
 				
-				for (UserAccess user : list) {
-					AccessType type = user.getAccess();
-					ActorRef curr = user.getUser();
-					
-					if (type == AccessType.EXCLUSIVE_WRITE && !curr.equals(sender)) {
-						canAccess = false;
-						break;
-					} else if (type == AccessType.CONCURRENT_READ && !curr.equals(sender)) {
-						AccessRequestType badOne = AccessRequestType.EXCLUSIVE_WRITE_BLOCKING;
-						AccessRequestType badTwo = AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING;
-						
-						if (typeRequest == badOne || typeRequest == badTwo) {
-							canAccess = false;
-							break;
-						}
-					}
-				}
-				
-				//See if there are conditions preventing grant request.
-				if (canAccess) {
-					
-					UserAccess newAccess = null;
-					if (typeRequest == AccessRequestType.CONCURRENT_READ_BLOCKING || typeRequest == AccessRequestType.CONCURRENT_READ_NONBLOCKING) {
-						newAccess = new UserAccess(sender, AccessType.CONCURRENT_READ);
-					} else {
-						newAccess = new UserAccess(sender, AccessType.EXCLUSIVE_WRITE);
-					}
-					
-					resourceAccess.get(resourceName).add(newAccess);
-					AccessRequestGrantedMsg granted = new AccessRequestGrantedMsg(access);
-					logger.tell(LogMsg.makeAccessRequestGrantedLogMsg(sender, getSelf(), access), getSelf());
-					sender.tell(granted, getSelf());
-					
+				if (typeRequest == AccessRequestType.CONCURRENT_READ_BLOCKING || typeRequest == AccessRequestType.EXCLUSIVE_WRITE_BLOCKING) {
+					lock.enqueue(msg);
+					waitForChanged(lock);
 				} else {
-					
-					if (typeRequest == AccessRequestType.CONCURRENT_READ_BLOCKING || typeRequest == AccessRequestType.EXCLUSIVE_WRITE_BLOCKING) {
-						accessQueue.add(msg);
-					} else {
-						AccessRequestDenialReason whyTho = AccessRequestDenialReason.RESOURCE_BUSY;
-						AccessRequestDeniedMsg rejected = new AccessRequestDeniedMsg(access, whyTho);
-						sender.tell(rejected, getSelf());
-						logger.tell(LogMsg.makeAccessRequestDeniedLogMsg(sender, getSelf(), access, whyTho), getSelf());
+					AccessRequestDenialReason whyTho = AccessRequestDenialReason.RESOURCE_BUSY;
+					AccessRequestDeniedMsg rejected = new AccessRequestDeniedMsg(msg, whyTho);
+					sender.tell(rejected, getSelf());
+					if (logs(LogMsg.EventType.ACCESS_REQUEST_DENIED)) {
+						logger.tell(LogMsg.makeAccessRequestDeniedLogMsg(user, identity, access, whyTho), getSelf());
 					}
-					
 				}
 				
 			}
@@ -284,80 +398,150 @@ public class ResourceManagerActor extends UntypedActor {
 		}
 	}
 	
+	//Record the grant in the lock and notify the user.
+	private void grantAccess(ResourceLock lock, AccessRequestMsg msg) {
+		AccessRequest access = msg.getAccessRequest();
+		ActorRef user = msg.getUser();
+		ActorRef sender = msg.getReplyTo();
+		
+		AccessType type = ResourceLock.accessTypeOf(access.getType());
+		long lease = 0;
+		if (access.getLeaseMs() > 0) {
+			leaseCounter += 1;
+			lease = leaseCounter;
+		}
+		lock.grant(msg.getUserId(), type, msg.getRequestId(), lease);
+		if (msg.getForwardedAt() != 0 && lock.getMetrics() != null) {
+			lock.getMetrics().recordForwardToGrant(access.getType(), SimulationClock.current().nanoTime() - msg.getForwardedAt());
+		}
+		if (lease != 0) {
+			armLease(access.getResourceName(), user, msg.getUserId(), type, lease, access.getLeaseMs());
+		}
+		AccessRequestGrantedMsg granted = new AccessRequestGrantedMsg(msg);
+		if (logs(LogMsg.EventType.ACCESS_REQUEST_GRANTED)) {
+			logger.tell(LogMsg.makeAccessRequestGrantedLogMsg(user, identity, access), getSelf());
+		}
+		sender.tell(granted, getSelf());
+	}
+	
+	//Schedule the expiry of a lease given to held access to ourselves.
+	private void armLease(String resource, ActorRef user, int userId, AccessType type, long lease, long leaseMs) {
+		LeaseExpiredMsg expiry = new LeaseExpiredMsg(resource, user, userId, type, lease);
+		SimulationClock.current().scheduleOnce(getContext().system(), leaseMs, getSelf(), expiry, getSelf());
+	}
+	
+	//Revoke the grants under a lease that ran out.  Grants released or renewed in the
+	//meantime are no longer under it, and other grants of the user are left alone.
+	private void leaseExpiredHelper(LeaseExpiredMsg msg) {
+		String resource = msg.getResourceName();
+		int resourceId = names.find(resource);
+		ResourceLock lock = resourceAccess.get(resourceId);
+		ActorRef user = msg.getUser();
+		
+		if (lock == null || lock.expire(msg.getUserId(), msg.getType(), msg.getLease()) == 0) {
+			return;
+		}
+		
+		AccessRelease revoked = new AccessRelease(resource, msg.getType());
+		user.tell(new AccessRevokedMsg(revoked), getSelf());
+		if (logs(LogMsg.EventType.ACCESS_REVOKED)) {
+			logger.tell(LogMsg.makeAccessRevokedLogMsg(user, identity, revoked), getSelf());
+		}
+		
+		accessFreedHelper(resourceId, lock);
+	}
+	
+	//Extend the lease of held access.  Only the owning manager holds leases.
+	private void leaseRenewHelper(LeaseRenewMsg msg) {
+		LeaseRenewal renewal = msg.getRenewal();
+		String resource = renewal.getResourceName();
+		int resourceId = names.find(resource);
+		
+		if (!localResource.containsKey(resourceId)) {
+			ActorRef remote = knownRemote.get(resourceId);
+			if (remote != null) {
+				remote.tell(msg, getSender());
+			}
+			return;
+		}
+		
+		ResourceLock lock = lockFor(resourceId);
+		leaseCounter += 1;
+		if (lock.renewLeases(msg.getSenderId(), renewal.getType(), leaseCounter) > 0) {
+			armLease(resource, msg.getSender(), msg.getSenderId(), renewal.getType(), leaseCounter, renewal.getLeaseMs());
+		}
+	}
+	
 	//Helpers to release a user's access on some resource.
 	private void accessReleaseHelper(AccessReleaseMsg msg) {
 		AccessRelease release = msg.getAccessRelease();
 		ActorRef sender = msg.getSender();
 		
-		String resource = release.getResourceName();
+		int resourceId = names.find(release.getResourceName());
 		AccessType type = release.getType();
 		
-		//System.out.println(resource);
-		
-		logger.tell(LogMsg.makeAccessReleaseReceivedLogMsg(sender, getSelf(), release), getSelf());
+		if (logs(LogMsg.EventType.ACCESS_RELEASE_RECEIVED)) {
+			logger.tell(LogMsg.makeAccessReleaseReceivedLogMsg(sender, identity, release), getSelf());
+		}
 		
-		if (!localResource.containsKey(resource)) {
+		if (!localResource.containsKey(resourceId)) {
 			
-			if (knownRemote.containsKey(resource)) {
-				ActorRef remote = knownRemote.get(resource);
+			ActorRef remote = knownRemote.get(resourceId);
+			if (remote != null) {
 				remote.tell(msg, sender);
 				
-				logger.tell(LogMsg.makeAccessReleaseForwardedLogMsg(getSelf(), remote, release), getSelf());
+				if (logs(LogMsg.EventType.ACCESS_RELEASE_FORWARDED)) {
+					logger.tell(LogMsg.makeAccessReleaseForwardedLogMsg(identity, remote, release), getSelf());
+				}
 				
 			} else {
-				//Check for the desired target.
-				DiscoverClass aDiscover = new DiscoverClass(msg);
-				
-				if (discoveryMap.containsKey(release.getResourceName())) {
-					discoveryMap.get(release.getResourceName()).add(aDiscover);
-				} else {
-					for (ActorRef managers : allManagers) {
-						aDiscover.incrementCount();
-						WhoHasResourceRequestMsg message = new WhoHasResourceRequestMsg(release.getResourceName(), getSelf());
-						managers.tell(message, getSelf());
-					}
-					List<DiscoverClass> lst = new LinkedList<DiscoverClass>();
-					lst.add(aDiscover);
-					discoveryMap.put(release.getResourceName(), lst);
-				}
+				discover(release.getResourceName(), msg);
 			}
 			
 		} else {
-			List<UserAccess> list = resourceAccess.get(resource);
-			Iterator<UserAccess> iter = list.iterator();
-			boolean hasAccess = false;
-			
-			while (iter.hasNext()) {
-				UserAccess userAccess = iter.next();
-				ActorRef holder = userAccess.getUser();
-				AccessType access = userAccess.getAccess();
-				if (holder.equals(sender) && access.equals(type)) {
-					iter.remove();
-					hasAccess = true;
-					logger.tell(LogMsg.makeAccessReleasedLogMsg(sender, getSelf(), release), getSelf());
-					break;
+			ResourceLock lock = lockFor(resourceId);
+			boolean hasAccess = lock.release(msg.getSenderId(), type, msg.getRequestId());
+			
+			if (hasAccess) {
+				if (logs(LogMsg.EventType.ACCESS_RELEASED)) {
+					logger.tell(LogMsg.makeAccessReleasedLogMsg(sender, identity, release), getSelf());
 				}
 			}
 			
-			//System.out.println(hasAccess);
 			if (!hasAccess) {
-				logger.tell(LogMsg.makeAccessReleaseIgnoredLogMsg(sender, getSelf(), release), getSelf());
-			}
-			
-			if (list.isEmpty()) {
-				if (pendingDisable.containsKey(resource) && localResource.get(resource).getStatus() == ResourceStatus.ENABLED) {
-					localResource.get(resource).disable();
-					for (ManagementRequestMsg respondTo : pendingDisable.get(resource)) {
-						ManagementRequest management = respondTo.getRequest();
-						ActorRef replyTo = respondTo.getReplyTo();
-						ManagementRequestGrantedMsg grant = new ManagementRequestGrantedMsg(management);
-						replyTo.tell(grant, getSelf());
-						logger.tell(LogMsg.makeResourceStatusChangedLogMsg(getSelf(), resource, localResource.get(resource).getStatus()), getSelf());
-						logger.tell(LogMsg.makeManagementRequestGrantedLogMsg(replyTo, getSelf(), management), getSelf());
+				if (logs(LogMsg.EventType.ACCESS_RELEASE_IGNORED)) {
+					logger.tell(LogMsg.makeAccessReleaseIgnoredLogMsg(sender, identity, release), getSelf());
+				}
+			}
+			
+			accessFreedHelper(resourceId, lock);
+		}
+	}
+	
+	//Some access to a local resource was given up: finish a pending disable if the resource
+	//is now free, then see who is waiting.
+	private void accessFreedHelper(int resourceId, ResourceLock lock) {
+		if (lock.isFree()) {
+			Resource device = localResource.get(resourceId);
+			if (pendingDisable.containsKey(resourceId) && device.getStatus() == ResourceStatus.ENABLED) {
+				device.disable();
+				for (ManagementRequestMsg respondTo : pendingDisable.get(resourceId)) {
+					ManagementRequest management = respondTo.getRequest();
+					ActorRef replyTo = respondTo.getReplyTo();
+					ManagementRequestGrantedMsg grant = new ManagementRequestGrantedMsg(respondTo);
+					replyTo.tell(grant, getSelf());
+					if (logs(LogMsg.EventType.RESOURCE_STATUS_CHANGED)) {
+						logger.tell(LogMsg.makeResourceStatusChangedLogMsg(identity, device.getName(), device.getStatus()), getSelf());
+					}
+					if (logs(LogMsg.EventType.MANAGEMENT_REQUEST_GRANTED)) {
+						logger.tell(LogMsg.makeManagementRequestGrantedLogMsg(replyTo, identity, management), getSelf());
 					}
 				}
 			}
 		}
+		
+		grantWaiters(lock);
+		waitForChanged(lock);
 	}
 	
 	//Carry out management requests.
@@ -366,117 +550,106 @@ public class ResourceManagerActor extends UntypedActor {
 		ActorRef replyTo = msg.getReplyTo();
 		
 		String resource = management.getResourceName();
+		int resourceId = names.find(resource);
 		ManagementRequestType type = management.getType();
 		
-		logger.tell(LogMsg.makeManagementRequestReceivedLogMsg(replyTo, getSelf(), management), getSelf());
+		if (logs(LogMsg.EventType.MANAGEMENT_REQUEST_RECEIVED)) {
+			logger.tell(LogMsg.makeManagementRequestReceivedLogMsg(replyTo, identity, management), getSelf());
+		}
 		
-		if (!localResource.containsKey(resource)) {
+		Resource device = localResource.get(resourceId);
+		if (device == null) {
 			
-			if (knownRemote.containsKey(resource)) {
-				ActorRef remote = knownRemote.get(resource);
+			ActorRef remote = knownRemote.get(resourceId);
+			if (remote != null) {
 				remote.tell(msg, replyTo);
 				
-				logger.tell(LogMsg.makeManagementRequestForwardedLogMsg(getSelf(), remote, management), getSelf());
+				if (logs(LogMsg.EventType.MANAGEMENT_REQUEST_FORWARDED)) {
+					logger.tell(LogMsg.makeManagementRequestForwardedLogMsg(identity, remote, management), getSelf());
+				}
 				
 			} else {
-				//Check for the desired target.
-				DiscoverClass aDiscover = new DiscoverClass(msg);
-				
-				if (discoveryMap.containsKey(resource)) {
-					discoveryMap.get(resource).add(aDiscover);
-				} else {
-					for (ActorRef managers : allManagers) {
-						aDiscover.incrementCount();
-						WhoHasResourceRequestMsg message = new WhoHasResourceRequestMsg(resource, getSelf());
-						managers.tell(message, getSelf());
-					}
-					List<DiscoverClass> lst = new LinkedList<DiscoverClass>();
-					lst.add(aDiscover);
-					discoveryMap.put(resource, lst);
-				}
+				discover(resource, msg);
 			}
 			
 		} else {
 			
 			if (type == ManagementRequestType.DISABLE) {
-				if (localResource.get(resource).getStatus() == ResourceStatus.ENABLED) {
+				if (device.getStatus() == ResourceStatus.ENABLED) {
 					
-					if (!resourceAccess.containsKey(resource)) {
-						resourceAccess.put(resource, new ArrayList<UserAccess>());
-					}
-					
-					//System.out.println(resourceAccess.containsKey(resource));
-					//System.out.println(resource);
-					List<UserAccess> list = resourceAccess.get(resource);
-					boolean canDisable = true;
-					
-					for (UserAccess user : list) {
-						if (user.getUser().equals(replyTo)) {
-							canDisable = false;
-							break;
-						}
-					}
+					ResourceLock lock = lockFor(resourceId);
+					boolean canDisable = !lock.isHeldBy(msg.getUserId());
 					
 					//User currently has an access.
 					if (!canDisable) {
 						ManagementRequestDenialReason reason = ManagementRequestDenialReason.ACCESS_HELD_BY_USER;
-						ManagementRequestDeniedMsg deny = new ManagementRequestDeniedMsg(management, reason);
+						ManagementRequestDeniedMsg deny = new ManagementRequestDeniedMsg(msg, reason);
 						
-						logger.tell(LogMsg.makeManagementRequestDeniedLogMsg(replyTo, getSelf(), management, reason), getSelf());
+						if (logs(LogMsg.EventType.MANAGEMENT_REQUEST_DENIED)) {
+							logger.tell(LogMsg.makeManagementRequestDeniedLogMsg(replyTo, identity, management, reason), getSelf());
+						}
 						
 						replyTo.tell(deny, getSelf());
 					} else {
-						Iterator<AccessRequestMsg> iter = accessQueue.iterator();
-						
-						while (iter.hasNext()) {
-							AccessRequestMsg access = iter.next();
+						//Nobody waiting on a resource being disabled will ever get it.
+						while (lock.hasWaiters()) {
+							AccessRequestMsg access = lock.removeWaiter(0);
 							AccessRequest ele = access.getAccessRequest();
-							if (ele.getResourceName().equals(resource)) {
-								iter.remove();
-								AccessRequestDenialReason reason = AccessRequestDenialReason.RESOURCE_DISABLED;
-								AccessRequestDeniedMsg deny = new AccessRequestDeniedMsg(ele, reason);
-								access.getReplyTo().tell(deny, getSelf());
-								logger.tell(LogMsg.makeAccessRequestDeniedLogMsg(access.getReplyTo(), getSelf(), ele, reason), getSelf());
+							AccessRequestDenialReason reason = AccessRequestDenialReason.RESOURCE_DISABLED;
+							AccessRequestDeniedMsg deny = new AccessRequestDeniedMsg(access, reason);
+							access.getReplyTo().tell(deny, getSelf());
+							if (logs(LogMsg.EventType.ACCESS_REQUEST_DENIED)) {
+								logger.tell(LogMsg.makeAccessRequestDeniedLogMsg(access.getUser(), identity, ele, reason), getSelf());
 							}
 						}
+						waitForChanged(lock);
 						
-						if (list.isEmpty()) {
-							localResource.get(resource).disable();
+						if (lock.isFree()) {
+							device.disable();
 							
-							if (!pendingDisable.containsKey(resource)) {
+							if (!pendingDisable.containsKey(resourceId)) {
 								List<ManagementRequestMsg> lst = new LinkedList<ManagementRequestMsg>();
-								pendingDisable.put(resource, lst);
+								pendingDisable.put(resourceId, lst);
 							}
 							
-							pendingDisable.get(resource).add(msg);
-							ManagementRequestGrantedMsg grant = new ManagementRequestGrantedMsg(management);
+							pendingDisable.get(resourceId).add(msg);
+							ManagementRequestGrantedMsg grant = new ManagementRequestGrantedMsg(msg);
 							replyTo.tell(grant, getSelf());
-							logger.tell(LogMsg.makeResourceStatusChangedLogMsg(getSelf(), resource, localResource.get(resource).getStatus()), getSelf());
-							logger.tell(LogMsg.makeManagementRequestGrantedLogMsg(replyTo, getSelf(), management), getSelf());
+							if (logs(LogMsg.EventType.RESOURCE_STATUS_CHANGED)) {
+								logger.tell(LogMsg.makeResourceStatusChangedLogMsg(identity, resource, device.getStatus()), getSelf());
+							}
+							if (logs(LogMsg.EventType.MANAGEMENT_REQUEST_GRANTED)) {
+								logger.tell(LogMsg.makeManagementRequestGrantedLogMsg(replyTo, identity, management), getSelf());
+							}
 						} else {
-							if (!pendingDisable.containsKey(resource)) {
+							if (!pendingDisable.containsKey(resourceId)) {
 								List<ManagementRequestMsg> lst = new LinkedList<ManagementRequestMsg>();
-								pendingDisable.put(resource, lst);
+								pendingDisable.put(resourceId, lst);
 							}
 							
-							pendingDisable.get(resource).add(msg);
+							pendingDisable.get(resourceId).add(msg);
 						}
 					}
 				} else {
-					ManagementRequestGrantedMsg grant = new ManagementRequestGrantedMsg(management);
+					ManagementRequestGrantedMsg grant = new ManagementRequestGrantedMsg(msg);
 					replyTo.tell(grant, getSelf());
-					logger.tell(LogMsg.makeManagementRequestGrantedLogMsg(replyTo, getSelf(), management), getSelf());
+					if (logs(LogMsg.EventType.MANAGEMENT_REQUEST_GRANTED)) {
+						logger.tell(LogMsg.makeManagementRequestGrantedLogMsg(replyTo, identity, management), getSelf());
+					}
 				}
 			} else if (type == ManagementRequestType.ENABLE) {
-				Resource device = localResource.get(resource);
 				if (device.getStatus() == ResourceStatus.DISABLED) {
 					device.enable();
-					pendingDisable.remove(resource);
+					pendingDisable.remove(resourceId);
 				}
 				
-				logger.tell(LogMsg.makeResourceStatusChangedLogMsg(getSelf(), resource, device.getStatus()), getSelf());
-				logger.tell(LogMsg.makeManagementRequestGrantedLogMsg(replyTo, getSelf(), management), getSelf());
-				ManagementRequestGrantedMsg grant = new ManagementRequestGrantedMsg(management);
+				if (logs(LogMsg.EventType.RESOURCE_STATUS_CHANGED)) {
+					logger.tell(LogMsg.makeResourceStatusChangedLogMsg(identity, resource, device.getStatus()), getSelf());
+				}
+				if (logs(LogMsg.EventType.MANAGEMENT_REQUEST_GRANTED)) {
+					logger.tell(LogMsg.makeManagementRequestGrantedLogMsg(replyTo, identity, management), getSelf());
+				}
+				ManagementRequestGrantedMsg grant = new ManagementRequestGrantedMsg(msg);
 				replyTo.tell(grant, getSelf());
 			}
 			
@@ -484,45 +657,327 @@ public class ResourceManagerActor extends UntypedActor {
 		
 	}
 	
-	//After we released access for resources we want to check to see if any blocking access requests
-	//can now be granted.
-	private void grantRequestOnRelease() {
-		if (!accessQueue.isEmpty()) {
-			Iterator<AccessRequestMsg> iter = accessQueue.iterator();
-			while (iter.hasNext()) {
-				AccessRequestMsg pending = iter.next();
-				AccessRequest request = pending.getAccessRequest();
-				String resourceName = request.getResourceName();
-				ActorRef sender = pending.getReplyTo();
-				AccessRequestType typeRequest = request.getType();
-				
-				List<UserAccess> list = resourceAccess.get(resourceName);
-				boolean canAccess = true;
-				
-				for (UserAccess user : list) {
-					AccessType type = user.getAccess();
-					ActorRef curr = user.getUser();
-					
-					if (type == AccessType.EXCLUSIVE_WRITE && !curr.equals(sender)) {
-						canAccess = false;
-					} else if (type == AccessType.CONCURRENT_READ && !curr.equals(sender)) {
-						AccessRequestType badOne = AccessRequestType.EXCLUSIVE_WRITE_BLOCKING;
-						AccessRequestType badTwo = AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING;
-						
-						if (typeRequest == badOne || typeRequest == badTwo) {
-							canAccess = false;
-						}
+	//Hold a request for a resource we do not know until its owner is found.  Only the
+	//first request for a name starts a search; later ones wait on the same answer.
+	private void discover(String resource, Object msg) {
+		DiscoverClass aDiscover = new DiscoverClass(msg);
+		
+		List<DiscoverClass> waiting = discoveryMap.get(resource);
+		if (waiting != null) {
+			waiting.add(aDiscover);
+			return;
+		}
+		
+		List<DiscoverClass> lst = new LinkedList<DiscoverClass>();
+		lst.add(aDiscover);
+		discoveryMap.put(resource, lst);
+		
+		if (notFound.contains(resource, SimulationClock.current().currentTimeMillis())) {
+			resourceNotFound(resource);
+		} else if (directoryRing != null) {
+			ActorRef shard = directoryRing.ownerOf(resource);
+			if (shard.equals(getSelf())) {
+				ActorRef owner = directory.get(resource);
+				if (owner != null) {
+					resourceFound(resource, owner);
+				} else {
+					resourceNotFound(resource);
+				}
+			} else {
+				aDiscover.incrementCount();
+				shard.tell(new DirectoryLookupRequestMsg(resource, getSelf()), getSelf());
+			}
+		} else if (allManagers.isEmpty()) {
+			//A lone manager has nobody to broadcast to, so no answer would ever come.
+			resourceNotFound(resource);
+		} else {
+			for (ActorRef managers : allManagers) {
+				aDiscover.incrementCount();
+				WhoHasResourceRequestMsg message = new WhoHasResourceRequestMsg(resource, getSelf());
+				managers.tell(message, getSelf());
+			}
+		}
+	}
+	
+	//Record ownership of local resources with the directory shards their names hash to.
+	private void registerInDirectory(Collection<String> names) {
+		Map<ActorRef, ArrayList<String>> byShard = new LinkedHashMap<ActorRef, ArrayList<String>>();
+		for (String name : names) {
+			ActorRef shard = directoryRing.ownerOf(name);
+			if (shard.equals(getSelf())) {
+				directory.put(name, getSelf());
+			} else {
+				if (!byShard.containsKey(shard)) {
+					byShard.put(shard, new ArrayList<String>());
+				}
+				byShard.get(shard).add(name);
+			}
+		}
+		for (Map.Entry<ActorRef, ArrayList<String>> entry : byShard.entrySet()) {
+			entry.getKey().tell(new DirectoryRegisterMsg(entry.getValue(), getSelf()), getSelf());
+		}
+	}
+	
+	//The owner of a resource we were looking for answered: send it everything held for
+	//the resource, and remember it for next time.
+	private void resourceFound(String resource, ActorRef toSend) {
+		if (logs(LogMsg.EventType.REMOTE_RESOURCE_DISCOVERED)) {
+			logger.tell(LogMsg.makeRemoteResourceDiscoveredLogMsg(identity, toSend, resource), getSelf());
+		}
+		List<DiscoverClass> process = discoveryMap.get(resource);
+		if (process != null) {
+			for (DiscoverClass ele : process) {
+				if (ele.getRequestMsg() instanceof AccessRequestMsg) {
+					AccessRequestMsg access = (AccessRequestMsg)ele.getRequestMsg();
+					AccessRequest req = access.getAccessRequest();
+					toSend.tell(forwardCopy(access), getSelf());
+					if (logs(LogMsg.EventType.ACCESS_REQUEST_FORWARDED)) {
+						logger.tell(LogMsg.makeAccessRequestForwardedLogMsg(identity, toSend, req), getSelf());
+					}
+				} else if (ele.getRequestMsg() instanceof ManagementRequestMsg) {
+					ManagementRequestMsg manage = (ManagementRequestMsg)ele.getRequestMsg();
+					ManagementRequest req = manage.getRequest();
+					toSend.tell(manage, getSelf());
+					if (logs(LogMsg.EventType.MANAGEMENT_REQUEST_FORWARDED)) {
+						logger.tell(LogMsg.makeManagementRequestForwardedLogMsg(identity, toSend, req), getSelf());
+					}
+				} else if (ele.getRequestMsg() instanceof AccessReleaseMsg) {
+					AccessReleaseMsg rel = (AccessReleaseMsg)ele.getRequestMsg();
+					AccessRelease release = rel.getAccessRelease();
+					toSend.tell(rel, getSelf());
+					if (logs(LogMsg.EventType.ACCESS_RELEASE_FORWARDED)) {
+						logger.tell(LogMsg.makeAccessReleaseForwardedLogMsg(identity, toSend, release), getSelf());
 					}
 				}
-				
-				if (canAccess) {
-					accessRequestHelper(pending, true);
-					iter.remove();
-				} else {
-					break;
+			}
+			discoveryMap.remove(resource);
+			knownRemote.put(names.idOf(resource), toSend);
+		}
+	}
+	
+	//Nobody owns a resource we were looking for: deny or ignore everything held for it.
+	private void resourceNotFound(String resource) {
+		notFound.add(resource, SimulationClock.current().currentTimeMillis());
+		for (DiscoverClass ele : discoveryMap.remove(resource)) {
+			refuse(ele);
+		}
+	}
+	
+	//Deny or ignore a request held for a resource nobody owns.
+	private void refuse(DiscoverClass ele) {
+		if (ele.getRequestMsg() instanceof AccessRequestMsg) {
+			AccessRequestMsg access = (AccessRequestMsg)ele.getRequestMsg();
+			AccessRequest req = access.getAccessRequest();
+			AccessRequestDenialReason res = AccessRequestDenialReason.RESOURCE_NOT_FOUND;
+			AccessRequestDeniedMsg deny = new AccessRequestDeniedMsg(access, res);
+			access.getReplyTo().tell(deny, getSelf());
+			if (logs(LogMsg.EventType.ACCESS_REQUEST_DENIED)) {
+				logger.tell(LogMsg.makeAccessRequestDeniedLogMsg(access.getUser(), identity, req, res), getSelf());
+			}
+		} else if (ele.getRequestMsg() instanceof ManagementRequestMsg) {
+			ManagementRequestMsg manage = (ManagementRequestMsg)ele.getRequestMsg();
+			ManagementRequest req = manage.getRequest();
+			ManagementRequestDenialReason res = ManagementRequestDenialReason.RESOURCE_NOT_FOUND;
+			ManagementRequestDeniedMsg deny = new ManagementRequestDeniedMsg(manage, res);
+			manage.getReplyTo().tell(deny, getSelf());
+			if (logs(LogMsg.EventType.MANAGEMENT_REQUEST_DENIED)) {
+				logger.tell(LogMsg.makeManagementRequestDeniedLogMsg(manage.getReplyTo(), identity, req, res), getSelf());
+			}
+		} else if (ele.getRequestMsg() instanceof AccessReleaseMsg) {
+			AccessReleaseMsg release = (AccessReleaseMsg)ele.getRequestMsg();
+			AccessRelease theObj = release.getAccessRelease();
+			ActorRef user = release.getSender();
+			if (logs(LogMsg.EventType.ACCESS_RELEASE_IGNORED)) {
+				logger.tell(LogMsg.makeAccessReleaseIgnoredLogMsg(user, identity, theObj), getSelf());
+			}
+		}
+	}
+	
+	//After we released access on a resource we want to check to see if any blocking access
+	//requests on that resource can now be granted.  The lock's fairness policy picks the
+	//order; under FIFO every compatible request at the head is granted in one pass.
+	private void grantWaiters(ResourceLock lock) {
+		AccessRequestMsg waiter = lock.takeGrantable();
+		while (waiter != null) {
+			grantAccess(lock, waiter);
+			waiter = lock.takeGrantable();
+		}
+	}
+	
+	//Request as we pass it to another manager: stamped with the time, if locks are timed.
+	private AccessRequestMsg forwardCopy(AccessRequestMsg msg) {
+		return timed ? new AccessRequestMsg(msg, SimulationClock.current().nanoTime()) : msg;
+	}
+	
+	//Copies of the metrics of every local lock that has been used, by resource name.
+	private HashMap<String, LockMetrics> localMetrics() {
+		HashMap<String, LockMetrics> metrics = new HashMap<String, LockMetrics>();
+		for (int slot = 0; slot < resourceAccess.capacity(); slot++) {
+			ResourceLock lock = resourceAccess.valueAt(slot);
+			if (lock != null && lock.getMetrics() != null) {
+				metrics.put(localResource.get(resourceAccess.keyAt(slot)).getName(), lock.getMetrics().copy());
+			}
+		}
+		return metrics;
+	}
+	
+	//Wait-for edges of every request blocked on our resources: the waiter waits for each
+	//other holder and for the request queued just ahead of it.
+	private ArrayList<WaitForEdge> localWaitForEdges() {
+		ArrayList<WaitForEdge> edges = new ArrayList<WaitForEdge>();
+		for (int slot = 0; slot < resourceAccess.capacity(); slot++) {
+			ResourceLock lock = resourceAccess.valueAt(slot);
+			if (lock == null || !lock.hasWaiters()) {
+				continue;
+			}
+			String name = localResource.get(resourceAccess.keyAt(slot)).getName();
+			for (int i = 0; i < lock.getWaiterCount(); i++) {
+				int waiter = lock.getWaiter(i).getUserId();
+				for (int holder : lock.getHolders()) {
+					if (holder != waiter) {
+						edges.add(new WaitForEdge(waiter, holder, name, getSelf()));
+					}
+				}
+				int ahead = i > 0 ? lock.getWaiter(i - 1).getUserId() : waiter;
+				if (ahead != waiter) {
+					edges.add(new WaitForEdge(waiter, ahead, name, getSelf()));
+				}
+			}
+		}
+		return edges;
+	}
+	
+	//Check for deadlocks after the interval, unless a check is already due.  A manager
+	//yet to learn its coordinator has nowhere to report to.
+	private void armDeadlockCheck() {
+		if (deadlockCheck != null || (identity.equals(getSelf()) && deadlockCoordinator == null)) {
+			return;
+		}
+		deadlockCheck = SimulationClock.current().scheduleOnce(getContext().system(), DEADLOCK_CHECK_INTERVAL_MS,
+				getSelf(), new DeadlockCheckMsg(), getSelf());
+	}
+	
+	//Whether any request is blocked on our resources.
+	private boolean hasWaiters() {
+		for (int slot = 0; slot < resourceAccess.capacity(); slot++) {
+			ResourceLock lock = resourceAccess.valueAt(slot);
+			if (lock != null && lock.hasWaiters()) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	//The holders or waiters of a lock changed: report our edges at the next check if the
+	//lock has waiters, or if our last report has edges that may now be gone.
+	private void waitForChanged(ResourceLock lock) {
+		if (lock.hasWaiters() || edgesReported) {
+			armDeadlockCheck();
+		}
+	}
+	
+	//Take in a report of wait-for edges if we are the coordinator, else pass it on to it.
+	private void waitForReportHelper(WaitForGraphReportMsg msg) {
+		if (deadlockCoordinator.equals(getSelf())) {
+			waitForReports.put(msg.getReporter(), msg.getEdges());
+			armDeadlockCheck();
+		} else {
+			deadlockCoordinator.tell(msg, getSelf());
+		}
+	}
+	
+	//Coordinator only: search the reported wait-for graph for cycles and deny one blocked
+	//request in each cycle that has persisted since the last search.
+	private void detectDeadlocks() {
+		WaitForGraph graph = new WaitForGraph();
+		for (ArrayList<WaitForEdge> edges : waitForReports.values()) {
+			graph.addEdges(edges);
+		}
+		
+		HashSet<String> suspects = new HashSet<String>();
+		for (WaitForEdge victim : graph.findVictims()) {
+			String key = WaitForGraph.key(victim);
+			if (deadlockSuspects.contains(key)) {
+				victim.getManager().tell(new DeadlockVictimMsg(victim.getResourceName(), victim.getWaiter()), getSelf());
+			} else {
+				suspects.add(key);
+			}
+		}
+		deadlockSuspects = suspects;
+	}
+	
+	//Deny a user's blocked requests on a resource to break a deadlock.
+	private void deadlockVictimHelper(DeadlockVictimMsg msg) {
+		ResourceLock lock = resourceAccess.get(names.find(msg.getResourceName()));
+		if (lock == null) {
+			return;
+		}
+		
+		for (int i = lock.getWaiterCount() - 1; i >= 0; i--) {
+			AccessRequestMsg waiting = lock.getWaiter(i);
+			if (waiting.getUserId() == msg.getUser()) {
+				lock.removeWaiter(i);
+				AccessRequest ele = waiting.getAccessRequest();
+				AccessRequestDenialReason reason = AccessRequestDenialReason.DEADLOCK;
+				waiting.getReplyTo().tell(new AccessRequestDeniedMsg(waiting, reason), getSelf());
+				if (logs(LogMsg.EventType.ACCESS_REQUEST_DENIED)) {
+					logger.tell(LogMsg.makeAccessRequestDeniedLogMsg(waiting.getUser(), identity, ele, reason), getSelf());
 				}
 			}
 		}
+		
+		grantWaiters(lock);
+		waitForChanged(lock);
+	}
+	
+	//Partition owning a local resource.
+	private int partitionIndex(int resourceId) {
+		return resourceId % partitions.length;
+	}
+	
+	//Sharded mode only: the partition that must handle a message, or null if we handle it
+	//ourselves because it is not about one of our local resources.
+	private ActorRef partitionFor(Object o) {
+		if (partitions == null) {
+			return null;
+		}
+		
+		String resource;
+		if (o instanceof AccessRequestMsg) {
+			resource = ((AccessRequestMsg)o).getAccessRequest().getResourceName();
+		} else if (o instanceof AccessReleaseMsg) {
+			resource = ((AccessReleaseMsg)o).getAccessRelease().getResourceName();
+		} else if (o instanceof ManagementRequestMsg) {
+			resource = ((ManagementRequestMsg)o).getRequest().getResourceName();
+		} else if (o instanceof LeaseRenewMsg) {
+			resource = ((LeaseRenewMsg)o).getRenewal().getResourceName();
+		} else {
+			return null;
+		}
+		
+		int resourceId = names.find(resource);
+		if (!localResource.containsKey(resourceId)) {
+			return null;
+		}
+		return partitions[partitionIndex(resourceId)];
+	}
+	
+	//Lock state for a local resource, created on first use.
+	private ResourceLock lockFor(int resourceId) {
+		ResourceLock lock = resourceAccess.get(resourceId);
+		if (lock == null) {
+			FairnessPolicy resourcePolicy = localResource.get(resourceId).getFairnessPolicy();
+			lock = new ResourceLock(resourcePolicy != null ? resourcePolicy : policy, timed);
+			resourceAccess.put(resourceId, lock);
+		}
+		return lock;
+	}
+	
+	@Override
+	public void postStop() {
+		if (deadlockCheck != null) {
+			deadlockCheck.cancel();
+		}
 	}
 	
 	// You may want to add data structures for managing local resources and users, storing
@@ -537,6 +992,13 @@ public class ResourceManagerActor extends UntypedActor {
 	 */
 	@Override
 	public void onReceive(Object o) throws Exception {
+		//In sharded mode, everything about a local resource is up to its partition.
+		ActorRef partition = partitionFor(o);
+		if (partition != null) {
+			partition.tell(o, getSelf());
+			return;
+		}
+		
 		if (o instanceof AddRemoteManagersRequestMsg) {
 			ActorRef sender = getSender();
 			configurationHelper(o, sender);
@@ -549,15 +1011,61 @@ public class ResourceManagerActor extends UntypedActor {
 			ActorRef sender = getSender();
 			configurationHelper(o, sender);	
 			
+		} else if (o instanceof AddInitialLocalResourcesResponseMsg) {
+			//A partition has taken its slice of our resources; nothing more to do.
+			
 		} else if (o instanceof AccessReleaseMsg) {		//Release user access on a resource.
 			AccessReleaseMsg msg = (AccessReleaseMsg)o;
 			accessReleaseHelper(msg);
-			grantRequestOnRelease();
 			
 		//Grant or deny a user access to a resource.	
 		} else if (o instanceof AccessRequestMsg) {		
 			AccessRequestMsg msg = (AccessRequestMsg)o;
-			accessRequestHelper(msg, false);
+			accessRequestHelper(msg);
+			
+		//Acquire several resources all-or-nothing on a user's behalf.
+		} else if (o instanceof AccessRequestBatchMsg) {
+			AccessRequestBatchMsg msg = (AccessRequestBatchMsg)o;
+			getContext().actorOf(dispatchers.forUser(AccessBatchActor.props(msg, getSelf())));
+			
+		} else if (o instanceof LeaseRenewMsg) {
+			LeaseRenewMsg msg = (LeaseRenewMsg)o;
+			leaseRenewHelper(msg);
+			
+		} else if (o instanceof LeaseExpiredMsg) {
+			LeaseExpiredMsg msg = (LeaseExpiredMsg)o;
+			leaseExpiredHelper(msg);
+			
+		} else if (o instanceof DeadlockCheckMsg) {
+			deadlockCheck = null;
+			ArrayList<WaitForEdge> edges = localWaitForEdges();
+			edgesReported = !edges.isEmpty();
+			if (!identity.equals(getSelf())) {
+				//Partitions report through their parent, which knows the coordinator.
+				identity.tell(new WaitForGraphReportMsg(getSelf(), edges), getSelf());
+			} else if (deadlockCoordinator.equals(getSelf())) {
+				waitForReports.put(getSelf(), edges);
+				detectDeadlocks();
+			} else {
+				deadlockCoordinator.tell(new WaitForGraphReportMsg(getSelf(), edges), getSelf());
+			}
+			if (getSelf().equals(deadlockCoordinator) && !deadlockSuspects.isEmpty()) {
+				armDeadlockCheck();
+			}
+			
+		} else if (o instanceof WaitForGraphReportMsg) {
+			WaitForGraphReportMsg msg = (WaitForGraphReportMsg)o;
+			//Managers introduced to their peers before us may already report to us.  Going
+			//on without a coordinator would throw, and the restart would wipe our state.
+			if (deadlockCoordinator == null) {
+				heldReports.put(msg.getReporter(), msg);
+			} else {
+				waitForReportHelper(msg);
+			}
+			
+		} else if (o instanceof DeadlockVictimMsg) {
+			DeadlockVictimMsg msg = (DeadlockVictimMsg)o;
+			deadlockVictimHelper(msg);
 			
 		} else if (o instanceof ManagementRequestMsg) {
 			ManagementRequestMsg msg = (ManagementRequestMsg)o;
@@ -568,7 +1076,7 @@ public class ResourceManagerActor extends UntypedActor {
 			String resource = msg.getResourceName();
 			ActorRef resourceManager = msg.getSender();
 			
-			boolean result = localResource.containsKey(resource);
+			boolean result = localResource.containsKey(names.find(resource));
 			
 			WhoHasResourceResponseMsg response = new WhoHasResourceResponseMsg(resource, result, getSelf());
 			resourceManager.tell(response, getSelf());
@@ -580,63 +1088,73 @@ public class ResourceManagerActor extends UntypedActor {
 			ActorRef toSend = msg.getSender();
 			
 			if (trueFalse) {
-				logger.tell(LogMsg.makeRemoteResourceDiscoveredLogMsg(getSelf(), toSend, resource), getSelf());
-				List<DiscoverClass> process = discoveryMap.get(resource);
-				if (process != null) {
-					for (DiscoverClass ele : process) {
-						if (ele.getRequestMsg() instanceof AccessRequestMsg) {
-							AccessRequestMsg access = (AccessRequestMsg)ele.getRequestMsg();
-							AccessRequest req = access.getAccessRequest();
-							toSend.tell(access, getSelf());
-							logger.tell(LogMsg.makeAccessRequestForwardedLogMsg(getSelf(), toSend, req), getSelf());
-						} else if (ele.getRequestMsg() instanceof ManagementRequestMsg) {
-							ManagementRequestMsg manage = (ManagementRequestMsg)ele.getRequestMsg();
-							ManagementRequest req = manage.getRequest();
-							toSend.tell(manage, getSelf());
-							logger.tell(LogMsg.makeManagementRequestForwardedLogMsg(getSelf(), toSend, req), getSelf());
-						} else if (ele.getRequestMsg() instanceof AccessReleaseMsg) {
-							AccessReleaseMsg rel = (AccessReleaseMsg)ele.getRequestMsg();
-							AccessRelease release = rel.getAccessRelease();
-							toSend.tell(rel, getSelf());
-							logger.tell(LogMsg.makeAccessReleaseForwardedLogMsg(getSelf(), toSend, release), getSelf());
-						}
-					}
-					discoveryMap.remove(resource);
-					knownRemote.put(resource, toSend);
-				}
+				resourceFound(resource, toSend);
 			} else {
-				if (discoveryMap.get(resource) != null) {
-					DiscoverClass something = discoveryMap.get(resource).get(0);
+				List<DiscoverClass> waiting = discoveryMap.get(resource);
+				if (waiting != null) {
+					DiscoverClass something = waiting.get(0);
 					if (something != null) {
 						something.decrementCount();
 						if (something.getCount() == 0) {
-							for (DiscoverClass ele : discoveryMap.get(resource)) {
-								if (ele.getRequestMsg() instanceof AccessRequestMsg) {
-									AccessRequestMsg access = (AccessRequestMsg)ele.getRequestMsg();
-									AccessRequest req = access.getAccessRequest();
-									AccessRequestDenialReason res = AccessRequestDenialReason.RESOURCE_NOT_FOUND;
-									AccessRequestDeniedMsg deny = new AccessRequestDeniedMsg(req, res);
-									access.getReplyTo().tell(deny, getSelf());
-									logger.tell(LogMsg.makeAccessRequestDeniedLogMsg(access.getReplyTo(), getSelf(), req, res), getSelf());
-								} else if (ele.getRequestMsg() instanceof ManagementRequestMsg) {
-									ManagementRequestMsg manage = (ManagementRequestMsg)ele.getRequestMsg();
-									ManagementRequest req = manage.getRequest();
-									ManagementRequestDenialReason res = ManagementRequestDenialReason.RESOURCE_NOT_FOUND;
-									ManagementRequestDeniedMsg deny = new ManagementRequestDeniedMsg(req, res);
-									manage.getReplyTo().tell(deny, getSelf());
-									logger.tell(LogMsg.makeManagementRequestDeniedLogMsg(manage.getReplyTo(), getSelf(), req, res), getSelf());
-								} else if (ele.getRequestMsg() instanceof AccessReleaseMsg) {
-									AccessReleaseMsg release = (AccessReleaseMsg)ele.getRequestMsg();
-									AccessRelease theObj = release.getAccessRelease();
-									ActorRef user = release.getSender();
-									logger.tell(LogMsg.makeAccessReleaseIgnoredLogMsg(user, getSelf(), theObj), getSelf());							
-								}
-							}
-							discoveryMap.remove(resource);
+							resourceNotFound(resource);
 						}
 					}
 				}
-			}	
+			}
+			
+		} else if (o instanceof ResourceCreatedMsg) {
+			ResourceCreatedMsg msg = (ResourceCreatedMsg)o;
+			for (String name : msg.getResourceNames()) {
+				notFound.remove(name);
+			}
+			
+		} else if (o instanceof DirectoryRegisterMsg) {
+			DirectoryRegisterMsg msg = (DirectoryRegisterMsg)o;
+			for (String name : msg.getResourceNames()) {
+				directory.put(name, msg.getOwner());
+			}
+			
+		} else if (o instanceof DirectoryLookupRequestMsg) {
+			DirectoryLookupRequestMsg msg = (DirectoryLookupRequestMsg)o;
+			String resource = msg.getResourceName();
+			msg.getSender().tell(new DirectoryLookupResponseMsg(resource, directory.get(resource)), getSelf());
+			
+		} else if (o instanceof DirectoryLookupResponseMsg) {
+			DirectoryLookupResponseMsg msg = (DirectoryLookupResponseMsg)o;
+			String resource = msg.getResourceName();
+			if (discoveryMap.containsKey(resource)) {
+				if (msg.getOwner() != null) {
+					resourceFound(resource, msg.getOwner());
+				} else {
+					resourceNotFound(resource);
+				}
+			}
+			
+		} else if (o instanceof MetricsRequestMsg) {
+			if (partitions == null) {
+				getSender().tell(new MetricsResponseMsg(identity, localMetrics()), getSelf());
+			} else {
+				//Requests arriving while partitions are being asked share the answer.
+				metricsRequesters.add(getSender());
+				if (metricsAwaited == 0) {
+					metricsCollected = new HashMap<String, LockMetrics>();
+					metricsAwaited = partitions.length;
+					for (ActorRef part : partitions) {
+						part.tell(new MetricsRequestMsg(), getSelf());
+					}
+				}
+			}
+			
+		} else if (o instanceof MetricsResponseMsg) {		//A partition's part of our metrics.
+			metricsCollected.putAll(((MetricsResponseMsg)o).getMetrics());
+			metricsAwaited--;
+			if (metricsAwaited == 0) {
+				for (ActorRef requester : metricsRequesters) {
+					requester.tell(new MetricsResponseMsg(getSelf(), metricsCollected), getSelf());
+				}
+				metricsRequesters.clear();
+				metricsCollected = null;
+			}
 		}
 	}
 }
@@ -7,59 +7,89 @@ import cmsc433.p4.messages.SimulationFinishMsg;
 import cmsc433.p4.messages.SimulationStartMsg;
 import cmsc433.p4.messages.UserStartMsg;
 import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.SimulationConfig;
 import cmsc433.p4.util.SystemActors;
 import cmsc433.p4.util.Systems;
 import akka.actor.ActorRef;
-import akka.actor.ActorSystem;
+import akka.actor.ActorRefFactory;
 import akka.actor.Props;
+import akka.actor.Status;
 import akka.actor.UntypedActor;
+import akka.pattern.Patterns;
+import scala.concurrent.Future;
 
 /**
  * Class of actors managing a simulation of a single resource-management system.
  * 
- * @author Rance Cleaveland
- *
- */
-/**
+ * The logger, managers and users of the simulation are children of its simulation
+ * manager, so that simulations sharing an actor system each have a namespace of their
+ * own.  The manager stays up after reporting the result, as events may still be in
+ * flight to the log; stopping it stops the whole simulation.
+ * 
  * @author Rance Cleaveland
  *
  */
 public class SimulationManagerActor extends UntypedActor {
 	
 	private ArrayList<NodeSpecification> nodes;	// Nodes in simulated system
-	private ActorSystem system;	
+	private SimulationConfig config;			// System-wide settings
 	
 	/**
 	 * Constructor
 	 * 
 	 * @param nodes
-	 * @param system
+	 * @param config
 	 */
-	public SimulationManagerActor(ArrayList<NodeSpecification> nodes, ActorSystem system) {
+	public SimulationManagerActor(ArrayList<NodeSpecification> nodes, SimulationConfig config) {
 		super();
 		this.nodes = nodes;
-		this.system = system;
+		this.config = config;
 	}
 	
 	/**
 	 * Props structure-generator for this class.
 	 * @return  Props structure
 	 */
-	static Props props (ArrayList<NodeSpecification> nodes, ActorSystem system) {
-		return Props.create(SimulationManagerActor.class, nodes, system);
+	static Props props (ArrayList<NodeSpecification> nodes, SimulationConfig config) {
+		return Props.create(SimulationManagerActor.class, nodes, config);
 	}
 	
 	/**
 	 * Factory method for creating resource managers
 	 * @param localResources	Local resources controlled by new manager
 	 * @param logger			Actor to send logging messages to
-	 * @param system			Actor system in which manager will execute
+	 * @param context			Actor system, or context of the actor whose child the manager is
+	 * @return					Reference to new manager
+	 */
+	public static ActorRef makeSimulationManager (ArrayList<NodeSpecification> nodes, ActorRefFactory context) {
+		return makeSimulationManager(nodes, new SimulationConfig(), context);
+	}
+	
+	/**
+	 * Factory method for creating simulation managers
+	 * @param nodes				Nodes of simulated system
+	 * @param config			System-wide settings of the simulation
+	 * @param context			Actor system, or context of the actor whose child the manager is
 	 * @return					Reference to new manager
 	 */
-	public static ActorRef makeSimulationManager (ArrayList<NodeSpecification> nodes, ActorSystem system) {
-		ActorRef newManager = system.actorOf(props(nodes, system));
+	public static ActorRef makeSimulationManager (ArrayList<NodeSpecification> nodes, SimulationConfig config, ActorRefFactory context) {
+		ActorRef newManager = context.actorOf(props(nodes, config));
 		return newManager;
 	}
+	
+	/**
+	 * Factory method for creating simulation managers with a given name, which is also
+	 * the first element of the paths of all the simulation's actors
+	 * @param nodes				Nodes of simulated system
+	 * @param config			System-wide settings of the simulation
+	 * @param context			Actor system, or context of the actor whose child the manager is
+	 * @param name				Name of new manager, unique within the context
+	 * @return					Reference to new manager
+	 */
+	public static ActorRef makeSimulationManager (ArrayList<NodeSpecification> nodes, SimulationConfig config,
+			ActorRefFactory context, String name) {
+		return context.actorOf(props(nodes, config), name);
+	}
 
 	
 	private ActorRef replyTo;	// Where to send simulation results when they are ready
@@ -72,22 +102,43 @@ public class SimulationManagerActor extends UntypedActor {
 			replyTo = getSender();
 			
 			// Create logger for use in simulated system, then system
-			ActorRef logger = LoggerActor.makeLogger(getSelf(), system);
-			SystemActors actors = Systems.makeSystem (nodes, logger, system);
+			int userCount = 0;
+			for (NodeSpecification spec : nodes) {
+				userCount += spec.getUserScripts().size();
+			}
+			ActorRef logger = LoggerActor.makeLogger(getSelf(), getContext(), userCount,
+					Systems.logShardCount(nodes, config), config);
+			
+			// Its actors come back to us once they are all set up; waiting here would hold
+			// a thread that other simulations, or the virtual clock, need to set them up.
+			Future<SystemActors> started = Systems.startSystem(nodes, config, logger, getContext());
+			Patterns.pipe(started, getContext().dispatcher()).to(getSelf());
+		}
+		else if (msg instanceof SystemActors) {
 			
 			// Start simulation by sending each user a start message.
-			ArrayList<ActorRef> users = actors.getUsers();
+			ArrayList<ActorRef> users = ((SystemActors)msg).getUsers();
 			UserStartMsg sMsg = new UserStartMsg();
 			for (ActorRef u : users) {
 				u.tell(sMsg, getSelf());
 			}
 		}
+		else if (msg instanceof Status.Failure) {
+			throw new Exception("Simulated system could not be set up", ((Status.Failure)msg).cause());
+		}
 		else if (msg instanceof LogResultMsg) {
 			
-			// Forward simulation results caller and stop.
+			// Forward simulation results to caller.  We stay up, as events may still be on
+			// their way to the log; whoever started us stops us, and with us the simulation.
+			// A sweep manager does so on this result and waits for us to terminate.
 			LogResultMsg lMsg = (LogResultMsg)msg;
-			replyTo.tell(new SimulationFinishMsg(lMsg.getLog()), getSelf());
-			getContext().stop(getSelf());
+			if (lMsg.getLogFiles() != null) {
+				replyTo.tell(new SimulationFinishMsg(lMsg.getLogFiles()), getSelf());
+			} else if (lMsg.getShardedLog() != null) {
+				replyTo.tell(new SimulationFinishMsg(lMsg.getShardedLog()), getSelf());
+			} else {
+				replyTo.tell(new SimulationFinishMsg(lMsg.getLog()), getSelf());
+			}
 		}
 		else {
 			throw new Exception("Bad message sent to simulation manager");
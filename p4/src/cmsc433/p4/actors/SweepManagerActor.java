@@ -0,0 +1,174 @@
+package cmsc433.p4.actors;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import cmsc433.p4.messages.LogMsg;
+import cmsc433.p4.messages.SimulationFinishMsg;
+import cmsc433.p4.messages.SimulationStartMsg;
+import cmsc433.p4.messages.SimulationSummaryMsg;
+import cmsc433.p4.messages.SweepFinishMsg;
+import cmsc433.p4.messages.SweepStartMsg;
+import cmsc433.p4.util.SimulationClock;
+import cmsc433.p4.util.SimulationSpecification;
+import akka.actor.ActorRef;
+import akka.actor.ActorRefFactory;
+import akka.actor.Props;
+import akka.actor.SupervisorStrategy;
+import akka.actor.Terminated;
+import akka.actor.UntypedActor;
+
+/**
+ * Class of actors running many independent simulations side by side in one actor
+ * system, as for a sweep over settings.
+ *
+ * Each simulation gets a simulation manager of its own, a child named sim-i after the
+ * position of its specification, so that its logger, managers and users live under
+ * that name and never meet those of another simulation.  At most parallelism
+ * simulations run at once.  As each reports its result it is stopped, and once all its
+ * actors have stopped, so that its log no longer changes, its summary is sent to
+ * whoever started the sweep and the next simulation is started.  A simulation whose
+ * manager fails is stopped and reported as failed.  Once every simulation is done the
+ * sweep manager sends a SweepFinishMsg and stops.
+ *
+ */
+public class SweepManagerActor extends UntypedActor {
+
+	private final ArrayList<SimulationSpecification> specs;	// Simulations to run, in order of starting
+	private final int parallelism;							// Most simulations running at once
+	private final long[] startedAt;							// When each simulation started, in nanoseconds
+	private final long[] finishedAt;						// When each reported its result
+	private final SimulationFinishMsg[] results;			// Results of simulations still stopping
+	private final HashMap<ActorRef, Integer> running = new HashMap<ActorRef, Integer>(); // Running simulations' managers, to their index
+	private ActorRef replyTo;								// Where to send summaries
+	private int next = 0;									// Index of next simulation to start
+	private int finished = 0;
+	private int failed = 0;
+
+	/**
+	 * Props structure-generator for this class.
+	 *
+	 * @param specs			Simulations to run
+	 * @param parallelism	Most simulations to run at once
+	 * @return				Props structure
+	 */
+	static Props props (ArrayList<SimulationSpecification> specs, int parallelism) {
+		return Props.create(SweepManagerActor.class, specs, parallelism);
+	}
+
+	/**
+	 * Factory method for creating sweep managers that run as many simulations at once
+	 * as there are processors
+	 * @param specs				Simulations to run
+	 * @param context			Actor system, or context of the actor whose child the manager is
+	 * @return					Reference to new manager
+	 */
+	public static ActorRef makeSweepManager (ArrayList<SimulationSpecification> specs, ActorRefFactory context) {
+		return makeSweepManager(specs, Runtime.getRuntime().availableProcessors(), context);
+	}
+
+	/**
+	 * Factory method for creating sweep managers
+	 * @param specs				Simulations to run
+	 * @param parallelism		Most simulations to run at once
+	 * @param context			Actor system, or context of the actor whose child the manager is
+	 * @return					Reference to new manager
+	 */
+	public static ActorRef makeSweepManager (ArrayList<SimulationSpecification> specs, int parallelism, ActorRefFactory context) {
+		return context.actorOf(props(specs, parallelism));
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param specs			Simulations to run
+	 * @param parallelism	Most simulations to run at once
+	 */
+	private SweepManagerActor(ArrayList<SimulationSpecification> specs, int parallelism) {
+		super();
+		this.specs = specs;
+		this.parallelism = Math.max(1, parallelism);
+		this.startedAt = new long[specs.size()];
+		this.finishedAt = new long[specs.size()];
+		this.results = new SimulationFinishMsg[specs.size()];
+	}
+
+	// A simulation manager that throws has lost its simulation; stop it rather than restart it.
+	@Override
+	public SupervisorStrategy supervisorStrategy() {
+		return SupervisorStrategy.stoppingStrategy();
+	}
+
+	//Start simulations until parallelism are running or none are left.
+	private void startSimulations() {
+		while (running.size() < parallelism && next < specs.size()) {
+			SimulationSpecification spec = specs.get(next);
+			ActorRef simulation = SimulationManagerActor.makeSimulationManager(spec.getNodes(), spec.getConfig(),
+					getContext(), "sim-" + next);
+			getContext().watch(simulation);
+			running.put(simulation, next);
+			startedAt[next] = SimulationClock.current().nanoTime();
+			simulation.tell(new SimulationStartMsg(), getSelf());
+			next += 1;
+		}
+	}
+
+	//Report a simulation whose actors have all stopped, and move on to the next ones.
+	private void simulationDone(ActorRef simulation) {
+		int i = running.remove(simulation);
+		SimulationFinishMsg result = results[i];
+		results[i] = null;
+		long end = result == null ? SimulationClock.current().nanoTime() : finishedAt[i];
+		long ms = (end - startedAt[i]) / 1000000;
+		int[] counts = null;
+		if (result != null && result.getLog() != null) {
+			counts = new int[LogMsg.EventType.values().length];
+			for (Object o : result.getLog()) {
+				counts[((LogMsg)o).getType().ordinal()] += 1;
+			}
+		}
+		replyTo.tell(new SimulationSummaryMsg(specs.get(i).getName(), i, ms, counts,
+				result == null ? null : result.getLogFiles(), result == null), getSelf());
+
+		finished += 1;
+		if (result == null) {
+			failed += 1;
+		}
+
+		startSimulations();
+		if (finished == specs.size()) {
+			replyTo.tell(new SweepFinishMsg(finished, failed), getSelf());
+			getContext().stop(getSelf());
+		}
+	}
+
+	@Override
+	public void onReceive(Object msg) throws Exception {
+		if (msg instanceof SweepStartMsg) {
+			replyTo = getSender();
+			if (specs.isEmpty()) {
+				replyTo.tell(new SweepFinishMsg(0, 0), getSelf());
+				getContext().stop(getSelf());
+			} else {
+				startSimulations();
+			}
+		}
+		else if (msg instanceof SimulationFinishMsg) {
+			Integer i = running.get(getSender());
+			if (i != null && results[i] == null) {
+				results[i] = (SimulationFinishMsg)msg;
+				finishedAt[i] = SimulationClock.current().nanoTime();
+				getContext().stop(getSender());
+			}
+		}
+		else if (msg instanceof Terminated) {
+			ActorRef simulation = ((Terminated)msg).getActor();
+			if (running.containsKey(simulation)) {
+				simulationDone(simulation);
+			}
+		}
+		else {
+			throw new Exception("Bad message sent to sweep manager");
+		}
+	}
+}
@@ -1,104 +1,239 @@
 package cmsc433.p4.actors;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 
+import cmsc433.p4.enums.IssueMode;
 import cmsc433.p4.messages.AccessReleaseMsg;
+import cmsc433.p4.messages.AccessRequestBatchDeniedMsg;
+import cmsc433.p4.messages.AccessRequestBatchGrantedMsg;
+import cmsc433.p4.messages.AccessRequestBatchMsg;
 import cmsc433.p4.messages.AccessRequestDeniedMsg;
 import cmsc433.p4.messages.AccessRequestGrantedMsg;
 import cmsc433.p4.messages.AccessRequestMsg;
+import cmsc433.p4.messages.AccessRevokedMsg;
+import cmsc433.p4.messages.IssueTickMsg;
+import cmsc433.p4.messages.LeaseRenewMsg;
 import cmsc433.p4.messages.LogMsg;
 import cmsc433.p4.messages.ManagementRequestDeniedMsg;
 import cmsc433.p4.messages.ManagementRequestGrantedMsg;
 import cmsc433.p4.messages.ManagementRequestMsg;
+import cmsc433.p4.messages.SleepDoneMsg;
+import cmsc433.p4.messages.UserIdMsg;
 import cmsc433.p4.messages.UserStartMsg;
 import cmsc433.p4.util.AccessRelease;
 import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.AccessRequestBatch;
+import cmsc433.p4.util.Interner;
+import cmsc433.p4.util.IntObjectMap;
+import cmsc433.p4.util.LeaseRenewal;
 import cmsc433.p4.util.ManagementRequest;
+import cmsc433.p4.util.SimulationClock;
+import cmsc433.p4.util.SimulationConfig;
 import cmsc433.p4.util.SleepStep;
 import cmsc433.p4.util.UserScript;
 import akka.actor.ActorRef;
-import akka.actor.ActorSystem;
+import akka.actor.ActorRefFactory;
+import akka.actor.Cancellable;
 import akka.actor.Props;
 import akka.actor.UntypedActor;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
 
 /**
  * Class of user actors.
- * 
+ *
  * Each user has a script, which is a list of steps; each step is
  * in turn a list of requests to make all at once. The user should send each make
  * each request in a single step all at once, then await the responses before moving
  * on to the next step in the script.  When the script is finished, the user actor
  * should stop.
- * 
+ *
+ * How far a user may run ahead of its responses is set by the simulation's IssueMode.
+ * A windowed user keeps up to a window of steps taken from its script and unfinished;
+ * an open-loop user takes steps at a fixed rate.  Either way a step is only sent once
+ * every earlier unfinished step touching one of its resources is finished, so a
+ * release never overtakes its request, and a step with a sleep runs alone.  The
+ * default window of 1 is the one-step-at-a-time behaviour described above.
+ *
  * @author Rance Cleaveland
  *
  */
 public class UserActor extends UntypedActor {
-	
-	private UserScript script;	// Script of messages to send
+
+	private static final long TICK_MS = 10;	// Shortest interval between open-loop ticks
+
+	private UserScript.Cursor script;	// Position in script of messages to send
+	private int userId = -1;	// Dense ID of user, unique within the simulation; handed out by the local manager
 	private ActorRef localResourceManager;	// Local resource manager for user
 	private ActorRef logger;	// Actor to send logging messages to
-	
+	private final LoggingAdapter log = Logging.getLogger(getContext().system(), this);	// Diagnostics, not simulation events
+	private final IssueMode issueMode;
+	private final int window;	// Most unfinished steps, when windowed
+	private final double rate;	// Steps per second, when open-loop
+
 	/**
-	 * Props structure-generator for this class.  Assumption:  script is list of 
+	 * Props structure-generator for this class.  Assumption:  script is list of
 	 * non-empty lists of messages.
-	 * 
+	 *
 	 * @param script	Script of requests to make
 	 * @param localResourceManager	Local resource manager for user
 	 * @param logger	Actor to send logging messages to
+	 * @param config	System-wide settings of the simulation
 	 * @return			Props structure
 	 */
-	static Props props(UserScript script, ActorRef localResourceManager, ActorRef logger) {
-		return Props.create(UserActor.class, script, localResourceManager, logger);
+	static Props props(UserScript script, ActorRef localResourceManager, ActorRef logger, SimulationConfig config) {
+		return Props.create(UserActor.class, script, localResourceManager, logger, config);
 	}
-	
+
 	/**
-	 * Make a new user actor and install it in the given actor system
+	 * Make a new user actor and install it in the given actor system or actor context
 	 * @param script	Script of requests to make
 	 * @param localResourceManager	Local resource manager for user
 	 * @param logger	Actor to send logging messages to
-	 * @param system	Actor system
+	 * @param context	Actor system, or context of the actor whose child the user is
 	 * @return			Reference to new user actor
 	 */
-	public static ActorRef makeUser (UserScript script, ActorRef localResourceManager, ActorRef logger, ActorSystem system) {
-		ActorRef newUser = system.actorOf(props(script, localResourceManager, logger));
+	public static ActorRef makeUser (UserScript script, ActorRef localResourceManager, ActorRef logger, ActorRefFactory context) {
+		return makeUser(script, localResourceManager, logger, new SimulationConfig(), context);
+	}
+
+	/**
+	 * Make a new user actor and install it in the given actor system or actor context
+	 * @param script	Script of requests to make
+	 * @param localResourceManager	Local resource manager for user
+	 * @param logger	Actor to send logging messages to
+	 * @param config	System-wide settings of the simulation
+	 * @param context	Actor system, or context of the actor whose child the user is
+	 * @return			Reference to new user actor
+	 */
+	public static ActorRef makeUser (UserScript script, ActorRef localResourceManager, ActorRef logger,
+			SimulationConfig config, ActorRefFactory context) {
+		ActorRef newUser = context.actorOf(config.getDispatchers().forUser(props(script, localResourceManager, logger, config)));
 		return newUser;
 	}
-		
+
 	/**
 	 * Constructor.
-	 * 
+	 *
 	 * @param script	Script of requests to be made by user
 	 * @param localResourceManager	Local resource manager for user
 	 * @param logger	Actor to send logging messages to
+	 * @param config	System-wide settings of the simulation
 	 */
-	private UserActor(UserScript script, ActorRef localResourceManager, ActorRef logger) {
+	private UserActor(UserScript script, ActorRef localResourceManager, ActorRef logger, SimulationConfig config) {
 		super();
-		this.script = script;
+		this.script = script.cursor();
 		this.localResourceManager = localResourceManager;
 		this.logger = logger;
+		this.issueMode = config.getIssueMode();
+		this.window = Math.max(1, config.getWindow());
+		this.rate = config.getOpenLoopRate();
 	}
 
-	private ArrayList<Object> currentPendingRequests;	// Requests that need responses
-	
 	/**
-	 * Remove access-release requests.
+	 * Step taken from the script and not yet finished.
 	 */
-	private void removeResponselessRequests() {
-		for (int j = currentPendingRequests.size() - 1; j >= 0; j--) {
-			if (currentPendingRequests.get(j) instanceof AccessRelease || currentPendingRequests.get(j) instanceof SleepStep) {
-				currentPendingRequests.remove(j);
+	private static class Step {
+		private final ArrayList<Object> requests;	// Requests of the step
+		private final int[] resources;		// Distinct IDs, in the user's own numbering, of the resources it touches
+		private final boolean sleeps;		// Whether it has a sleep to honour
+		private boolean sent = false;
+		private int awaited = 0;			// Responses still to come
+		private boolean sleeping = false;	// Whether its sleep is still running
+
+		private Step (ArrayList<Object> requests, boolean honourSleeps, Interner names) {
+			this.requests = requests;
+			int size = 0;
+			for (Object req : requests) {
+				size += req instanceof AccessRequestBatch ? ((AccessRequestBatch) req).getRequests().size() : 1;
 			}
+			int[] ids = new int[size];
+			int count = 0;
+			boolean hasSleep = false;
+			for (Object req : requests) {
+				if (req instanceof AccessRequestBatch) {
+					for (AccessRequest r : ((AccessRequestBatch) req).getRequests()) {
+						count = addResource(ids, count, names.idOf(r.getResourceName()));
+					}
+				} else if (req instanceof SleepStep) {
+					hasSleep = honourSleeps;
+				} else {
+					String name = resourceOf(req);
+					if (name != null) {
+						count = addResource(ids, count, names.idOf(name));
+					}
+				}
+			}
+			this.resources = Arrays.copyOf(ids, count);
+			this.sleeps = hasSleep;
+		}
+
+		private boolean isFinished() {
+			return sent && awaited == 0 && !sleeping;
+		}
+
+		private static String resourceOf(Object req) {
+			if (req instanceof AccessRequest) {
+				return ((AccessRequest) req).getResourceName();
+			} else if (req instanceof AccessRelease) {
+				return ((AccessRelease) req).getResourceName();
+			} else if (req instanceof ManagementRequest) {
+				return ((ManagementRequest) req).getResourceName();
+			} else if (req instanceof LeaseRenewal) {
+				return ((LeaseRenewal) req).getResourceName();
+			}
+			return null;
+		}
+
+		// Add id to the first count entries of ids unless already there; return the new count.
+		private static int addResource(int[] ids, int count, int id) {
+			for (int i = 0; i < count; i++) {
+				if (ids[i] == id) {
+					return count;
+				}
+			}
+			ids[count] = id;
+			return count + 1;
 		}
 	}
-	
+
+	private final Interner resourceNames = new Interner();	// IDs of the resources named in our steps
+	private final IntObjectMap<ArrayDeque<Step>> queues = new IntObjectMap<ArrayDeque<Step>>();	// Unfinished steps by resource, in script order
+	private final IntObjectMap<Step> awaiting = new IntObjectMap<Step>();	// Step of each request awaiting a response, by request ID
+	private int lastRequestId = 0;	// Correlation ID of the last request sent
+	private final ArrayDeque<Step> ready = new ArrayDeque<Step>();	// Steps free to be sent
+	private int unfinished = 0;		// Steps taken from the script and not finished
+	private Step barrier = null;	// Unfinished step with a sleep, which runs alone
+	private Step next = null;		// Step taken from the script but held back
+	private boolean scriptFailed = false;	// Whether the script could not be read on
+	private boolean terminated = false;
+	private boolean startPending = false;	// Whether we were started before getting our ID
+	private Cancellable ticks = null;	// Open-loop clock
+	private long startNs;			// When an open-loop user started
+	private long taken = 0;			// Steps an open-loop user has taken
+
+	/**
+	 * Log the start of the user and, if open-loop, start its clock.
+	 */
+	private void start() {
+		logStart();		// Log starting of user
+		if (issueMode == IssueMode.OPEN_LOOP) {
+			startNs = SimulationClock.current().nanoTime();
+			long interval = Math.max(TICK_MS, (long) (1000 / rate));
+			ticks = SimulationClock.current().schedule(getContext().system(), interval, interval,
+					getSelf(), new IssueTickMsg(), getSelf());
+		}
+	}
+
 	/**
 	 * Method for logging start of user.
 	 */
 	private void logStart() {
 		logger.tell(LogMsg.makeUserStartLogMsg(getSelf()), getSelf());
 	}
-	
+
 	/**
 	 * Method for logging termination of user.
 	 */
@@ -107,112 +242,307 @@ public class UserActor extends UntypedActor {
 	}
 
 	/**
-	 * If script is non-empty, retrieve next step, delete it from script,
-	 * then send all messages.  Otherwise, stop actor.
-	 * 
-	 * @return	Next list of messages to send, if it exists, and null otherwise
-	 * @throws Exception 
+	 * Take as many steps from the script as the issue mode allows and send every step
+	 * free to go, repeating while finished steps free up more.  Once the script is
+	 * exhausted and every step finished, log termination and stop.
+	 *
+	 * @throws Exception
 	 */
 	private void sendNextMsgs () throws Exception {
-		if (script.isDone()) {  // No more messages to send, so log this and stop
+		do {
+			takeSteps();
+			while (!ready.isEmpty()) {
+				send(ready.poll());
+			}
+		} while (canTake());
+
+		if (ticks != null && isScriptDone()) {
+			ticks.cancel();		// Nothing left for the open-loop clock to take
+		}
+		if (unfinished == 0 && isScriptDone() && !terminated) {  // No more messages to send, so log this and stop
+			terminated = true;
 			logTerminate();
 			getContext().stop(getSelf());
 		}
-		else {	// Get next requests, record them, and send request messages.
+	}
+
+	/**
+	 * @return	Whether another step could be taken from the script right now
+	 */
+	private boolean canTake() throws Exception {
+		if (barrier != null || isScriptDone()) {
+			return false;
+		}
+		if (issueMode == IssueMode.OPEN_LOOP) {
+			return taken < due();
+		}
+		return unfinished < window && !(peek().sleeps && unfinished > 0);
+	}
+
+	/**
+	 * @return	Number of steps an open-loop user should have taken by now
+	 */
+	private long due() {
+		return 1 + (long) ((SimulationClock.current().nanoTime() - startNs) / 1e9 * rate);
+	}
+
+	/**
+	 * Take steps from the script while allowed, queueing each behind the unfinished
+	 * steps touching its resources, and marking it ready if there are none.
+	 */
+	private void takeSteps() throws Exception {
+		while (canTake()) {
+			Step step = next;
+			next = null;
+			unfinished += 1;
+			taken += 1;
+			if (step.sleeps) {
+				barrier = step;
+			}
+			boolean free = true;
+			for (int id : step.resources) {
+				ArrayDeque<Step> queue = queues.get(id);
+				if (queue == null) {
+					queue = new ArrayDeque<Step>();
+					queues.put(id, queue);
+				}
+				free &= queue.isEmpty();
+				queue.add(step);
+			}
+			if (free) {
+				ready.add(step);
+			}
+		}
+	}
+
+	/**
+	 * @return	Next step of the script, read but not taken
+	 */
+	private Step peek() throws Exception {
+		if (next == null) {
+			next = new Step(script.nextStep(), issueMode != IssueMode.OPEN_LOOP, resourceNames);
+		}
+		return next;
+	}
+
+	/**
+	 * @return	Whether every step of the script has been taken
+	 */
+	private boolean isScriptDone() {
+		if (next != null) {
+			return false;
+		}
+		if (!scriptFailed) {
 			try {
-				currentPendingRequests = script.firstStep();
-				script = script.rest();
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
-			
-			// Send all messages corresponding to current requests.
-			long longestSleep = 0;
-			for (Object req : currentPendingRequests) {
-				
-				if (req instanceof SleepStep) {
-					if (((SleepStep) req).getDurationMs() > longestSleep)
-						longestSleep = ((SleepStep) req).getDurationMs();
-				} 
+				if (!script.isDone()) {
+					peek();
+					return false;
+				}
+			} catch (Exception e) {	// Script cannot go on, e.g. a bad line of a streamed script
+				log.error(e, "User {} cannot go on with its script", userId);
+				scriptFailed = true;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Send all requests of a step, noting those that await a response, and start its
+	 * sleep if it has one.
+	 *
+	 * @param step	Step to send
+	 * @throws Exception
+	 */
+	private void send (Step step) throws Exception {
+		step.sent = true;
+		long longestSleep = 0;
+		for (Object req : step.requests) {
+
+			if (req instanceof SleepStep) {
+				if (((SleepStep) req).getDurationMs() > longestSleep)
+					longestSleep = ((SleepStep) req).getDurationMs();
+			}
+			else {
+				// Create request message to send
+				Object msg = null;
+				boolean answered = true;
+				int requestId = lastRequestId + 1;
+				if (req instanceof AccessRequest) {
+					msg = new AccessRequestMsg ((AccessRequest)req, getSelf(), userId, requestId);
+				}
+				else if (req instanceof ManagementRequest) {
+					msg = new ManagementRequestMsg ((ManagementRequest)req, getSelf(), userId, requestId);
+				}
+				else if (req instanceof AccessRequestBatch) {
+					msg = new AccessRequestBatchMsg ((AccessRequestBatch)req, getSelf(), userId, requestId);
+				}
+				else if (req instanceof AccessRelease) {
+					msg = new AccessReleaseMsg ((AccessRelease) req, getSelf(), userId);
+					answered = false;
+				}
+				else if (req instanceof LeaseRenewal) {
+					msg = new LeaseRenewMsg ((LeaseRenewal) req, getSelf(), userId);
+					answered = false;
+				}
 				else {
-					// Create request message to send
-					Object msg = null;
-					if (req instanceof AccessRequest) {
-						msg = new AccessRequestMsg ((AccessRequest)req, getSelf());
-					}
-					else if (req instanceof ManagementRequest) {
-						msg = new ManagementRequestMsg ((ManagementRequest)req, getSelf());
-					}
-					else if (req instanceof AccessRelease) {
-						msg = new AccessReleaseMsg ((AccessRelease) req, getSelf());
-					}
-					else {
-						throw new Exception ("Bad access request in sendNextMsgs()");
+					throw new Exception ("Bad access request in sendNextMsgs()");
+				}
+				if (answered) {
+					lastRequestId = requestId;
+					if (req instanceof AccessRequestBatch) {
+						//The batch's requests go by the IDs after its own.
+						lastRequestId += ((AccessRequestBatch)req).getRequests().size();
 					}
-					// send message
-					localResourceManager.tell(msg, getSelf());
+					awaiting.put(requestId, step);
+					step.awaited += 1;
 				}
+				// send message
+				localResourceManager.tell(msg, getSelf());
+			}
+		}
+
+		// Sleep for the duration of the longest sleep statement in this step, if there was a sleep statement,
+		// without holding a thread: the step is over once the wake-up arrives and every response is in.
+		if (step.sleeps && longestSleep > 0) {
+			step.sleeping = true;
+			SimulationClock.current().scheduleOnce(getContext().system(), longestSleep, getSelf(), new SleepDoneMsg(), getSelf());
+		}
+
+		if (step.isFinished()) {
+			finish(step);
+		}
+	}
+
+	/**
+	 * Retire a finished step, freeing the steps queued behind it that wait for
+	 * nothing else.
+	 *
+	 * @param step	Finished step
+	 */
+	private void finish (Step step) {
+		unfinished -= 1;
+		if (barrier == step) {
+			barrier = null;
+		}
+		for (int id : step.resources) {
+			ArrayDeque<Step> queue = queues.get(id);
+			queue.poll();	// A step is only sent at the head of each of its queues
+			Step head = queue.peek();
+			if (head == null) {
+				queues.remove(id);
+			} else if (!head.sent && isFree(head)) {
+				ready.add(head);
+			}
+		}
+	}
+
+	/**
+	 * @return	Whether a step is at the head of the queue of each of its resources
+	 */
+	private boolean isFree (Step step) {
+		for (int id : step.resources) {
+			if (queues.get(id).peek() != step) {
+				return false;
 			}
-			// Remove requests from current pending list that do not involve awaiting a
-			// response
-			removeResponselessRequests();
-			
-			// Sleep for the duration of the longest sleep statement in this step, if there was a sleep statement
-			if (longestSleep > 0)
-				Thread.sleep(longestSleep);
-		
-			// Send the next messages in the case that no requests warranted a response.
-			if (currentPendingRequests.isEmpty())
-				sendNextMsgs();
 		}
+		return true;
 	}
-	
+
 	/**
-	 * Process request from list of pending requests by removing.  Throw exception if message
-	 * is not in list.
-	 * 
-	 * @param msg	Request to remove.
-	 * @throws Exception 
+	 * Process response to a request of a sent step.  Throw exception if no step awaits
+	 * it.
+	 *
+	 * @param requestId	Correlation ID of request responded to.
+	 * @throws Exception
 	 */
-	private void processPendingRequest (Object msg) throws Exception {
-		int i = currentPendingRequests.indexOf(msg);
-		if (i != -1) {
-			currentPendingRequests.remove(i);
+	private void processPendingRequest (int requestId) throws Exception {
+		Step step = awaiting.remove(requestId);
+		if (step != null) {
+			step.awaited -= 1;
+			if (step.isFinished()) {
+				finish(step);
+			}
 		}
 		else {
 			throw (new Exception ("Message not found in pending message list"));
 		}
 	}
-	
+
+	@Override
+	public void postStop() throws Exception {
+		if (ticks != null) {
+			ticks.cancel();
+		}
+		script.close();	// Release a streamed script's file if stopped before its end
+	}
+
 	@Override
 	public void onReceive(Object msg) throws Exception {
-		// Start up user and send first round of messages.		
-		if (msg instanceof UserStartMsg) {
-			logStart();		// Log starting of user
-			sendNextMsgs();
+		// Our local manager has taken us on.  Nothing is sent before we are started, and
+		// a start that came first waits for the ID.
+		if (msg instanceof UserIdMsg) {
+			userId = ((UserIdMsg) msg).getUserId();
+			if (!startPending) {
+				return;
+			}
+			start();
 		}
-		
-		// Find correspond request in pending request list and delete it.		
+
+		// Start up user and send first round of messages.
+		else if (msg instanceof UserStartMsg) {
+			if (userId < 0) {
+				startPending = true;
+				return;
+			}
+			start();
+		}
+
+		// Sleep of the running step with a sleep is over.
+		else if (msg instanceof SleepDoneMsg) {
+			if (barrier != null) {
+				barrier.sleeping = false;
+				if (barrier.isFinished()) {
+					finish(barrier);
+				}
+			}
+		}
+
+		// Open-loop steps may have come due.
+		else if (msg instanceof IssueTickMsg) {
+		}
+
+		// Lease ran out; the script carries on and any later release is ignored.
+		else if (msg instanceof AccessRevokedMsg) {
+			return;
+		}
+
+		// Find correspond request among sent steps and note its response.
 		else if (msg instanceof AccessRequestDeniedMsg) {
 			AccessRequestDeniedMsg aMsg = (AccessRequestDeniedMsg) msg;
-			processPendingRequest (aMsg.getRequest());
+			processPendingRequest (aMsg.getRequestId());
 		}
 		else if (msg instanceof AccessRequestGrantedMsg) {
 			AccessRequestGrantedMsg aMsg = (AccessRequestGrantedMsg) msg;
-			processPendingRequest (aMsg.getRequest());	
+			processPendingRequest (aMsg.getRequestId());
+		}
+		else if (msg instanceof AccessRequestBatchDeniedMsg) {
+			AccessRequestBatchDeniedMsg bMsg = (AccessRequestBatchDeniedMsg) msg;
+			processPendingRequest (bMsg.getRequestId());
+		}
+		else if (msg instanceof AccessRequestBatchGrantedMsg) {
+			AccessRequestBatchGrantedMsg bMsg = (AccessRequestBatchGrantedMsg) msg;
+			processPendingRequest (bMsg.getRequestId());
 		}
 		else if (msg instanceof ManagementRequestDeniedMsg) {
 			ManagementRequestDeniedMsg mMsg = (ManagementRequestDeniedMsg) msg;
-			processPendingRequest (mMsg.getRequest());
+			processPendingRequest (mMsg.getRequestId());
 		}
 		else if (msg instanceof ManagementRequestGrantedMsg) {
 			ManagementRequestGrantedMsg mMsg = (ManagementRequestGrantedMsg) msg;
-			processPendingRequest (mMsg.getRequest());
-		}
-		
-		// Check to see if pending request list is empty, and if so, move on to next step.
-		if (currentPendingRequests.isEmpty()) {
-			sendNextMsgs();
+			processPendingRequest (mMsg.getRequestId());
 		}
+
+		// Send whatever steps are now free to go, or stop if the script is over.
+		sendNextMsgs();
 	} // end of onReceive
 }
@@ -0,0 +1,154 @@
+package cmsc433.p4.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+import cmsc433.p4.actors.ResourceManagerActor;
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.enums.AccessType;
+import cmsc433.p4.enums.FairnessPolicy;
+import cmsc433.p4.messages.AccessReleaseMsg;
+import cmsc433.p4.messages.AccessRequestGrantedMsg;
+import cmsc433.p4.messages.AccessRequestMsg;
+import cmsc433.p4.messages.AddInitialLocalResourcesRequestMsg;
+import cmsc433.p4.messages.AddRemoteManagersRequestMsg;
+import cmsc433.p4.messages.SimulationFinishMsg;
+import cmsc433.p4.messages.SimulationStartMsg;
+import cmsc433.p4.util.AccessRelease;
+import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.SimulationConfig;
+import cmsc433.p4.util.Systems;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import akka.pattern.Patterns;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Heap allocation per request on the request/grant/release path of one manager.
+ * 
+ * Drivers keep WINDOW read requests outstanding against random resources, as in
+ * ShardingBenchmark, but reuse prebuilt requests and releases so that what is measured
+ * is the manager's own allocation plus message passing.  Allocation is summed over
+ * every thread with the HotSpot per-thread counters.
+ * 
+ * Runs once logging every event and once logging none, to show what the log costs.
+ * 
+ */
+public class AllocationBenchmark {
+	
+	private static final int RESOURCES = 1024;
+	private static final int DRIVERS = 4;
+	private static final int WINDOW = 32;
+	private static final long RUN_MS = 3000;
+	
+	public static void main(String[] args) throws Exception {
+		SimulationConfig quiet = new SimulationConfig();
+		quiet.setAllLogged(false);
+		SimulationConfig[] configs = { new SimulationConfig(), quiet };
+		String[] names = { "all events logged", "no events logged" };
+		
+		for (int i = 0; i < configs.length; i++) {
+			// Warm up.
+			run(configs[i], 1000);
+			
+			long[] result = run(configs[i], RUN_MS);
+			long grants = result[0];
+			long bytes = result[1];
+			System.out.println(names[i] + ": " + grants * 1000 / RUN_MS + " requests/s, " + bytes / grants + " bytes/request, "
+					+ bytes * 1000 / RUN_MS / (1024 * 1024) + " MB/s allocated");
+		}
+	}
+	
+	// Grants and bytes allocated in runMs milliseconds.
+	private static long[] run(SimulationConfig config, long runMs) throws Exception {
+		ActorSystem system = ActorSystem.create("Benchmark");
+		ActorRef logger = system.actorOf(Props.create(ShardingBenchmark.Discard.class));
+		ActorRef manager = ResourceManagerActor.makeResourceManager(logger, system, FairnessPolicy.READER_PREFERRING, config);
+		
+		long timeout = 10000L;
+		Await.result(Patterns.ask(manager, new AddInitialLocalResourcesRequestMsg(Systems.makeResources("R", RESOURCES)), timeout), Duration.Inf());
+		ArrayList<ActorRef> managers = new ArrayList<ActorRef>();
+		managers.add(manager);
+		Await.result(Patterns.ask(manager, new AddRemoteManagersRequestMsg(managers), timeout), Duration.Inf());
+		
+		ArrayList<ActorRef> drivers = new ArrayList<ActorRef>();
+		for (int i = 0; i < DRIVERS; i++) {
+			drivers.add(system.actorOf(Props.create(Driver.class, manager, i)));
+		}
+		
+		long before = allocatedBytes();
+		for (ActorRef driver : drivers) {
+			driver.tell(new SimulationStartMsg(), ActorRef.noSender());
+		}
+		Thread.sleep(runMs);
+		
+		long grants = 0;
+		for (ActorRef driver : drivers) {
+			grants += (Long)Await.result(Patterns.ask(driver, new SimulationFinishMsg((ArrayList<Object>)null), timeout), Duration.Inf());
+		}
+		long bytes = allocatedBytes() - before;
+		
+		Simulations.shutdown(system);
+		return new long[] { grants, bytes };
+	}
+	
+	// Bytes allocated so far by all live threads.
+	private static long allocatedBytes() {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long total = 0;
+		for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+			if (bytes > 0) {
+				total += bytes;
+			}
+		}
+		return total;
+	}
+	
+	/**
+	 * Stand-in user keeping WINDOW read requests outstanding, reusing prebuilt messages.
+	 */
+	public static class Driver extends UntypedActor {
+		
+		private final ActorRef manager;
+		private final Random random;
+		private final AccessRequestMsg[] requests = new AccessRequestMsg[RESOURCES];
+		private final HashMap<String, AccessReleaseMsg> releaseOf = new HashMap<String, AccessReleaseMsg>();
+		private long grants = 0;
+		private boolean stopped = false;
+		
+		public Driver (ActorRef manager, int id) {
+			this.manager = manager;
+			this.random = new Random(id);
+			for (int i = 0; i < RESOURCES; i++) {
+				String name = "R_" + i;
+				requests[i] = new AccessRequestMsg(new AccessRequest(name, AccessRequestType.CONCURRENT_READ_NONBLOCKING), getSelf(), id);
+				AccessRelease release = new AccessRelease(name, AccessType.CONCURRENT_READ);
+				releaseOf.put(name, new AccessReleaseMsg(release, getSelf(), id));
+			}
+		}
+		
+		@Override
+		public void onReceive(Object msg) throws Exception {
+			if (msg instanceof SimulationStartMsg) {
+				for (int i = 0; i < WINDOW; i++) {
+					manager.tell(requests[random.nextInt(RESOURCES)], getSelf());
+				}
+			} else if (msg instanceof AccessRequestGrantedMsg) {
+				grants++;
+				String resource = ((AccessRequestGrantedMsg)msg).getRequest().getResourceName();
+				manager.tell(releaseOf.get(resource), getSelf());
+				if (!stopped) {
+					manager.tell(requests[random.nextInt(RESOURCES)], getSelf());
+				}
+			} else if (msg instanceof SimulationFinishMsg) {
+				stopped = true;
+				getSender().tell(grants, getSelf());
+			}
+		}
+	}
+}
@@ -0,0 +1,479 @@
+package cmsc433.p4.bench;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Random;
+
+import cmsc433.p4.actors.ResourceManagerActor;
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.enums.AccessType;
+import cmsc433.p4.enums.DiscoveryMode;
+import cmsc433.p4.enums.FairnessPolicy;
+import cmsc433.p4.messages.AccessReleaseMsg;
+import cmsc433.p4.messages.AccessRequestDeniedMsg;
+import cmsc433.p4.messages.AccessRequestGrantedMsg;
+import cmsc433.p4.messages.AccessRequestMsg;
+import cmsc433.p4.messages.AddInitialLocalResourcesRequestMsg;
+import cmsc433.p4.messages.AddRemoteManagersRequestMsg;
+import cmsc433.p4.messages.LogMsg;
+import cmsc433.p4.messages.SimulationFinishMsg;
+import cmsc433.p4.messages.SimulationStartMsg;
+import cmsc433.p4.util.AccessRelease;
+import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.ResourceLock;
+import cmsc433.p4.util.SimulationConfig;
+import cmsc433.p4.util.Systems;
+import cmsc433.p4.util.UserScript;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import akka.pattern.Patterns;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Regression suite for the resource manager's hot paths:
+ * <ul>
+ * <li>grant/deny/release throughput of one manager under uncontended, read-heavy,
+ * write-heavy and mixed workloads;</li>
+ * <li>discovery latency as the number of managers grows;</li>
+ * <li>UserScript.fromString parsing;</li>
+ * <li>LogMsg creation and formatting.</li>
+ * </ul>
+ * Each case is set up once, run for WARMUP_ITERATIONS untimed iterations and then
+ * MEASURED_ITERATIONS timed ones, and reported as mean and standard deviation of the
+ * time per operation, with the matching throughput.  Workloads come from fixed seeds,
+ * so two runs on the same machine do the same work; run with fixed heap and collector
+ * settings (e.g. -Xms1g -Xmx1g -XX:+UseParallelGC) and nothing else busy, and compare
+ * against a baseline from the same machine.
+ *
+ * Arguments:
+ * <ul>
+ * <li>--save=FILE writes each case's mean ns/op to FILE, as a baseline;</li>
+ * <li>--baseline=FILE compares each case against the baseline in FILE, and exits with
+ * status 1 if any is slower by more than the tolerance;</li>
+ * <li>--tolerance=FRACTION sets that tolerance, DEFAULT_TOLERANCE if not given;</li>
+ * <li>any other argument selects the cases whose names contain one of them.</li>
+ * </ul>
+ *
+ */
+public class BenchmarkSuite {
+
+	private static final long SEED = 433L;
+	private static final int WARMUP_ITERATIONS = 3;
+	private static final int MEASURED_ITERATIONS = 5;
+	private static final long ITERATION_MS = 1000;
+	private static final double DEFAULT_TOLERANCE = 0.15;	// Slowdown over the baseline allowed
+
+	// Manager workloads.
+	private static final int DRIVERS = 4;
+	private static final int WINDOW = 32;				// Requests each driver keeps outstanding
+	private static final int HOT_RESOURCES = 16;		// Resources shared by the contended workloads
+	private static final int SLICE = 64;				// Resources each driver has to itself when uncontended
+
+	private static final int[] DISCOVERY_MANAGERS = { 2, 8, 32, 128 };
+	private static final int SCRIPT_LINES = 1000;
+
+	// Results are summed here so the JIT cannot drop the work that produced them.
+	static volatile long sink;
+
+	/**
+	 * One benchmark: set up once, then timed iterations, then torn down.
+	 */
+	private static abstract class Case {
+
+		private final String name;
+
+		Case (String name) {
+			this.name = name;
+		}
+
+		void setUp() throws Exception {
+		}
+
+		/**
+		 * @return	Nanoseconds per operation in this iteration
+		 */
+		abstract double iteration() throws Exception;
+
+		void tearDown() throws Exception {
+		}
+	}
+
+	/**
+	 * Operation repeated by a timed loop.
+	 */
+	private static interface Op {
+		void run() throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+		ArrayList<Case> cases = new ArrayList<Case>();
+		cases.add(new ManagerCase("manager.uncontended", 0.5, false));
+		cases.add(new ManagerCase("manager.readHeavy", 0.9, true));
+		cases.add(new ManagerCase("manager.writeHeavy", 0.1, true));
+		cases.add(new ManagerCase("manager.mixed", 0.5, true));
+		for (int managers : DISCOVERY_MANAGERS) {
+			cases.add(new DiscoveryCase(managers, DiscoveryMode.BROADCAST));
+			cases.add(new DiscoveryCase(managers, DiscoveryMode.DIRECTORY));
+		}
+		cases.add(new ScriptParseCase());
+		cases.add(new LogMsgCase());
+
+		String save = null;
+		Properties baseline = null;
+		double tolerance = DEFAULT_TOLERANCE;
+		ArrayList<String> filters = new ArrayList<String>();
+		for (String arg : args) {
+			if (arg.startsWith("--save=")) {
+				save = arg.substring("--save=".length());
+			} else if (arg.startsWith("--baseline=")) {
+				baseline = load(arg.substring("--baseline=".length()));
+			} else if (arg.startsWith("--tolerance=")) {
+				tolerance = Double.parseDouble(arg.substring("--tolerance=".length()));
+			} else {
+				filters.add(arg);
+			}
+		}
+
+		System.out.println(System.getProperty("java.vm.name") + " " + System.getProperty("java.version") + ", "
+				+ System.getProperty("os.name") + " " + System.getProperty("os.arch") + ", "
+				+ Runtime.getRuntime().availableProcessors() + " cores, "
+				+ Runtime.getRuntime().maxMemory() / (1024 * 1024) + " MB heap");
+		System.out.println("case\tns/op\t+/-\tops/s" + (baseline != null ? "\tbaseline\tchange" : ""));
+		Properties results = new Properties();
+		ArrayList<String> regressions = new ArrayList<String>();
+		for (Case c : cases) {
+			if (selected(c.name, filters)) {
+				double mean = run(c);
+				results.setProperty(c.name, Double.toString(mean));
+				String base = baseline != null ? baseline.getProperty(c.name) : null;
+				if (base != null) {
+					double expected = Double.parseDouble(base);
+					double change = mean / expected - 1;
+					boolean regressed = change > tolerance;
+					System.out.println(String.format("\t%.1f\t%+.1f%%", expected, change * 100) + (regressed ? "\tREGRESSION" : ""));
+					if (regressed) {
+						regressions.add(c.name);
+					}
+				} else {
+					System.out.println();
+				}
+			}
+		}
+
+		if (save != null) {
+			OutputStream out = new FileOutputStream(save);
+			try {
+				results.store(out, "BenchmarkSuite baseline, mean ns/op");
+			} finally {
+				out.close();
+			}
+		}
+		if (!regressions.isEmpty()) {
+			System.out.println(regressions.size() + " case(s) slower than the baseline by more than "
+					+ String.format("%.0f%%", tolerance * 100) + ": " + regressions);
+			System.exit(1);
+		}
+	}
+
+	private static Properties load(String file) throws Exception {
+		Properties properties = new Properties();
+		InputStream in = new FileInputStream(file);
+		try {
+			properties.load(in);
+		} finally {
+			in.close();
+		}
+		return properties;
+	}
+
+	private static boolean selected(String name, ArrayList<String> filters) {
+		if (filters.isEmpty()) {
+			return true;
+		}
+		for (String filter : filters) {
+			if (name.contains(filter)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// Runs and reports a case; returns its mean nanoseconds per operation.
+	private static double run(Case c) throws Exception {
+		c.setUp();
+		try {
+			for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+				c.iteration();
+			}
+			double[] ns = new double[MEASURED_ITERATIONS];
+			for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+				System.gc();
+				ns[i] = c.iteration();
+			}
+			double mean = 0;
+			for (double n : ns) {
+				mean += n;
+			}
+			mean /= ns.length;
+			double variance = 0;
+			for (double n : ns) {
+				variance += (n - mean) * (n - mean);
+			}
+			double deviation = Math.sqrt(variance / (ns.length - 1));
+			System.out.print(c.name + "\t" + String.format("%.1f\t%.1f\t%.0f", mean, deviation, 1e9 / mean));
+			return mean;
+		} finally {
+			c.tearDown();
+		}
+	}
+
+	// Runs op over and over for about ITERATION_MS; returns nanoseconds per run.
+	private static double timed(Op op) throws Exception {
+		long start = System.nanoTime();
+		long deadline = start + ITERATION_MS * 1000000;
+		long ops = 0;
+		long now;
+		do {
+			for (int i = 0; i < 100; i++) {
+				op.run();
+			}
+			ops += 100;
+			now = System.nanoTime();
+		} while (now < deadline);
+		return (double)(now - start) / ops;
+	}
+
+	/**
+	 * Drivers keep WINDOW non-blocking requests outstanding against one manager, each
+	 * a read with probability readRatio and otherwise a write, and release every grant
+	 * straight away.  Contended workloads share HOT_RESOURCES resources between all
+	 * drivers; otherwise each driver has SLICE resources of its own, so every request
+	 * is granted.  An operation is a request answered, granted or denied.
+	 */
+	private static class ManagerCase extends Case {
+
+		private final double readRatio;
+		private final boolean contended;
+		private ActorSystem system;
+		private ArrayList<ActorRef> drivers = new ArrayList<ActorRef>();
+
+		ManagerCase (String name, double readRatio, boolean contended) {
+			super(name);
+			this.readRatio = readRatio;
+			this.contended = contended;
+		}
+
+		void setUp() throws Exception {
+			system = ActorSystem.create("Benchmark");
+			ActorRef logger = system.actorOf(Props.create(ShardingBenchmark.Discard.class));
+			SimulationConfig config = new SimulationConfig();
+			config.setAllLogged(false);
+			ActorRef manager = ResourceManagerActor.makeResourceManager(logger, system, FairnessPolicy.READER_PREFERRING, config);
+
+			int resources = contended ? HOT_RESOURCES : DRIVERS * SLICE;
+			long timeout = 10000L;
+			Await.result(Patterns.ask(manager, new AddInitialLocalResourcesRequestMsg(Systems.makeResources("R", resources)), timeout), Duration.Inf());
+			ArrayList<ActorRef> managers = new ArrayList<ActorRef>();
+			managers.add(manager);
+			Await.result(Patterns.ask(manager, new AddRemoteManagersRequestMsg(managers), timeout), Duration.Inf());
+
+			for (int i = 0; i < DRIVERS; i++) {
+				int first = contended ? 0 : i * SLICE;
+				int count = contended ? HOT_RESOURCES : SLICE;
+				drivers.add(system.actorOf(Props.create(Driver.class, manager, i, first, count, readRatio)));
+			}
+		}
+
+		double iteration() throws Exception {
+			for (ActorRef driver : drivers) {
+				driver.tell(new SimulationStartMsg(), ActorRef.noSender());
+			}
+			Thread.sleep(ITERATION_MS);
+			long answered = 0;
+			for (ActorRef driver : drivers) {
+				answered += (Long)Await.result(Patterns.ask(driver, new SimulationFinishMsg((ArrayList<Object>)null), 10000L), Duration.Inf());
+			}
+			// Let requests still in flight drain before the next iteration.
+			Thread.sleep(100);
+			return ITERATION_MS * 1e6 / answered;
+		}
+
+		void tearDown() throws Exception {
+			Simulations.shutdown(system);
+		}
+	}
+
+	/**
+	 * Stand-in user for ManagerCase, reusing prebuilt requests and releases.  Started
+	 * and finished once per iteration.
+	 */
+	public static class Driver extends UntypedActor {
+
+		private final ActorRef manager;
+		private final Random random;
+		private final double readRatio;
+		private final AccessRequestMsg[] reads;
+		private final AccessRequestMsg[] writes;
+		private final HashMap<String, AccessReleaseMsg> readReleases = new HashMap<String, AccessReleaseMsg>();
+		private final HashMap<String, AccessReleaseMsg> writeReleases = new HashMap<String, AccessReleaseMsg>();
+		private long answered = 0;
+		private boolean running = false;
+
+		public Driver (ActorRef manager, int id, int first, int count, double readRatio) {
+			this.manager = manager;
+			this.random = new Random(SEED + id);
+			this.readRatio = readRatio;
+			reads = new AccessRequestMsg[count];
+			writes = new AccessRequestMsg[count];
+			for (int i = 0; i < count; i++) {
+				String name = "R_" + (first + i);
+				reads[i] = new AccessRequestMsg(new AccessRequest(name, AccessRequestType.CONCURRENT_READ_NONBLOCKING), getSelf(), id);
+				writes[i] = new AccessRequestMsg(new AccessRequest(name, AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING), getSelf(), id);
+				AccessRelease read = new AccessRelease(name, AccessType.CONCURRENT_READ);
+				AccessRelease write = new AccessRelease(name, AccessType.EXCLUSIVE_WRITE);
+				readReleases.put(name, new AccessReleaseMsg(read, getSelf(), id));
+				writeReleases.put(name, new AccessReleaseMsg(write, getSelf(), id));
+			}
+		}
+
+		private void request() {
+			int i = random.nextInt(reads.length);
+			manager.tell(random.nextDouble() < readRatio ? reads[i] : writes[i], getSelf());
+		}
+
+		@Override
+		public void onReceive(Object msg) throws Exception {
+			if (msg instanceof SimulationStartMsg) {
+				answered = 0;
+				running = true;
+				for (int i = 0; i < WINDOW; i++) {
+					request();
+				}
+			} else if (msg instanceof AccessRequestGrantedMsg) {
+				answered++;
+				AccessRequest granted = ((AccessRequestGrantedMsg)msg).getRequest();
+				boolean read = ResourceLock.accessTypeOf(granted.getType()) == AccessType.CONCURRENT_READ;
+				manager.tell((read ? readReleases : writeReleases).get(granted.getResourceName()), getSelf());
+				if (running) {
+					request();
+				}
+			} else if (msg instanceof AccessRequestDeniedMsg) {
+				answered++;
+				if (running) {
+					request();
+				}
+			} else if (msg instanceof SimulationFinishMsg) {
+				running = false;
+				getSender().tell(answered, getSelf());
+			}
+		}
+	}
+
+	/**
+	 * Mean time from request to grant of a resource the first manager has not seen,
+	 * from DiscoveryBenchmark, in a fresh system each iteration.
+	 */
+	private static class DiscoveryCase extends Case {
+
+		private final int managers;
+		private final DiscoveryMode mode;
+
+		DiscoveryCase (int managers, DiscoveryMode mode) {
+			super("discovery." + mode.toString().toLowerCase() + "." + managers);
+			this.managers = managers;
+			this.mode = mode;
+		}
+
+		double iteration() throws Exception {
+			long[] latencies = DiscoveryBenchmark.run(managers, mode);
+			long total = 0;
+			for (long l : latencies) {
+				total += l;
+			}
+			return (double)total / latencies.length;
+		}
+	}
+
+	/**
+	 * Parsing a SCRIPT_LINES-line script mixing every kind of statement.  An operation
+	 * is one whole script.
+	 */
+	private static class ScriptParseCase extends Case {
+
+		private String script;
+
+		ScriptParseCase () {
+			super("userScript.fromString");
+		}
+
+		void setUp() {
+			Random random = new Random(SEED);
+			String[] statements = { "read-request-b", "write-request-b", "read-request-n", "write-request-n",
+					"read-release", "write-release", "read-request-b:500", "read-renew:500" };
+			StringBuilder text = new StringBuilder();
+			for (int i = 0; i < SCRIPT_LINES; i++) {
+				int pick = random.nextInt(10);
+				String resource = "R_" + random.nextInt(1000);
+				if (pick < statements.length) {
+					text.append(statements[pick]).append(' ').append(resource);
+				} else if (pick == statements.length) {
+					text.append("read-request-b ").append(resource).append(" & write-request-b R_").append(random.nextInt(1000));
+				} else {
+					text.append("sleep 10 | disable ").append(resource);
+				}
+				text.append('\n');
+			}
+			script = text.toString();
+		}
+
+		double iteration() throws Exception {
+			return timed(new Op() {
+				public void run() {
+					sink += UserScript.fromString(script).isDone() ? 1 : 0;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Building a grant event as a manager does and formatting it as the text log does.
+	 */
+	private static class LogMsgCase extends Case {
+
+		private ActorSystem system;
+		private ActorRef user;
+		private ActorRef manager;
+		private AccessRequest request;
+
+		LogMsgCase () {
+			super("logMsg.createAndFormat");
+		}
+
+		void setUp() {
+			system = ActorSystem.create("Benchmark");
+			user = system.actorOf(Props.empty());
+			manager = system.actorOf(Props.empty());
+			request = new AccessRequest("R_0", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING);
+		}
+
+		double iteration() throws Exception {
+			return timed(new Op() {
+				public void run() {
+					sink += LogMsg.makeAccessRequestGrantedLogMsg(user, manager, request).toString().length();
+				}
+			});
+		}
+
+		void tearDown() throws Exception {
+			Simulations.shutdown(system);
+		}
+	}
+}
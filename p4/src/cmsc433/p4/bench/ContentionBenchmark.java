@@ -0,0 +1,51 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+
+import cmsc433.p4.enums.Popularity;
+import cmsc433.p4.messages.LogMsg;
+import cmsc433.p4.messages.SimulationFinishMsg;
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.WorkloadGenerator;
+
+/**
+ * Runs generated workloads of USERS users over RESOURCES resources with increasingly
+ * skewed resource popularity, to show where contention sets in.  Reports, for each
+ * Zipf exponent (uniform first), the time to finish and the share of non-blocking
+ * requests denied.
+ *
+ */
+public class ContentionBenchmark {
+
+	private static final int NODES = 4;
+	private static final int RESOURCES = 1000;
+	private static final int USERS = 10000;
+	private static final int OPERATIONS = 5;
+	private static final double[] EXPONENTS = { 0.0, 0.6, 0.8, 1.0, 1.2, 1.5 };
+
+	public static void main(String[] args) throws Exception {
+		System.out.println("zipf s\tms\trequests\tdenied %");
+		for (double s : EXPONENTS) {
+			WorkloadGenerator generator = new WorkloadGenerator();
+			generator.setNodes(NODES);
+			generator.setResources(RESOURCES);
+			generator.setUsers(USERS);
+			generator.setOperationsPerUser(OPERATIONS);
+			if (s == 0.0) {
+				generator.setPopularity(Popularity.UNIFORM);
+			} else {
+				generator.setZipfExponent(s);
+			}
+			ArrayList<NodeSpecification> nodes = generator.generate();
+
+			long start = System.currentTimeMillis();
+			SimulationFinishMsg result = Simulations.run(nodes);
+			long ms = System.currentTimeMillis() - start;
+
+			int granted = Simulations.count(result, LogMsg.EventType.ACCESS_REQUEST_GRANTED);
+			int denied = Simulations.count(result, LogMsg.EventType.ACCESS_REQUEST_DENIED);
+			System.out.println((s == 0.0 ? "uniform" : String.valueOf(s)) + "\t" + ms + "\t" + (granted + denied)
+					+ "\t" + String.format("%.1f", 100.0 * denied / (granted + denied)));
+		}
+	}
+}
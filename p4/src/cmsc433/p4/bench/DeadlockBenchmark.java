@@ -0,0 +1,94 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+
+import cmsc433.p4.enums.AccessRequestDenialReason;
+import cmsc433.p4.messages.LogMsg;
+import cmsc433.p4.messages.SimulationFinishMsg;
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.Resource;
+import cmsc433.p4.util.Systems;
+import cmsc433.p4.util.UserScript;
+
+/**
+ * Stress test for distributed deadlock detection.
+ * 
+ * Each pair of users i takes A_i (on one node) and B_i (on the other) in opposite
+ * orders, so every pair forms a two-node wait-for cycle across managers.  The run is
+ * repeated with both users taking the resources in the same order, which cannot
+ * deadlock; the difference in completion time is the cost of detecting and breaking
+ * the cycles.  The run fails if a pair loses more than one request to deadlock
+ * detection, or if any request is denied as deadlocked when no cycle can form.
+ * 
+ */
+public class DeadlockBenchmark {
+	
+	private static final int[] PAIRS = { 10, 100, 1000, 2000 };
+	
+	public static void main(String[] args) throws Exception {
+		// Warm up.
+		Simulations.run(makeNodes(PAIRS[0], true));
+		
+		for (int pairs : PAIRS) {
+			long start = System.nanoTime();
+			SimulationFinishMsg crossed = Simulations.run(makeNodes(pairs, true));
+			long crossedMs = (System.nanoTime() - start) / 1000000;
+			
+			start = System.nanoTime();
+			SimulationFinishMsg ordered = Simulations.run(makeNodes(pairs, false));
+			long orderedMs = (System.nanoTime() - start) / 1000000;
+			
+			int victims = victims(crossed);
+			System.out.println(pairs + " pairs: " + victims + " deadlocks broken, " + crossedMs + " ms (vs "
+					+ orderedMs + " ms without cycles, " + (crossedMs - orderedMs) + " ms to detect)");
+			
+			// Users starting late may miss their partner's hold, so not every pair deadlocks.
+			if (victims > pairs) {
+				throw new Exception(victims + " requests denied to break at most " + pairs + " deadlocks");
+			}
+			if (victims(ordered) > 0) {
+				throw new Exception("Requests denied as deadlocked with no cycle in the wait-for graph");
+			}
+		}
+	}
+	
+	// Requests denied to break a deadlock.
+	private static int victims(SimulationFinishMsg result) {
+		int victims = 0;
+		for (Object o : result.getLog()) {
+			LogMsg msg = (LogMsg)o;
+			if (msg.getType() == LogMsg.EventType.ACCESS_REQUEST_DENIED
+					&& msg.getAccessRequestDenialReason() == AccessRequestDenialReason.DEADLOCK) {
+				victims++;
+			}
+		}
+		return victims;
+	}
+	
+	private static ArrayList<NodeSpecification> makeNodes(int pairs, boolean crossed) {
+		ArrayList<Resource> left = Systems.makeResources("A", pairs);
+		ArrayList<Resource> right = Systems.makeResources("B", pairs);
+		ArrayList<UserScript> leftUsers = new ArrayList<UserScript>();
+		ArrayList<UserScript> rightUsers = new ArrayList<UserScript>();
+		
+		for (int i = 0; i < pairs; i++) {
+			String a = "A_" + i;
+			String b = "B_" + i;
+			leftUsers.add(pairScript(a, b));
+			rightUsers.add(crossed ? pairScript(b, a) : pairScript(a, b));
+		}
+		
+		ArrayList<NodeSpecification> nodes = new ArrayList<NodeSpecification>();
+		nodes.add(new NodeSpecification(left, leftUsers));
+		nodes.add(new NodeSpecification(right, rightUsers));
+		return nodes;
+	}
+	
+	// Take first, hold it a while, then take second as well.
+	private static UserScript pairScript(String first, String second) {
+		return UserScript.fromString("write-request-b " + first + "\n"
+				+ "sleep 20\n"
+				+ "write-request-b " + second + "\n"
+				+ "write-release " + second + " | write-release " + first + "\n");
+	}
+}
@@ -0,0 +1,135 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.enums.DiscoveryMode;
+import cmsc433.p4.messages.AccessRequestGrantedMsg;
+import cmsc433.p4.messages.AccessRequestMsg;
+import cmsc433.p4.messages.SimulationStartMsg;
+import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.SimulationConfig;
+import cmsc433.p4.util.SystemActors;
+import cmsc433.p4.util.Systems;
+import cmsc433.p4.util.UserScript;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import akka.pattern.Patterns;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Compares broadcast and directory discovery as the number of managers grows.
+ * 
+ * Every manager owns LOOKUPS resources.  Once the system is assembled, a probe reads
+ * LOOKUPS resources owned by other managers through the first manager, one at a time,
+ * so every request starts a lookup and nothing else is running.  The time from request
+ * to grant is the discovery latency plus one forward.
+ * 
+ * Message counts follow from the protocols: a broadcast lookup sends one question to
+ * every other manager and gets one answer from each; a directory lookup sends one
+ * question to the shard the name hashes to and gets one answer, or none at all when
+ * the asking manager holds that shard itself.
+ * 
+ */
+public class DiscoveryBenchmark {
+	
+	private static final int[] MANAGERS = { 2, 4, 8, 16, 32, 64, 128, 256 };
+	private static final int LOOKUPS = 256;
+	
+	public static void main(String[] args) throws Exception {
+		// Warm up.
+		run(MANAGERS[3], DiscoveryMode.BROADCAST);
+		run(MANAGERS[3], DiscoveryMode.DIRECTORY);
+		
+		System.out.println("managers\tmode\tmsgs/lookup\tp50 us\tp99 us\tmean us");
+		for (int managers : MANAGERS) {
+			for (DiscoveryMode mode : DiscoveryMode.values()) {
+				long[] latencies = run(managers, mode);
+				Arrays.sort(latencies);
+				long total = 0;
+				for (long l : latencies) {
+					total += l;
+				}
+				double messages = mode == DiscoveryMode.BROADCAST
+						? 2.0 * (managers - 1)
+						: 2.0 * (managers - 1) / managers;
+				System.out.println(managers + "\t" + mode + "\t" + String.format("%.1f", messages) + "\t"
+						+ latencies[latencies.length / 2] / 1000 + "\t"
+						+ latencies[latencies.length * 99 / 100] / 1000 + "\t"
+						+ total / latencies.length / 1000);
+			}
+		}
+	}
+	
+	// Nanosecond latency of each probe lookup.
+	static long[] run(int managers, DiscoveryMode mode) throws Exception {
+		ArrayList<NodeSpecification> nodes = new ArrayList<NodeSpecification>();
+		for (int i = 0; i < managers; i++) {
+			nodes.add(new NodeSpecification(Systems.makeResources("R" + i, LOOKUPS), new ArrayList<UserScript>()));
+		}
+		SimulationConfig config = new SimulationConfig();
+		config.setDiscoveryMode(mode);
+		
+		ActorSystem system = ActorSystem.create("Benchmark");
+		SystemActors actors = Simulations.makeSystem(nodes, config, system);
+		
+		// Resource j of some manager other than the first.
+		String[] names = new String[LOOKUPS];
+		for (int j = 0; j < LOOKUPS; j++) {
+			names[j] = "R" + (1 + j % (managers - 1)) + "_" + j;
+		}
+		ActorRef probe = system.actorOf(Props.create(Probe.class, actors.getResourceManagers().get(0), names));
+		long[] latencies = (long[])Await.result(Patterns.ask(probe, new SimulationStartMsg(), 600000L), Duration.Inf());
+		
+		Simulations.shutdown(system);
+		return latencies;
+	}
+	
+	/**
+	 * Stand-in user that requests each name in turn and times it.
+	 */
+	public static class Probe extends UntypedActor {
+		
+		private final ActorRef manager;
+		private final String[] names;
+		private final long[] latencies;
+		private int next = 0;
+		private long sent;
+		private ActorRef replyTo;
+		
+		public Probe (ActorRef manager, String[] names) {
+			this.manager = manager;
+			this.names = names;
+			this.latencies = new long[names.length];
+		}
+		
+		private void request() {
+			sent = System.nanoTime();
+			AccessRequest request = new AccessRequest(names[next], AccessRequestType.CONCURRENT_READ_NONBLOCKING);
+			manager.tell(new AccessRequestMsg(request, getSelf(), 0), getSelf());
+		}
+		
+		@Override
+		public void onReceive(Object msg) throws Exception {
+			if (msg instanceof SimulationStartMsg) {
+				replyTo = getSender();
+				request();
+			} else if (msg instanceof AccessRequestGrantedMsg) {
+				latencies[next] = System.nanoTime() - sent;
+				next++;
+				if (next < names.length) {
+					request();
+				} else {
+					replyTo.tell(latencies, getSelf());
+				}
+			} else {
+				throw new Exception("Bad message sent to probe: " + msg);
+			}
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+
+import cmsc433.p4.enums.Distribution;
+import cmsc433.p4.messages.LogMsg;
+import cmsc433.p4.messages.SimulationFinishMsg;
+import cmsc433.p4.util.DispatcherProfile;
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.SimulationConfig;
+import cmsc433.p4.util.WorkloadGenerator;
+
+/**
+ * Floods NODES managers with USERS users that never sleep, and reports the time to
+ * finish and the requests handled per second with every actor on the default
+ * dispatcher and with each role on dispatchers of its own, under several manager
+ * thread and throughput settings.
+ *
+ */
+public class DispatcherBenchmark {
+
+	private static final int NODES = 4;
+	private static final int RESOURCES = 1000;
+	private static final int USERS = 20000;
+	private static final int OPERATIONS = 5;
+	private static final int RUNS = 3;
+
+	public static void main(String[] args) throws Exception {
+		WorkloadGenerator generator = new WorkloadGenerator();
+		generator.setNodes(NODES);
+		generator.setResources(RESOURCES);
+		generator.setUsers(USERS);
+		generator.setOperationsPerUser(OPERATIONS);
+		generator.setHoldTime(Distribution.CONSTANT, 0);
+		generator.setThinkTime(Distribution.CONSTANT, 0);
+
+		// Warm up.
+		run(generator.generate(), new DispatcherProfile());
+
+		System.out.println("dispatchers\tms\trequests/s");
+		report("shared", generator, new DispatcherProfile());
+		report("pinned managers", generator, isolated(0, 100));
+		report("pinned managers, throughput 1", generator, isolated(0, 1));
+		report(NODES / 2 + " manager threads", generator, isolated(NODES / 2, 100));
+	}
+
+	private static DispatcherProfile isolated(int managerThreads, int managerThroughput) {
+		DispatcherProfile profile = new DispatcherProfile();
+		profile.setIsolated(true);
+		profile.setManagerThreads(managerThreads);
+		profile.setManagerThroughput(managerThroughput);
+		return profile;
+	}
+
+	// Best of RUNS runs.
+	private static void report(String label, WorkloadGenerator generator, DispatcherProfile profile) throws Exception {
+		long best = Long.MAX_VALUE;
+		int requests = 0;
+		for (int i = 0; i < RUNS; i++) {
+			long start = System.currentTimeMillis();
+			SimulationFinishMsg result = run(generator.generate(), profile);
+			best = Math.min(best, System.currentTimeMillis() - start);
+			requests = Simulations.count(result, LogMsg.EventType.ACCESS_REQUEST_GRANTED)
+					+ Simulations.count(result, LogMsg.EventType.ACCESS_REQUEST_DENIED);
+		}
+		System.out.println(label + "\t" + best + "\t" + (requests * 1000L / Math.max(1, best)));
+	}
+
+	private static SimulationFinishMsg run(ArrayList<NodeSpecification> nodes, DispatcherProfile profile) throws Exception {
+		SimulationConfig config = new SimulationConfig();
+		config.setLockMetrics(false);
+		config.setDispatchers(profile);
+		return Simulations.run(nodes, config);
+	}
+}
@@ -0,0 +1,146 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.enums.AccessType;
+import cmsc433.p4.enums.FairnessPolicy;
+import cmsc433.p4.messages.AccessRequestMsg;
+import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.ResourceLock;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+
+/**
+ * Reports p50/p99 wait time of blocking readers and writers on one hot resource under
+ * each fairness policy.  Arrivals and hold times are drawn from a seeded random
+ * source and played against a ResourceLock in virtual time, so runs are repeatable.
+ * 
+ */
+public class FairnessBenchmark {
+	
+	private static final long SEED = 433L;
+	private static final int REQUESTS = 200000;
+	private static final double READ_RATIO = 0.9;
+	private static final double MEAN_ARRIVAL = 1.0;		// Mean time between arrivals
+	private static final double MEAN_READ_HOLD = 3.0;	// Mean time a reader holds the resource
+	private static final double MEAN_WRITE_HOLD = 0.5;	// Mean time a writer holds the resource
+	private static final int USERS = 4096;
+	
+	// A future arrival or release in the simulation.
+	private static class Event implements Comparable<Event> {
+		private final double time;
+		private final int request;		// Index of request arriving or releasing
+		private final boolean release;
+		
+		private Event(double time, int request, boolean release) {
+			this.time = time;
+			this.request = request;
+			this.release = release;
+		}
+		
+		public int compareTo(Event other) {
+			return Double.compare(time, other.time);
+		}
+	}
+	
+	public static void main(String[] args) throws Exception {
+		ActorSystem system = ActorSystem.create("FairnessBenchmark");
+		ArrayList<ActorRef> users = new ArrayList<ActorRef>();
+		for (int i = 0; i < USERS; i++) {
+			users.add(system.actorOf(Props.empty()));
+		}
+		
+		for (FairnessPolicy policy : FairnessPolicy.values()) {
+			run(policy, users);
+		}
+		
+		Simulations.shutdown(system);
+	}
+	
+	private static void run(FairnessPolicy policy, ArrayList<ActorRef> users) {
+		Random random = new Random(SEED);
+		ResourceLock lock = new ResourceLock(policy);
+		PriorityQueue<Event> events = new PriorityQueue<Event>();
+		
+		AccessRequestMsg[] requests = new AccessRequestMsg[REQUESTS];
+		double[] arrived = new double[REQUESTS];
+		double[] holds = new double[REQUESTS];
+		double[] readWaits = new double[REQUESTS];
+		double[] writeWaits = new double[REQUESTS];
+		int reads = 0;
+		int writes = 0;
+		
+		double t = 0;
+		for (int i = 0; i < REQUESTS; i++) {
+			t += exponential(random, MEAN_ARRIVAL);
+			boolean read = random.nextDouble() < READ_RATIO;
+			AccessRequestType type = read ? AccessRequestType.CONCURRENT_READ_BLOCKING : AccessRequestType.EXCLUSIVE_WRITE_BLOCKING;
+			requests[i] = new AccessRequestMsg(new AccessRequest("Hot_0", type), users.get(i % USERS), i % USERS);
+			holds[i] = exponential(random, read ? MEAN_READ_HOLD : MEAN_WRITE_HOLD);
+			events.add(new Event(t, i, false));
+		}
+		
+		// Map each waiting message back to its request index.
+		IdentityHashMap<AccessRequestMsg, Integer> index = new IdentityHashMap<AccessRequestMsg, Integer>();
+		
+		while (!events.isEmpty()) {
+			Event e = events.poll();
+			AccessRequestMsg msg = requests[e.request];
+			AccessType type = ResourceLock.accessTypeOf(msg.getAccessRequest().getType());
+			
+			if (e.release) {
+				lock.release(msg.getUserId(), type);
+				AccessRequestMsg granted = lock.takeGrantable();
+				while (granted != null) {
+					int r = index.remove(granted);
+					AccessType grantedType = ResourceLock.accessTypeOf(granted.getAccessRequest().getType());
+					lock.grant(granted.getUserId(), grantedType);
+					if (grantedType == AccessType.CONCURRENT_READ) {
+						readWaits[reads++] = e.time - arrived[r];
+					} else {
+						writeWaits[writes++] = e.time - arrived[r];
+					}
+					events.add(new Event(e.time + holds[r], r, true));
+					granted = lock.takeGrantable();
+				}
+			} else {
+				arrived[e.request] = e.time;
+				if (lock.canGrantNew(msg.getUserId(), type)) {
+					lock.grant(msg.getUserId(), type);
+					if (type == AccessType.CONCURRENT_READ) {
+						readWaits[reads++] = 0;
+					} else {
+						writeWaits[writes++] = 0;
+					}
+					events.add(new Event(e.time + holds[e.request], e.request, true));
+				} else {
+					index.put(msg, e.request);
+					lock.enqueue(msg);
+				}
+			}
+		}
+		
+		System.out.println(policy + ": readers p50 " + percentile(readWaits, reads, 0.50) + " p99 " + percentile(readWaits, reads, 0.99)
+				+ ", writers p50 " + percentile(writeWaits, writes, 0.50) + " p99 " + percentile(writeWaits, writes, 0.99)
+				+ " (time units, " + reads + " reads, " + writes + " writes)");
+	}
+	
+	private static double exponential(Random random, double mean) {
+		return -mean * Math.log(1.0 - random.nextDouble());
+	}
+	
+	private static String percentile(double[] values, int count, double p) {
+		if (count == 0) {
+			return "-";
+		}
+		double[] sorted = Arrays.copyOf(values, count);
+		Arrays.sort(sorted);
+		return String.format("%.2f", sorted[(int)Math.min(count - 1, Math.floor(p * count))]);
+	}
+}
@@ -0,0 +1,127 @@
+package cmsc433.p4.bench;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.enums.AccessType;
+import cmsc433.p4.enums.LogFormat;
+import cmsc433.p4.enums.ResourceStatus;
+import cmsc433.p4.messages.LogMsg;
+import cmsc433.p4.util.AccessRelease;
+import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.BinaryLogReader;
+import cmsc433.p4.util.BinaryLogWriter;
+import cmsc433.p4.util.LogFiles;
+import cmsc433.p4.util.LogSink;
+import cmsc433.p4.util.LogWriter;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+
+/**
+ * Writes the same synthetic trace in the text and binary log formats, then reads each
+ * back, and reports time per event and bytes per event.
+ *
+ * The trace cycles through a request/grant/release round trip between a few users,
+ * managers and resources.  Pass a directory for the files as the first argument;
+ * it defaults to the system temporary directory.  Files are deleted afterwards.
+ *
+ */
+public class LogFormatBenchmark {
+
+	private static final int EVENTS = 5000000;
+	private static final int USERS = 64;
+	private static final int RESOURCES = 256;
+
+	public static void main(String[] args) throws Exception {
+		File directory = new File(args.length > 0 ? args[0] : System.getProperty("java.io.tmpdir"), "log-format-benchmark");
+
+		ActorSystem system = ActorSystem.create("LogFormatBenchmark");
+		ActorRef manager = system.actorOf(Props.empty());
+		ActorRef remote = system.actorOf(Props.empty());
+		ArrayList<ActorRef> users = new ArrayList<ActorRef>();
+		for (int i = 0; i < USERS; i++) {
+			users.add(system.actorOf(Props.empty()));
+		}
+
+		// One round trip per resource, reused over and over.
+		ArrayList<LogMsg> trace = new ArrayList<LogMsg>();
+		for (int i = 0; i < RESOURCES; i++) {
+			String name = "R_" + i;
+			ActorRef user = users.get(i % USERS);
+			AccessRequest request = new AccessRequest(name, AccessRequestType.CONCURRENT_READ_BLOCKING);
+			AccessRelease release = new AccessRelease(name, AccessType.CONCURRENT_READ);
+			trace.add(LogMsg.makeAccessRequestReceivedLogMsg(user, manager, request));
+			trace.add(LogMsg.makeAccessRequestForwardedLogMsg(manager, remote, request));
+			trace.add(LogMsg.makeAccessRequestGrantedLogMsg(user, remote, request));
+			trace.add(LogMsg.makeAccessReleaseReceivedLogMsg(user, remote, release));
+			trace.add(LogMsg.makeAccessReleasedLogMsg(user, remote, release));
+			trace.add(LogMsg.makeResourceStatusChangedLogMsg(remote, name, ResourceStatus.ENABLED));
+		}
+
+		for (int round = 0; round < 2; round++) {
+			boolean report = round == 1;	// The first round warms up
+			for (LogFormat format : LogFormat.values()) {
+				run(format, directory, trace, report);
+			}
+		}
+
+		Simulations.shutdown(system);
+	}
+
+	private static void run(LogFormat format, File directory, ArrayList<LogMsg> trace, boolean report) throws Exception {
+		String prefix = format.toString().toLowerCase();
+		LogSink sink = format == LogFormat.BINARY
+				? new BinaryLogWriter(directory, prefix, 1000000)
+				: new LogWriter(directory, prefix, 8192, 1000000);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < EVENTS; i++) {
+			sink.append(trace.get(i % trace.size()));
+		}
+		sink.close();
+		long writeNs = System.nanoTime() - start;
+
+		LogFiles log = sink.getLogFiles();
+		long bytes = 0;
+		for (File file : log.getFiles()) {
+			bytes += file.length();
+		}
+
+		// Binary records are counted by type; text lines do not say their type, so the
+		// text reader only counts lines, which flatters it.
+		long total = 0;
+		start = System.nanoTime();
+		if (format == LogFormat.BINARY) {
+			long[] counts = new long[LogMsg.EventType.values().length];
+			BinaryLogReader reader = new BinaryLogReader(log);
+			while (reader.next()) {
+				counts[reader.getType().ordinal()]++;
+			}
+			for (long c : counts) {
+				total += c;
+			}
+		} else {
+			for (String line : log) {
+				total++;
+			}
+		}
+		long readNs = System.nanoTime() - start;
+
+		if (total != EVENTS) {
+			throw new AssertionError(format + " log read back " + total + " of " + EVENTS + " events");
+		}
+		if (report) {
+			System.out.println(format + ": write " + writeNs / EVENTS + " ns/event, read " + readNs / EVENTS
+					+ " ns/event, " + bytes / EVENTS + " bytes/event (" + bytes / (1 << 20) + " MB)");
+		}
+
+		for (File file : log.getFiles()) {
+			file.delete();
+		}
+		if (format == LogFormat.BINARY) {
+			log.getNamesFile().delete();
+		}
+	}
+}
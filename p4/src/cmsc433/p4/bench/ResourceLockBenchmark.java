@@ -0,0 +1,106 @@
+package cmsc433.p4.bench;
+
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.enums.AccessType;
+import cmsc433.p4.messages.AccessRequestMsg;
+import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.ResourceLock;
+
+/**
+ * Measures grant, deny and release latency of a single resource lock as the number
+ * of concurrent readers already holding it grows.  Latency should stay flat.  Also
+ * measures letting queued readers overtake a blocked writer, whose cost per reader
+ * should stay flat as the queue grows.
+ * 
+ */
+public class ResourceLockBenchmark {
+	
+	private static final int[] READERS = { 1, 100, 10000 };
+	private static final int ITERATIONS = 1000000;
+	private static final int[] QUEUED = { 1000, 10000, 100000 };
+	private static final int DRAINS = 20;
+	
+	public static void main(String[] args) {
+		// Users are dense IDs; the probe is one past every reader.
+		int probe = READERS[READERS.length - 1];
+		
+		for (int readers : READERS) {
+			ResourceLock lock = new ResourceLock();
+			for (int i = 0; i < readers; i++) {
+				lock.grant(i, AccessType.CONCURRENT_READ);
+			}
+			
+			// Warm up, then measure.
+			runReads(lock, probe, ITERATIONS);
+			runWrites(lock, probe, ITERATIONS);
+			long readNs = runReads(lock, probe, ITERATIONS);
+			long writeNs = runWrites(lock, probe, ITERATIONS);
+			
+			System.out.println(readers + " readers: read grant+release " + ((double)readNs / ITERATIONS)
+					+ " ns/op, write deny " + ((double)writeNs / ITERATIONS) + " ns/op");
+		}
+		
+		for (int queued : QUEUED) {
+			runDrain(queued);
+			long drainNs = 0;
+			for (int i = 0; i < DRAINS; i++) {
+				drainNs += runDrain(queued);
+			}
+			System.out.println(queued + " queued readers: overtaking a blocked writer "
+					+ ((double)drainNs / DRAINS / queued) + " ns/reader");
+		}
+	}
+	
+	// Queue a writer behind a reader, then readers behind the writer, and let them all
+	// past the writer.
+	private static long runDrain(int queued) {
+		ResourceLock lock = new ResourceLock();
+		lock.grant(0, AccessType.CONCURRENT_READ);
+		lock.enqueue(new AccessRequestMsg(new AccessRequest("R", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING), null, 1));
+		AccessRequest read = new AccessRequest("R", AccessRequestType.CONCURRENT_READ_BLOCKING);
+		for (int i = 0; i < queued; i++) {
+			lock.enqueue(new AccessRequestMsg(read, null, i + 2));
+		}
+		
+		long start = System.nanoTime();
+		int granted = 0;
+		AccessRequestMsg next = lock.takeGrantable();
+		while (next != null) {
+			lock.grant(next.getUserId(), AccessType.CONCURRENT_READ);
+			granted++;
+			next = lock.takeGrantable();
+		}
+		long ns = System.nanoTime() - start;
+		if (granted != queued || lock.getWaiterCount() != 1) {
+			throw new AssertionError("Readers left queued behind the writer");
+		}
+		return ns;
+	}
+	
+	// Grant and release one more read.
+	private static long runReads(ResourceLock lock, int user, int iterations) {
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			if (lock.canGrant(user, AccessType.CONCURRENT_READ)) {
+				lock.grant(user, AccessType.CONCURRENT_READ);
+			}
+			lock.release(user, AccessType.CONCURRENT_READ);
+		}
+		return System.nanoTime() - start;
+	}
+	
+	// Attempt a write that must be denied while readers hold the lock.
+	private static long runWrites(ResourceLock lock, int user, int iterations) {
+		long start = System.nanoTime();
+		int denied = 0;
+		for (int i = 0; i < iterations; i++) {
+			if (!lock.canGrant(user, AccessType.EXCLUSIVE_WRITE)) {
+				denied++;
+			}
+		}
+		if (denied != iterations) {
+			throw new AssertionError("Write granted while readers hold lock");
+		}
+		return System.nanoTime() - start;
+	}
+}
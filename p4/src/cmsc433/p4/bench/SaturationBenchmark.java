@@ -0,0 +1,71 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+
+import cmsc433.p4.enums.Distribution;
+import cmsc433.p4.enums.IssueMode;
+import cmsc433.p4.messages.LogMsg;
+import cmsc433.p4.messages.SimulationFinishMsg;
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.SimulationConfig;
+import cmsc433.p4.util.WorkloadGenerator;
+
+/**
+ * Offered load against achieved throughput for one generated workload without sleeps:
+ * first windowed users with growing windows, then open-loop users at growing rates.
+ * Throughput levels off where the managers saturate; past that point an open-loop run
+ * takes longer than its schedule, the difference being the backlog the managers could
+ * not keep up with.
+ *
+ */
+public class SaturationBenchmark {
+
+	private static final int NODES = 4;
+	private static final int RESOURCES = 256;
+	private static final int USERS = 64;
+	private static final int OPERATIONS = 500;		// Each a request and a release step
+	private static final int[] WINDOWS = { 1, 2, 4, 8, 16, 32 };
+	private static final double[] RATES = { 250, 500, 1000, 2000, 4000 };	// Steps per second per user
+
+	public static void main(String[] args) throws Exception {
+		WorkloadGenerator generator = new WorkloadGenerator();
+		generator.setNodes(NODES);
+		generator.setResources(RESOURCES);
+		generator.setUsers(USERS);
+		generator.setOperationsPerUser(OPERATIONS);
+		generator.setHoldTime(Distribution.CONSTANT, 0);
+		generator.setThinkTime(Distribution.CONSTANT, 0);
+		long steps = 2L * USERS * OPERATIONS;
+
+		// Warm up.
+		run(generator.generate(), IssueMode.WINDOWED, 8, 0);
+
+		System.out.println("window\tms\tsteps/s\tdenied %");
+		for (int window : WINDOWS) {
+			long[] r = run(generator.generate(), IssueMode.WINDOWED, window, 0);
+			System.out.println(window + "\t" + r[0] + "\t" + steps * 1000 / Math.max(1, r[0]) + "\t"
+					+ String.format("%.1f", 100.0 * r[1] / (USERS * OPERATIONS)));
+		}
+
+		System.out.println("offered steps/s\tms\tscheduled ms\tsteps/s\tdenied %");
+		for (double rate : RATES) {
+			long[] r = run(generator.generate(), IssueMode.OPEN_LOOP, 1, rate);
+			System.out.println((long) (rate * USERS) + "\t" + r[0] + "\t" + (long) (2 * OPERATIONS * 1000 / rate) + "\t"
+					+ steps * 1000 / Math.max(1, r[0]) + "\t" + String.format("%.1f", 100.0 * r[1] / (USERS * OPERATIONS)));
+		}
+	}
+
+	// Milliseconds to run the simulation, and requests denied.
+	private static long[] run(ArrayList<NodeSpecification> nodes, IssueMode mode, int window, double rate) throws Exception {
+		SimulationConfig config = new SimulationConfig();
+		config.setAllLogged(false);
+		config.setLogged(LogMsg.EventType.ACCESS_REQUEST_DENIED, true);
+		config.setIssueMode(mode);
+		config.setWindow(window);
+		config.setOpenLoopRate(rate);
+		long start = System.currentTimeMillis();
+		SimulationFinishMsg result = Simulations.run(nodes, config);
+		long ms = System.currentTimeMillis() - start;
+		return new long[] { ms, Simulations.count(result, LogMsg.EventType.ACCESS_REQUEST_DENIED) };
+	}
+}
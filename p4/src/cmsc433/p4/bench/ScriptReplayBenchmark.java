@@ -0,0 +1,100 @@
+package cmsc433.p4.bench;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.enums.AccessType;
+import cmsc433.p4.messages.SimulationFinishMsg;
+import cmsc433.p4.util.AccessRelease;
+import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.SimulationConfig;
+import cmsc433.p4.util.Systems;
+import cmsc433.p4.util.UserScript;
+
+/**
+ * Cost per step of walking scripts of growing length, in memory and streamed from a
+ * file, which should stay flat as scripts grow; then one user replaying a streamed
+ * script of REPLAY_STEPS steps against a single manager, with logging off.
+ *
+ */
+public class ScriptReplayBenchmark {
+
+	private static final int[] STEPS = { 10000, 100000, 1000000 };
+	private static final int REPLAY_STEPS = 200000;
+
+	public static void main(String[] args) throws Exception {
+		// Warm up.
+		walk(inMemory(STEPS[0]));
+		walk(UserScript.streamFile(write(STEPS[0]).getPath()));
+
+		System.out.println("steps\tin memory ns/step\tstreamed ns/step");
+		for (int steps : STEPS) {
+			File file = write(steps);
+			UserScript memory = inMemory(steps);
+			long memoryNs = walk(memory);
+			memory = null;
+			long streamedNs = walk(UserScript.streamFile(file.getPath()));
+			System.out.println(steps + "\t" + memoryNs / steps + "\t" + streamedNs / steps);
+			file.delete();
+		}
+
+		File file = write(REPLAY_STEPS);
+		ArrayList<UserScript> scripts = new ArrayList<UserScript>();
+		scripts.add(UserScript.streamFile(file.getPath()));
+		ArrayList<NodeSpecification> nodes = new ArrayList<NodeSpecification>();
+		nodes.add(new NodeSpecification(Systems.makeResources("R", 1), scripts));
+		SimulationConfig config = new SimulationConfig();
+		config.setAllLogged(false);
+		long start = System.nanoTime();
+		SimulationFinishMsg result = Simulations.run(nodes, config);
+		long ns = System.nanoTime() - start;
+		file.delete();
+		if (result == null) {
+			throw new Exception("Replay did not finish");
+		}
+		System.out.println("replay of " + REPLAY_STEPS + " streamed steps: " + ns / 1000000 + " ms, "
+				+ ns / REPLAY_STEPS + " ns/step");
+	}
+
+	// Nanoseconds to hand out every step of the script through a cursor.
+	private static long walk(UserScript script) throws Exception {
+		long start = System.nanoTime();
+		UserScript.Cursor cursor = script.cursor();
+		long requests = 0;
+		while (!cursor.isDone()) {
+			requests += cursor.nextStep().size();
+		}
+		long ns = System.nanoTime() - start;
+		if (requests == 0) {
+			throw new Exception("Script was empty");
+		}
+		return ns;
+	}
+
+	// Script alternately writing and releasing R_0, as UserScript.makeSequential builds it.
+	private static UserScript inMemory(int steps) {
+		ArrayList<Object> requests = new ArrayList<Object>();
+		for (int i = 0; i < steps; i += 2) {
+			requests.add(new AccessRequest("R_0", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING));
+			requests.add(new AccessRelease("R_0", AccessType.EXCLUSIVE_WRITE));
+		}
+		return UserScript.makeSequential(requests);
+	}
+
+	// Temporary file holding the same script as inMemory(steps).
+	private static File write(int steps) throws Exception {
+		File file = File.createTempFile("replay", ".txt");
+		file.deleteOnExit();
+		PrintWriter out = new PrintWriter(new FileWriter(file));
+		for (int i = 0; i < steps; i += 2) {
+			out.println("write-request-b R_0");
+			out.println("write-release R_0");
+		}
+		out.close();
+		return file;
+	}
+}
@@ -0,0 +1,141 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import cmsc433.p4.actors.ResourceManagerActor;
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.enums.AccessType;
+import cmsc433.p4.enums.FairnessPolicy;
+import cmsc433.p4.messages.AccessReleaseMsg;
+import cmsc433.p4.messages.AccessRequestGrantedMsg;
+import cmsc433.p4.messages.AccessRequestMsg;
+import cmsc433.p4.messages.AddInitialLocalResourcesRequestMsg;
+import cmsc433.p4.messages.AddRemoteManagersRequestMsg;
+import cmsc433.p4.messages.SimulationFinishMsg;
+import cmsc433.p4.messages.SimulationStartMsg;
+import cmsc433.p4.util.AccessRelease;
+import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.SimulationConfig;
+import cmsc433.p4.util.Systems;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import akka.pattern.Patterns;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Request throughput of one node as its resources are split over more shards.
+ * 
+ * Several drivers each keep WINDOW read requests outstanding against random resources
+ * of a single manager, releasing each grant and issuing a new request straight away.
+ * The log is thrown away so that the single logger does not cap the result.
+ * 
+ */
+public class ShardingBenchmark {
+	
+	private static final int RESOURCES = 1024;
+	private static final int DRIVERS = 8;
+	private static final int WINDOW = 32;
+	private static final long RUN_MS = 3000;
+	
+	public static void main(String[] args) throws Exception {
+		int cores = Runtime.getRuntime().availableProcessors();
+		int maxShards = Math.max(8, 2 * cores);
+		
+		// Warm up.
+		run(1, 1000);
+		
+		System.out.println(cores + " cores");
+		System.out.println("shards\trequests/s");
+		for (int shards = 1; shards <= maxShards; shards *= 2) {
+			System.out.println(shards + "\t" + run(shards, RUN_MS) * 1000 / RUN_MS);
+		}
+	}
+	
+	// Number of grants in runMs milliseconds.
+	private static long run(int shards, long runMs) throws Exception {
+		ActorSystem system = ActorSystem.create("Benchmark");
+		ActorRef logger = system.actorOf(Props.create(Discard.class));
+		SimulationConfig config = new SimulationConfig();
+		config.setShards(shards);
+		ActorRef manager = ResourceManagerActor.makeResourceManager(logger, system, FairnessPolicy.READER_PREFERRING, config);
+		
+		long timeout = 10000L;
+		Await.result(Patterns.ask(manager, new AddInitialLocalResourcesRequestMsg(Systems.makeResources("R", RESOURCES)), timeout), Duration.Inf());
+		ArrayList<ActorRef> managers = new ArrayList<ActorRef>();
+		managers.add(manager);
+		Await.result(Patterns.ask(manager, new AddRemoteManagersRequestMsg(managers), timeout), Duration.Inf());
+		
+		ArrayList<ActorRef> drivers = new ArrayList<ActorRef>();
+		for (int i = 0; i < DRIVERS; i++) {
+			ActorRef driver = system.actorOf(Props.create(Driver.class, manager, (long)i));
+			driver.tell(new SimulationStartMsg(), ActorRef.noSender());
+			drivers.add(driver);
+		}
+		
+		Thread.sleep(runMs);
+		
+		long grants = 0;
+		for (ActorRef driver : drivers) {
+			grants += (Long)Await.result(Patterns.ask(driver, new SimulationFinishMsg((ArrayList<Object>)null), timeout), Duration.Inf());
+		}
+		
+		Simulations.shutdown(system);
+		return grants;
+	}
+	
+	/**
+	 * Stand-in user keeping WINDOW read requests outstanding.
+	 */
+	public static class Driver extends UntypedActor {
+		
+		private final ActorRef manager;
+		private final int userId;
+		private final Random random;
+		private long grants = 0;
+		private boolean stopped = false;
+		
+		public Driver (ActorRef manager, long seed) {
+			this.manager = manager;
+			this.userId = (int)seed;
+			this.random = new Random(seed);
+		}
+		
+		private void request() {
+			String name = "R_" + random.nextInt(RESOURCES);
+			AccessRequest request = new AccessRequest(name, AccessRequestType.CONCURRENT_READ_NONBLOCKING);
+			manager.tell(new AccessRequestMsg(request, getSelf(), userId), getSelf());
+		}
+		
+		@Override
+		public void onReceive(Object msg) throws Exception {
+			if (msg instanceof SimulationStartMsg) {
+				for (int i = 0; i < WINDOW; i++) {
+					request();
+				}
+			} else if (msg instanceof AccessRequestGrantedMsg) {
+				grants++;
+				String name = ((AccessRequestGrantedMsg)msg).getRequest().getResourceName();
+				manager.tell(new AccessReleaseMsg(new AccessRelease(name, AccessType.CONCURRENT_READ), getSelf(), userId), getSelf());
+				if (!stopped) {
+					request();
+				}
+			} else if (msg instanceof SimulationFinishMsg) {
+				stopped = true;
+				getSender().tell(grants, getSelf());
+			}
+		}
+	}
+	
+	/**
+	 * Logger that drops every entry.
+	 */
+	public static class Discard extends UntypedActor {
+		@Override
+		public void onReceive(Object msg) {
+		}
+	}
+}
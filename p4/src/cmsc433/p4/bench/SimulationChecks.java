@@ -0,0 +1,209 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+
+import cmsc433.p4.enums.AccessRequestDenialReason;
+import cmsc433.p4.messages.LogMsg;
+import cmsc433.p4.messages.SimulationFinishMsg;
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.SimulationClock;
+import cmsc433.p4.util.SimulationConfig;
+import cmsc433.p4.util.Systems;
+import cmsc433.p4.util.UserScript;
+
+/**
+ * Checks of behaviour the benchmarks only time: which request is denied to break a
+ * deadlock, when leases expire, which grants a denied batch gives back, and when
+ * sleeping users wake.  Each runs a small
+ * simulation under a virtual clock, where handling a message takes no time, so the
+ * times between events in the log are exact.  Fails on the first check that does not
+ * hold.
+ *
+ */
+public class SimulationChecks {
+
+	private static final long SEED = 433L;
+	private static final long MS = 1000000L;	// Nanoseconds, as in log timestamps
+
+	public static void main(String[] args) throws Exception {
+		checkDeadlockVictim();
+		checkLeaseExpiry();
+		checkLeaseRenewal();
+		checkPartialRelease();
+		checkBatchRollBack();
+		checkSleepTimes();
+	}
+
+	// Three users on three nodes each hold one resource and wait for the next user's.
+	// The victim is the request of the greatest waiter, user 2, which waits for A_0.
+	private static void checkDeadlockVictim() throws Exception {
+		ArrayList<NodeSpecification> nodes = new ArrayList<NodeSpecification>();
+		String[] names = { "A_0", "B_0", "C_0" };
+		for (int i = 0; i < names.length; i++) {
+			ArrayList<UserScript> scripts = new ArrayList<UserScript>();
+			scripts.add(UserScript.fromString("write-request-b " + names[i] + "\n"
+					+ "sleep 20\n"
+					+ "write-request-b " + names[(i + 1) % names.length] + "\n"
+					+ "write-release " + names[(i + 1) % names.length] + " | write-release " + names[i] + "\n"));
+			nodes.add(new NodeSpecification(Systems.makeResources(names[i].substring(0, 1), 1), scripts));
+		}
+		SimulationFinishMsg result = run(nodes);
+
+		ArrayList<LogMsg> victims = new ArrayList<LogMsg>();
+		for (LogMsg msg : events(result, LogMsg.EventType.ACCESS_REQUEST_DENIED, null)) {
+			if (msg.getAccessRequestDenialReason() == AccessRequestDenialReason.DEADLOCK) {
+				victims.add(msg);
+			}
+		}
+		check(victims.size() == 1, "deadlock", "one victim expected, got " + victims.size());
+		check(victims.get(0).getResourceName().equals("A_0"), "deadlock",
+				"user 2's request for A_0 should be denied, not the request for " + victims.get(0).getResourceName());
+		check(events(result, LogMsg.EventType.ACCESS_REQUEST_GRANTED, null).size() == 5, "deadlock",
+				"every request but the victim's should be granted");
+		pass("deadlock victim");
+	}
+
+	// A 200 ms lease not renewed is revoked 200 ms after the grant, and the user's
+	// later release is ignored.
+	private static void checkLeaseExpiry() throws Exception {
+		SimulationFinishMsg result = run(oneUser("write-request-b:200 R_0\n"
+				+ "sleep 1000\n"
+				+ "write-release R_0\n"));
+
+		LogMsg granted = only(result, LogMsg.EventType.ACCESS_REQUEST_GRANTED, "R_0");
+		LogMsg revoked = only(result, LogMsg.EventType.ACCESS_REVOKED, "R_0");
+		checkElapsed(granted, revoked, 200, "lease expiry");
+		only(result, LogMsg.EventType.ACCESS_RELEASE_IGNORED, "R_0");
+		check(events(result, LogMsg.EventType.ACCESS_RELEASED, "R_0").isEmpty(), "lease expiry",
+				"a revoked grant should not be released");
+		pass("lease expiry");
+	}
+
+	// A lease renewed before it runs out is not revoked.
+	private static void checkLeaseRenewal() throws Exception {
+		SimulationFinishMsg result = run(oneUser("write-request-b:200 R_0\n"
+				+ "sleep 150\n"
+				+ "write-renew:200 R_0\n"
+				+ "sleep 150\n"
+				+ "write-release R_0\n"));
+
+		check(events(result, LogMsg.EventType.ACCESS_REVOKED, "R_0").isEmpty(), "lease renewal",
+				"a renewed lease should not be revoked");
+		only(result, LogMsg.EventType.ACCESS_RELEASED, "R_0");
+		pass("lease renewal");
+	}
+
+	// A user holding a grant with a lease and one without loses only the leased grant
+	// when the lease runs out, and keeps the other when it releases the leased one.
+	private static void checkPartialRelease() throws Exception {
+		SimulationFinishMsg result = run(oneUser("write-request-b R_0\n"
+				+ "write-request-b:200 R_0\n"
+				+ "sleep 500\n"
+				+ "write-release R_0\n"));
+
+		LogMsg revoked = only(result, LogMsg.EventType.ACCESS_REVOKED, "R_0");
+		checkElapsed(events(result, LogMsg.EventType.ACCESS_REQUEST_GRANTED, "R_0").get(1), revoked, 200, "partial release");
+		only(result, LogMsg.EventType.ACCESS_RELEASED, "R_0");
+		check(events(result, LogMsg.EventType.ACCESS_RELEASE_IGNORED, "R_0").isEmpty(), "partial release",
+				"the grant without a lease should outlive the lease");
+
+		// The release gives up the oldest grant, the leased one; its lease goes with it.
+		result = run(oneUser("write-request-b:200 R_0\n"
+				+ "write-request-b R_0\n"
+				+ "write-release R_0\n"
+				+ "sleep 500\n"
+				+ "write-release R_0\n"));
+
+		check(events(result, LogMsg.EventType.ACCESS_REVOKED, "R_0").isEmpty(), "partial release",
+				"a lease should end with the grant released");
+		check(events(result, LogMsg.EventType.ACCESS_RELEASED, "R_0").size() == 2, "partial release",
+				"both grants should be released");
+		pass("partial release");
+	}
+
+	// A batch denied for a missing resource gives back its own grant of R_0, not the
+	// user's older leased one, which is then revoked when the lease runs out.
+	private static void checkBatchRollBack() throws Exception {
+		SimulationFinishMsg result = run(oneUser("read-request-b:200 R_0\n"
+				+ "read-request-b R_0 & read-request-b Z_0\n"
+				+ "sleep 500\n"));
+
+		check(events(result, LogMsg.EventType.ACCESS_REQUEST_GRANTED, "R_0").size() == 2, "batch roll-back",
+				"both requests for R_0 should be granted");
+		LogMsg released = only(result, LogMsg.EventType.ACCESS_RELEASED, "R_0");
+		LogMsg revoked = only(result, LogMsg.EventType.ACCESS_REVOKED, "R_0");
+		check(released.getTimestamp() < revoked.getTimestamp(), "batch roll-back",
+				"the batch's grant should be given back before the lease runs out");
+		pass("batch roll-back");
+	}
+
+	// A user sleeping between taking and releasing a resource releases it exactly the
+	// sleep later; users sleeping at once wake each after their own sleep.
+	private static void checkSleepTimes() throws Exception {
+		long[] sleeps = { 500, 100, 300 };
+		ArrayList<UserScript> scripts = new ArrayList<UserScript>();
+		for (int i = 0; i < sleeps.length; i++) {
+			scripts.add(UserScript.fromString("write-request-b R_" + i + "\n"
+					+ "sleep " + sleeps[i] + "\n"
+					+ "write-release R_" + i + "\n"));
+		}
+		ArrayList<NodeSpecification> nodes = new ArrayList<NodeSpecification>();
+		nodes.add(new NodeSpecification(Systems.makeResources("R", sleeps.length), scripts));
+		SimulationFinishMsg result = run(nodes);
+
+		for (int i = 0; i < sleeps.length; i++) {
+			String name = "R_" + i;
+			checkElapsed(only(result, LogMsg.EventType.ACCESS_REQUEST_GRANTED, name),
+					only(result, LogMsg.EventType.ACCESS_RELEASE_RECEIVED, name), sleeps[i], "sleep");
+		}
+		pass("sleep times");
+	}
+
+	private static SimulationFinishMsg run(ArrayList<NodeSpecification> nodes) throws Exception {
+		return Simulations.run(nodes, new SimulationConfig(), SimulationClock.makeVirtual(SEED));
+	}
+
+	// One node with resource R_0 and one user running the script.
+	private static ArrayList<NodeSpecification> oneUser(String script) {
+		ArrayList<UserScript> scripts = new ArrayList<UserScript>();
+		scripts.add(UserScript.fromString(script));
+		ArrayList<NodeSpecification> nodes = new ArrayList<NodeSpecification>();
+		nodes.add(new NodeSpecification(Systems.makeResources("R", 1), scripts));
+		return nodes;
+	}
+
+	// Events of a type, for the named resource only unless the name is null.
+	private static ArrayList<LogMsg> events(SimulationFinishMsg result, LogMsg.EventType type, String resource) {
+		ArrayList<LogMsg> events = new ArrayList<LogMsg>();
+		for (Object o : result.getLog()) {
+			LogMsg msg = (LogMsg)o;
+			if (msg.getType() == type && (resource == null || resource.equals(msg.getResourceName()))) {
+				events.add(msg);
+			}
+		}
+		return events;
+	}
+
+	// The one event of a type for the named resource.
+	private static LogMsg only(SimulationFinishMsg result, LogMsg.EventType type, String resource) throws Exception {
+		ArrayList<LogMsg> events = events(result, type, resource);
+		check(events.size() == 1, type.toString(), "one event for " + resource + " expected, got " + events.size());
+		return events.get(0);
+	}
+
+	private static void checkElapsed(LogMsg from, LogMsg to, long ms, String name) throws Exception {
+		long elapsed = to.getTimestamp() - from.getTimestamp();
+		check(elapsed == ms * MS, name, from.getType() + " to " + to.getType() + " for " + from.getResourceName()
+				+ " took " + (double)elapsed / MS + " ms, not " + ms + " ms");
+	}
+
+	private static void check(boolean holds, String name, String failure) throws Exception {
+		if (!holds) {
+			throw new Exception("Check " + name + " failed: " + failure);
+		}
+	}
+
+	private static void pass(String name) {
+		System.out.println("ok\t" + name);
+	}
+}
@@ -0,0 +1,127 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+
+import cmsc433.p4.actors.SimulationManagerActor;
+import cmsc433.p4.messages.LogMsg;
+import cmsc433.p4.messages.SimulationFinishMsg;
+import cmsc433.p4.messages.SimulationStartMsg;
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.SimulationClock;
+import cmsc433.p4.util.SimulationConfig;
+import cmsc433.p4.util.SystemActors;
+import cmsc433.p4.util.Systems;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.dispatch.Futures;
+import akka.pattern.Patterns;
+import scala.concurrent.Await;
+import scala.concurrent.Promise;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Helpers shared by the benchmark drivers for running whole simulations.
+ * 
+ */
+class Simulations {
+	
+	// Long enough for the largest benchmark runs.
+	private static final long TIMEOUT_MS = 600000L;
+	
+	/**
+	 * Run a simulation in a fresh actor system and wait for it to finish.
+	 * 
+	 * @param nodes		Nodes of simulated system
+	 * @return			Result of simulation
+	 * @throws Exception	If simulation does not finish
+	 */
+	static SimulationFinishMsg run(ArrayList<NodeSpecification> nodes) throws Exception {
+		return run(nodes, new SimulationConfig());
+	}
+	
+	/**
+	 * Run a simulation in a fresh actor system and wait for it to finish.
+	 * 
+	 * @param nodes		Nodes of simulated system
+	 * @param config	System-wide settings of the simulation
+	 * @return			Result of simulation
+	 * @throws Exception	If simulation does not finish
+	 */
+	static SimulationFinishMsg run(ArrayList<NodeSpecification> nodes, SimulationConfig config) throws Exception {
+		return run(nodes, config, SimulationClock.WALL);
+	}
+	
+	/**
+	 * Run a simulation in a fresh actor system under the given clock and wait for it to finish.
+	 * The system defines the dispatchers of the configuration's dispatcher profile.
+	 * 
+	 * @param nodes		Nodes of simulated system
+	 * @param config	System-wide settings of the simulation
+	 * @param clock		Clock to run the simulation under
+	 * @return			Result of simulation
+	 * @throws Exception	If simulation does not finish
+	 */
+	static SimulationFinishMsg run(final ArrayList<NodeSpecification> nodes, final SimulationConfig config,
+			SimulationClock clock) throws Exception {
+		final ActorSystem system = clock.makeSystem("Benchmark", config.getDispatchers().toConfig());
+		final Promise<Object> fmsg = Futures.promise();
+		// Started from the clock's thread, so that a virtual clock sees it in the same order each run.
+		clock.execute(new Runnable() {
+			public void run() {
+				ActorRef simulationManager = SimulationManagerActor.makeSimulationManager(nodes, config, system);
+				fmsg.completeWith(Patterns.ask(simulationManager, new SimulationStartMsg(), TIMEOUT_MS));
+			}
+		});
+		SimulationFinishMsg msg = (SimulationFinishMsg)Await.result(fmsg.future(), Duration.Inf());
+		clock.settle();
+		shutdown(system);
+		return msg;
+	}
+	
+	/**
+	 * Set up the managers and users of a system in an actor system, logging to an actor
+	 * that drops every entry, and wait until they are ready.  Users are not started.
+	 * 
+	 * @param nodes		Nodes of simulated system
+	 * @param config	System-wide settings of the simulation
+	 * @param system	Actor system to create the actors in
+	 * @return			Managers and users of the system
+	 * @throws Exception	If the system does not come up
+	 */
+	static SystemActors makeSystem(ArrayList<NodeSpecification> nodes, SimulationConfig config, ActorSystem system)
+			throws Exception {
+		ActorRef logger = system.actorOf(Props.create(ShardingBenchmark.Discard.class));
+		SystemActors actors = Systems.makeSystem(nodes, config, logger, system);
+		if (actors == null) {
+			throw new Exception("System of " + nodes.size() + " nodes did not come up");
+		}
+		return actors;
+	}
+	
+	/**
+	 * Shut down an actor system and wait until it has terminated.
+	 * 
+	 * @param system	Actor system to shut down
+	 * @throws Exception	If interrupted while waiting
+	 */
+	static void shutdown(ActorSystem system) throws Exception {
+		system.terminate();
+		Await.ready(system.whenTerminated(), Duration.Inf());
+	}
+	
+	/**
+	 * @param result	Result of simulation
+	 * @param type		Type of event to count
+	 * @return			Number of events of that type in the log
+	 */
+	static int count(SimulationFinishMsg result, LogMsg.EventType type) {
+		int n = 0;
+		for (Object o : result.getLog()) {
+			if (((LogMsg)o).getType() == type) {
+				n++;
+			}
+		}
+		return n;
+	}
+}
@@ -0,0 +1,92 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+
+import cmsc433.p4.messages.SimulationFinishMsg;
+import cmsc433.p4.messages.SimulationStartMsg;
+import cmsc433.p4.messages.UserStartMsg;
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.SimulationConfig;
+import cmsc433.p4.util.SystemActors;
+import cmsc433.p4.util.Systems;
+import cmsc433.p4.util.UserScript;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.pattern.Patterns;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Throughput of one manager, driven by BenchmarkSuite drivers, before and while
+ * SLEEPERS users of the same actor system sleep through a SLEEP_MS sleep step.  Users
+ * sleeping must not hold dispatcher threads, so the two should match; the run fails
+ * if throughput while sleeping drops below MIN_RATIO of that before.
+ *
+ */
+public class SleepingUsersBenchmark {
+
+	private static final int SLEEPERS = 10000;
+	private static final long SLEEP_MS = 10000;
+	private static final int RESOURCES = 16;
+	private static final int DRIVERS = 4;
+	private static final long MEASURE_MS = 2000;
+	private static final double MIN_RATIO = 0.8;
+
+	public static void main(String[] args) throws Exception {
+		ArrayList<UserScript> scripts = new ArrayList<UserScript>();
+		UserScript sleep = UserScript.fromString("sleep " + SLEEP_MS);
+		for (int i = 0; i < SLEEPERS; i++) {
+			scripts.add(sleep);
+		}
+		ArrayList<NodeSpecification> nodes = new ArrayList<NodeSpecification>();
+		nodes.add(new NodeSpecification(Systems.makeResources("R", RESOURCES), scripts));
+
+		ActorSystem system = ActorSystem.create("Benchmark");
+		SimulationConfig config = new SimulationConfig();
+		config.setAllLogged(false);
+		SystemActors actors = Simulations.makeSystem(nodes, config, system);
+		ActorRef manager = actors.getResourceManagers().get(0);
+		ArrayList<ActorRef> drivers = new ArrayList<ActorRef>();
+		for (int i = 0; i < DRIVERS; i++) {
+			drivers.add(system.actorOf(Props.create(BenchmarkSuite.Driver.class, manager, SLEEPERS + i, 0, RESOURCES, 0.5)));
+		}
+
+		// Warm up.
+		measure(drivers);
+
+		double before = measure(drivers);
+		long start = System.currentTimeMillis();
+		for (ActorRef user : actors.getUsers()) {
+			user.tell(new UserStartMsg(), ActorRef.noSender());
+		}
+		double during = measure(drivers);
+		long elapsed = System.currentTimeMillis() - start;
+
+		Simulations.shutdown(system);
+
+		System.out.println("requests/s before\trequests/s with " + SLEEPERS + " sleeping users");
+		System.out.println(String.format("%.0f\t%.0f", before, during));
+		if (elapsed >= SLEEP_MS) {
+			throw new Exception("Users woke up before the measurement was over");
+		}
+		if (during < MIN_RATIO * before) {
+			throw new Exception("Sleeping users slowed the manager down");
+		}
+	}
+
+	// Requests answered per second by all drivers over MEASURE_MS.
+	private static double measure(ArrayList<ActorRef> drivers) throws Exception {
+		for (ActorRef driver : drivers) {
+			driver.tell(new SimulationStartMsg(), ActorRef.noSender());
+		}
+		Thread.sleep(MEASURE_MS);
+		long answered = 0;
+		for (ActorRef driver : drivers) {
+			answered += (Long)Await.result(Patterns.ask(driver, new SimulationFinishMsg((ArrayList<Object>)null), 10000L), Duration.Inf());
+		}
+		// Let requests still in flight drain before the next measurement.
+		Thread.sleep(100);
+		return answered * 1000.0 / MEASURE_MS;
+	}
+}
@@ -0,0 +1,51 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.SimulationConfig;
+import cmsc433.p4.util.Systems;
+import cmsc433.p4.util.UserScript;
+import akka.actor.ActorSystem;
+
+/**
+ * Time for Systems.makeSystem to bring up systems of growing node counts, each node
+ * with RESOURCES resources and USERS users.  Users are created but never started.
+ *
+ */
+public class StartupBenchmark {
+
+	private static final int[] NODES = { 1, 10, 50, 100, 250, 500 };
+	private static final int RESOURCES = 10;
+	private static final int USERS = 2;
+
+	public static void main(String[] args) throws Exception {
+		// Warm up.
+		run(NODES[2]);
+
+		System.out.println("nodes\tms");
+		for (int nodes : NODES) {
+			System.out.println(nodes + "\t" + run(nodes));
+		}
+	}
+
+	// Milliseconds to make a system of the given number of nodes.
+	private static long run(int nodes) throws Exception {
+		ArrayList<NodeSpecification> specs = new ArrayList<NodeSpecification>();
+		for (int i = 0; i < nodes; i++) {
+			ArrayList<UserScript> scripts = new ArrayList<UserScript>();
+			for (int j = 0; j < USERS; j++) {
+				scripts.add(new UserScript());
+			}
+			specs.add(new NodeSpecification(Systems.makeResources("R" + i, RESOURCES), scripts));
+		}
+
+		ActorSystem system = ActorSystem.create("Benchmark");
+		long start = System.nanoTime();
+		Simulations.makeSystem(specs, new SimulationConfig(), system);
+		long ms = (System.nanoTime() - start) / 1000000;
+
+		Simulations.shutdown(system);
+		return ms;
+	}
+}
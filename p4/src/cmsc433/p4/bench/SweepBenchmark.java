@@ -0,0 +1,88 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import cmsc433.p4.actors.SweepManagerActor;
+import cmsc433.p4.enums.FairnessPolicy;
+import cmsc433.p4.messages.LogMsg;
+import cmsc433.p4.messages.SimulationSummaryMsg;
+import cmsc433.p4.messages.SweepFinishMsg;
+import cmsc433.p4.messages.SweepStartMsg;
+import cmsc433.p4.util.SimulationSpecification;
+import cmsc433.p4.util.WorkloadGenerator;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Inbox;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Runs a sweep of generated workloads over manager counts, read ratios and fairness
+ * policies, first one simulation after another and then all in one actor system with
+ * a SweepManagerActor, printing each summary as it arrives.  Reports the time of both.
+ *
+ */
+public class SweepBenchmark {
+
+	private static final int[] MANAGERS = { 2, 4, 8 };
+	private static final double[] READ_RATIOS = { 0.5, 0.9 };
+	private static final int RESOURCES = 200;
+	private static final int USERS = 400;
+	private static final int OPERATIONS = 10;
+	private static final long TIMEOUT_MINUTES = 10;
+
+	public static void main(String[] args) throws Exception {
+		ArrayList<SimulationSpecification> specs = sweep();
+
+		long start = System.currentTimeMillis();
+		for (SimulationSpecification spec : specs) {
+			Simulations.run(spec.getNodes(), spec.getConfig());
+		}
+		long sequentialMs = System.currentTimeMillis() - start;
+
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		System.out.println("simulation\tms\tevents\tdenied");
+		ActorSystem system = ActorSystem.create("Benchmark");
+		start = System.currentTimeMillis();
+		Inbox inbox = Inbox.create(system);
+		ActorRef sweep = SweepManagerActor.makeSweepManager(sweep(), parallelism, system);
+		inbox.send(sweep, new SweepStartMsg());
+		while (true) {
+			Object msg = inbox.receive(Duration.create(TIMEOUT_MINUTES, TimeUnit.MINUTES));
+			if (msg instanceof SweepFinishMsg) {
+				if (((SweepFinishMsg)msg).getFailed() > 0) {
+					throw new Exception(((SweepFinishMsg)msg).getFailed() + " simulations failed");
+				}
+				break;
+			}
+			SimulationSummaryMsg summary = (SimulationSummaryMsg)msg;
+			System.out.println(summary.getName() + "\t" + summary.getWallMs() + "\t" + summary.getEvents()
+					+ "\t" + summary.getCount(LogMsg.EventType.ACCESS_REQUEST_DENIED));
+		}
+		long sweepMs = System.currentTimeMillis() - start;
+		Simulations.shutdown(system);
+
+		System.out.println(specs.size() + " simulations: " + sequentialMs + " ms one at a time, "
+				+ sweepMs + " ms as a sweep of " + parallelism + " at once");
+	}
+
+	// One simulation per combination of settings.
+	private static ArrayList<SimulationSpecification> sweep() {
+		ArrayList<SimulationSpecification> specs = new ArrayList<SimulationSpecification>();
+		for (int managers : MANAGERS) {
+			for (double readRatio : READ_RATIOS) {
+				for (FairnessPolicy policy : FairnessPolicy.values()) {
+					WorkloadGenerator generator = new WorkloadGenerator();
+					generator.setNodes(managers);
+					generator.setResources(RESOURCES);
+					generator.setUsers(USERS);
+					generator.setOperationsPerUser(OPERATIONS);
+					generator.setReadRatio(readRatio);
+					generator.setFairnessPolicy(policy);
+					specs.add(new SimulationSpecification(managers + "m/" + readRatio + "r/" + policy, generator.generate()));
+				}
+			}
+		}
+		return specs;
+	}
+}
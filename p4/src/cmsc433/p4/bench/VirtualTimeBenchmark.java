@@ -0,0 +1,61 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+
+import cmsc433.p4.enums.Distribution;
+import cmsc433.p4.messages.LogMsg;
+import cmsc433.p4.messages.SimulationFinishMsg;
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.SimulationClock;
+import cmsc433.p4.util.SimulationConfig;
+import cmsc433.p4.util.WorkloadGenerator;
+
+/**
+ * Runs a generated workload whose users hold resources and think for an hour on
+ * average under virtual clocks: twice with one seed, which must give the same log
+ * event for event, and once with another.  Reports the wall-clock time of each run
+ * against the virtual time it covered.
+ *
+ */
+public class VirtualTimeBenchmark {
+
+	private static final long HOUR_MS = 3600000L;
+	private static final long SEED = 433L;
+
+	public static void main(String[] args) throws Exception {
+		WorkloadGenerator generator = new WorkloadGenerator();
+		generator.setNodes(4);
+		generator.setResources(100);
+		generator.setUsers(200);
+		generator.setOperationsPerUser(10);
+		generator.setHoldTime(Distribution.EXPONENTIAL, HOUR_MS);
+		generator.setThinkTime(Distribution.EXPONENTIAL, HOUR_MS);
+
+		System.out.println("seed\twall ms\tvirtual h\tevents\tlog hash");
+		long first = run(generator.generate(), SEED);
+		long second = run(generator.generate(), SEED);
+		run(generator.generate(), SEED + 1);
+		if (first != second) {
+			throw new Exception("Runs with the same seed gave different logs");
+		}
+	}
+
+	// Hash of the log of one run, after printing the run's figures.
+	private static long run(ArrayList<NodeSpecification> nodes, long seed) throws Exception {
+		long start = System.currentTimeMillis();
+		SimulationFinishMsg result = Simulations.run(nodes, new SimulationConfig(), SimulationClock.makeVirtual(seed));
+		long ms = System.currentTimeMillis() - start;
+
+		long hash = 17;
+		long last = 0;
+		for (Object o : result.getLog()) {
+			LogMsg msg = (LogMsg)o;
+			hash = 31 * hash + msg.toString().hashCode();
+			hash = 31 * hash + msg.getTimestamp();
+			last = Math.max(last, msg.getTimestamp());
+		}
+		System.out.println(seed + "\t" + ms + "\t" + String.format("%.1f", last / 3.6e12) + "\t"
+				+ result.getLog().size() + "\t" + Long.toHexString(hash));
+		return hash;
+	}
+}
@@ -9,5 +9,6 @@ package cmsc433.p4.enums;
 public enum AccessRequestDenialReason {
 	RESOURCE_BUSY,		// Used for responses to non-blocking requests
 	RESOURCE_DISABLED,	// Used if resource is present but disabled
-	RESOURCE_NOT_FOUND	// Used if resource is not present
+	RESOURCE_NOT_FOUND,	// Used if resource is not present
+	DEADLOCK			// Used if a blocked request was picked to break a wait-for cycle
 }
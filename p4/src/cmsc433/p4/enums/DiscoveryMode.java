@@ -0,0 +1,10 @@
+package cmsc433.p4.enums;
+
+/**
+ * Ways a resource manager finds the manager owning a resource it does not know.
+ * 
+ */
+public enum DiscoveryMode {
+	BROADCAST,	// Ask every other manager and wait for all of their answers
+	DIRECTORY	// Ask the one directory shard the resource name hashes to
+}
@@ -0,0 +1,11 @@
+package cmsc433.p4.enums;
+
+/**
+ * Distributions of durations in a generated workload, each with a given mean.
+ * 
+ */
+public enum Distribution {
+	CONSTANT,		// Always the mean
+	UNIFORM,		// Uniform between 0 and twice the mean
+	EXPONENTIAL		// Exponential, as between arrivals of a Poisson process
+}
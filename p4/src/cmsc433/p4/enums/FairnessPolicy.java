@@ -0,0 +1,11 @@
+package cmsc433.p4.enums;
+
+/**
+ * Policies for ordering blocked readers and writers waiting on a resource.
+ * 
+ */
+public enum FairnessPolicy {
+	READER_PREFERRING,	// Reads are granted whenever compatible with holders, overtaking queued writers
+	WRITER_PREFERRING,	// Queued writers are served before any new or queued reader
+	FIFO				// Requests are served in arrival order; adjacent readers are granted together
+}
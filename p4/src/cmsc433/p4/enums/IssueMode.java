@@ -0,0 +1,10 @@
+package cmsc433.p4.enums;
+
+/**
+ * Ways a user decides when to send the next steps of its script.
+ * 
+ */
+public enum IssueMode {
+	WINDOWED,	// Keep up to a window of steps unfinished; a window of 1 waits for each step in turn
+	OPEN_LOOP	// Take steps at a fixed rate, however fast the responses come back
+}
@@ -0,0 +1,10 @@
+package cmsc433.p4.enums;
+
+/**
+ * Forms a log streamed to disk can take.
+ *
+ */
+public enum LogFormat {
+	TEXT,	// One line per event, as LogMsg.toString() renders it
+	BINARY	// Fixed-width records in memory-mapped files; see BinaryLogWriter
+}
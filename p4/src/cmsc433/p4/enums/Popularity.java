@@ -0,0 +1,10 @@
+package cmsc433.p4.enums;
+
+/**
+ * How often each resource is picked by a generated workload.
+ * 
+ */
+public enum Popularity {
+	UNIFORM,	// Every resource equally often
+	ZIPF		// The resource of rank k in proportion to 1 / k^s
+}
@@ -12,10 +12,18 @@ import akka.actor.ActorRef;
 public class AccessReleaseMsg {
 	private final AccessRelease access_release;
 	private final ActorRef sender;
+	private final int senderId;
+	private final int requestId;	// Request whose grant is released, or 0 for the oldest grant
 
-	public AccessReleaseMsg(AccessRelease access_release, ActorRef sender) {
+	public AccessReleaseMsg(AccessRelease access_release, ActorRef sender, int senderId) {
+		this(access_release, sender, senderId, 0);
+	}
+	
+	public AccessReleaseMsg(AccessRelease access_release, ActorRef sender, int senderId, int requestId) {
 		this.access_release = access_release;
 		this.sender = sender;
+		this.senderId = senderId;
+		this.requestId = requestId;
 	}
 	
 	public AccessRelease getAccessRelease() {
@@ -26,6 +34,18 @@ public class AccessReleaseMsg {
 		return sender;
 	}
 	
+	public int getSenderId() {
+		return senderId;
+	}
+	
+	/**
+	 * @return	Correlation ID of the request whose grant is released, or 0 to release the
+	 * 			sender's oldest grant of the kind
+	 */
+	public int getRequestId() {
+		return requestId;
+	}
+	
 	@Override 
 	public String toString () {
 		return "Releasing " + access_release.getType().toString() + " on " + access_release.getResourceName();
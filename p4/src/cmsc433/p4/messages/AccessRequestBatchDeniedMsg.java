@@ -0,0 +1,59 @@
+package cmsc433.p4.messages;
+
+import cmsc433.p4.enums.AccessRequestDenialReason;
+import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.AccessRequestBatch;
+
+/**
+ * Class of messages resource managers send when some request in a batch is denied.
+ * Any access already acquired for the batch has been released by the time this
+ * message is sent.
+ * 
+ */
+public class AccessRequestBatchDeniedMsg {
+	private final AccessRequestBatch batch;				// Batch being replied to
+	private final AccessRequest request;				// Request in the batch that was denied
+	private final AccessRequestDenialReason reason;		// Why that request was denied
+	private final int requestId;						// Correlation ID of the batch request
+	
+	public AccessRequestBatchDeniedMsg (AccessRequestBatch batch, AccessRequest request, AccessRequestDenialReason reason) {
+		this(batch, request, reason, 0);
+	}
+	
+	public AccessRequestBatchDeniedMsg (AccessRequestBatch batch, AccessRequest request, AccessRequestDenialReason reason, int requestId) {
+		this.batch = batch;
+		this.request = request;
+		this.reason = reason;
+		this.requestId = requestId;
+	}
+
+	public AccessRequestBatch getBatch() {
+		return batch;
+	}
+
+	/**
+	 * @return Request in the batch that was denied
+	 */
+	public AccessRequest getRequest() {
+		return request;
+	}
+
+	/**
+	 * @return Reason for denial
+	 */
+	public AccessRequestDenialReason getReason() {
+		return reason;
+	}
+
+	/**
+	 * @return	Correlation ID of the request being replied to, or 0 if it had none
+	 */
+	public int getRequestId() {
+		return requestId;
+	}
+	
+	@Override 
+	public String toString() {
+		return batch.toString() + " denied because " + request.toString() + " was denied because " + reason.toString();
+	}
+}
@@ -0,0 +1,38 @@
+package cmsc433.p4.messages;
+
+import cmsc433.p4.util.AccessRequestBatch;
+
+/**
+ * Class of messages resource managers send once every request in a batch has been
+ * granted.  The message includes the original batch.
+ * 
+ */
+public class AccessRequestBatchGrantedMsg {
+	private final AccessRequestBatch batch;	// Batch being replied to
+	private final int requestId;			// Correlation ID of the batch request
+	
+	public AccessRequestBatchGrantedMsg (AccessRequestBatch batch) {
+		this(batch, 0);
+	}
+	
+	public AccessRequestBatchGrantedMsg (AccessRequestBatch batch, int requestId) {
+		this.batch = batch;
+		this.requestId = requestId;
+	}
+
+	public AccessRequestBatch getBatch() {
+		return batch;
+	}
+
+	/**
+	 * @return	Correlation ID of the request being replied to, or 0 if it had none
+	 */
+	public int getRequestId() {
+		return requestId;
+	}
+	
+	@Override 
+	public String toString () {
+		return batch.toString() + " granted";
+	}
+}
@@ -0,0 +1,54 @@
+package cmsc433.p4.messages;
+
+import cmsc433.p4.util.AccessRequestBatch;
+import akka.actor.ActorRef;
+
+/**
+ * Class of messages for requesting access to several resources all-or-nothing.
+ * 
+ */
+public class AccessRequestBatchMsg {
+	
+	private final AccessRequestBatch batch;
+	private final ActorRef replyTo;
+	private final int userId;
+	private final int requestId;	// Correlation ID, echoed in the response
+	
+	public AccessRequestBatchMsg (AccessRequestBatch batch, ActorRef user, int userId) {
+		this(batch, user, userId, 0);
+	}
+	
+	public AccessRequestBatchMsg (AccessRequestBatch batch, ActorRef user, int userId, int requestId) {
+		this.batch = batch;
+		this.replyTo = user;
+		this.userId = userId;
+		this.requestId = requestId;
+	}
+	
+	public AccessRequestBatch getBatch() {
+		return batch;
+	}
+
+	public ActorRef getReplyTo() {
+		return replyTo;
+	}
+	
+	public int getUserId() {
+		return userId;
+	}
+	
+	/**
+	 * @return	Correlation ID, unique among the user's requests, or 0 if there is none.  The
+	 * 			batch's requests are made with the IDs that follow it, which the user must
+	 * 			not give to other requests.
+	 */
+	public int getRequestId() {
+		return requestId;
+	}
+	
+	@Override 
+	public String toString () {
+		return batch.toString();
+	}
+
+}
@@ -13,10 +13,12 @@ import cmsc433.p4.util.AccessRequest;
 public class AccessRequestDeniedMsg {
 	private final AccessRequest request;			// Message being replied to
 	private final AccessRequestDenialReason reason;	// Why request was denied
+	private final int requestId;					// Correlation ID of the request
 	
 	public AccessRequestDeniedMsg (AccessRequest request, AccessRequestDenialReason reason) {
 		this.request = request;
 		this.reason = reason;
+		this.requestId = 0;
 	}
 	
 	/**
@@ -28,6 +30,7 @@ public class AccessRequestDeniedMsg {
 	public AccessRequestDeniedMsg (AccessRequestMsg msg, AccessRequestDenialReason reason) {
 		this.request = msg.getAccessRequest();
 		this.reason = reason;
+		this.requestId = msg.getRequestId();
 	}
 
 	/**
@@ -43,6 +46,13 @@ public class AccessRequestDeniedMsg {
 	public AccessRequestDenialReason getReason() {
 		return reason;
 	}
+
+	/**
+	 * @return	Correlation ID of the request being replied to, or 0 if it had none
+	 */
+	public int getRequestId() {
+		return requestId;
+	}
 	
 	@Override 
 	public String toString() {
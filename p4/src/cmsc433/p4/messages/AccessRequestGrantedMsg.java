@@ -11,9 +11,11 @@ import cmsc433.p4.util.AccessRequest;
  */
 public class AccessRequestGrantedMsg {
 	private final AccessRequest request;	// Access request being replied to
+	private final int requestId;			// Correlation ID of the request
 	
 	public AccessRequestGrantedMsg (AccessRequest request) {
 		this.request = request;
+		this.requestId = 0;
 	}
 	
 	/**
@@ -23,11 +25,19 @@ public class AccessRequestGrantedMsg {
 	 */
 	public AccessRequestGrantedMsg (AccessRequestMsg msg) {
 		this.request = msg.getAccessRequest();
+		this.requestId = msg.getRequestId();
 	}
 
 	public AccessRequest getRequest() {
 		return request;
 	}
+
+	/**
+	 * @return	Correlation ID of the request being replied to, or 0 if it had none
+	 */
+	public int getRequestId() {
+		return requestId;
+	}
 	
 	@Override 
 	public String toString () {
@@ -6,27 +6,97 @@ import akka.actor.ActorRef;
 /**
  * Class of messages for requesting access to a resource.
  * 
+ * The user is the actor that will hold the access if it is granted; responses go to
+ * the replyTo actor, which is the user itself unless the request is made on the
+ * user's behalf (e.g. by a batch acquisition).  Managers key lock state by the user's
+ * ID rather than by its actor reference.
+ * 
+ * A manager that times its locks forwards a copy of the request stamped with the time
+ * it was forwarded, so the owning manager can tell how long the grant took.
+ * 
+ * The request ID, unique among the requests of one user, is echoed in the response,
+ * so that the user can match it without searching; 0 means the sender does not
+ * correlate its responses.
+ * 
  * @author Rance Cleaveland
  *
  */
 public class AccessRequestMsg {
 	
 	private final AccessRequest request;
+	private final ActorRef user;
+	private final int userId;
 	private final ActorRef replyTo;
+	private final long forwardedAt;		// When another manager forwarded this request, or 0
+	private final int requestId;		// Correlation ID, echoed in the response
+	
+	public AccessRequestMsg (AccessRequest request, ActorRef user, int userId) {
+		this(request, user, userId, user, 0);
+	}
 	
-	public AccessRequestMsg (AccessRequest request, ActorRef user) {
+	public AccessRequestMsg (AccessRequest request, ActorRef user, int userId, int requestId) {
+		this(request, user, userId, user, requestId);
+	}
+	
+	public AccessRequestMsg (AccessRequest request, ActorRef user, int userId, ActorRef replyTo) {
+		this(request, user, userId, replyTo, 0);
+	}
+	
+	public AccessRequestMsg (AccessRequest request, ActorRef user, int userId, ActorRef replyTo, int requestId) {
 		this.request = request;
-		this.replyTo = user;
+		this.user = user;
+		this.userId = userId;
+		this.replyTo = replyTo;
+		this.forwardedAt = 0;
+		this.requestId = requestId;
+	}
+	
+	/**
+	 * Copy of a request, as forwarded by a manager at the given time
+	 * 
+	 * @param msg			Request being forwarded
+	 * @param forwardedAt	When it was forwarded, from SimulationClock.nanoTime()
+	 */
+	public AccessRequestMsg (AccessRequestMsg msg, long forwardedAt) {
+		this.request = msg.request;
+		this.user = msg.user;
+		this.userId = msg.userId;
+		this.replyTo = msg.replyTo;
+		this.forwardedAt = forwardedAt;
+		this.requestId = msg.requestId;
 	}
 	
 	public AccessRequest getAccessRequest() {
 		return request;
 	}
 
+	public ActorRef getUser() {
+		return user;
+	}
+	
+	public int getUserId() {
+		return userId;
+	}
+
 	public ActorRef getReplyTo() {
 		return replyTo;
 	}
 	
+	/**
+	 * @return	Correlation ID, unique among the user's requests, or 0 if there is none
+	 */
+	public int getRequestId() {
+		return requestId;
+	}
+	
+	/**
+	 * @return	When another manager forwarded this request, from SimulationClock.nanoTime(), or 0
+	 * 			if it came straight from the user or was not timed
+	 */
+	public long getForwardedAt() {
+		return forwardedAt;
+	}
+	
 	@Override 
 	public String toString () {
 		return request.getType() + " request for " + request.getResourceName();
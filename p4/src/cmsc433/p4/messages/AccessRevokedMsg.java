@@ -0,0 +1,25 @@
+package cmsc433.p4.messages;
+
+import cmsc433.p4.util.AccessRelease;
+
+/**
+ * Class of messages resource managers send to a holder whose lease has expired.
+ * The holder no longer has the access described by the enclosed release.
+ * 
+ */
+public class AccessRevokedMsg {
+	private final AccessRelease revoked;	// Access that was taken away
+	
+	public AccessRevokedMsg (AccessRelease revoked) {
+		this.revoked = revoked;
+	}
+
+	public AccessRelease getRevoked() {
+		return revoked;
+	}
+	
+	@Override 
+	public String toString () {
+		return revoked.getType().toString() + " access to " + revoked.getResourceName() + " revoked";
+	}
+}
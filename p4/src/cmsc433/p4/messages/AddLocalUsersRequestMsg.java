@@ -5,20 +5,35 @@ import java.util.ArrayList;
 import akka.actor.ActorRef;
 
 /**
- * Message requesting addition of local users to a resource manager.
+ * Message requesting addition of local users to a resource manager.  The manager
+ * hands the users the IDs from firstUserId on, in list order; users of different
+ * managers must be given ranges that do not overlap.
  * 
  * @author Rance Cleaveland
  *
  */
 public class AddLocalUsersRequestMsg {
 	private final ArrayList<ActorRef> localUsers;
+	private final int firstUserId;
 	
 	public AddLocalUsersRequestMsg (ArrayList<ActorRef> localUsers) {
+		this(localUsers, 0);
+	}
+	
+	public AddLocalUsersRequestMsg (ArrayList<ActorRef> localUsers, int firstUserId) {
 		this.localUsers = localUsers;
+		this.firstUserId = firstUserId;
 	}
 
 	public ArrayList<ActorRef> getLocalUsers() {
 		return localUsers;
 	}
 	
+	/**
+	 * @return	ID of the first user in the list
+	 */
+	public int getFirstUserId() {
+		return firstUserId;
+	}
+	
 }
@@ -0,0 +1,10 @@
+package cmsc433.p4.messages;
+
+/**
+ * Class of messages resource managers periodically send themselves to report their
+ * part of the wait-for graph and, at the coordinator, to look for cycles.
+ * 
+ */
+public class DeadlockCheckMsg {
+
+}
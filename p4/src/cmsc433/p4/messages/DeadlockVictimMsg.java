@@ -0,0 +1,30 @@
+package cmsc433.p4.messages;
+
+/**
+ * Class of messages the deadlock coordinator sends to the manager holding a blocked
+ * request that was chosen to break a wait-for cycle.  The manager denies the user's
+ * blocked requests on the resource with reason DEADLOCK, if they are still blocked.
+ * 
+ */
+public class DeadlockVictimMsg {
+	private final String resourceName;
+	private final int user;		// ID of the blocked user
+	
+	public DeadlockVictimMsg (String resourceName, int user) {
+		this.resourceName = resourceName;
+		this.user = user;
+	}
+
+	public String getResourceName() {
+		return resourceName;
+	}
+
+	public int getUser() {
+		return user;
+	}
+	
+	@Override 
+	public String toString () {
+		return "Break deadlock by denying user " + user + " on " + resourceName;
+	}
+}
@@ -0,0 +1,30 @@
+package cmsc433.p4.messages;
+
+import akka.actor.ActorRef;
+
+/**
+ * Class of messages asking a directory shard which manager owns a resource.
+ * 
+ */
+public class DirectoryLookupRequestMsg {
+	private final String resource_name;
+	private final ActorRef sender;
+	
+	public DirectoryLookupRequestMsg (String resource, ActorRef sender) {
+		this.resource_name = resource;
+		this.sender = sender;
+	}
+	
+	public String getResourceName () {
+		return resource_name;
+	}
+	
+	public ActorRef getSender() {
+		return sender;
+	}
+	
+	@Override 
+	public String toString () {
+		return "Who owns " + resource_name + "?";
+	}
+}
@@ -0,0 +1,30 @@
+package cmsc433.p4.messages;
+
+import akka.actor.ActorRef;
+
+/**
+ * Class of directory-shard answers to lookups.  The owner is null if no manager has
+ * registered the resource.
+ * 
+ */
+public class DirectoryLookupResponseMsg {
+	private final String resource_name;
+	private final ActorRef owner;
+	
+	public DirectoryLookupResponseMsg (String resource_name, ActorRef owner) {
+		this.resource_name = resource_name;
+		this.owner = owner;
+	}
+	
+	public String getResourceName () {
+		return resource_name;
+	}
+	
+	public ActorRef getOwner () {
+		return owner;
+	}
+	
+	@Override public String toString () {
+		return owner == null ? "Nobody owns " + resource_name : owner.path().name() + " owns " + resource_name;
+	}
+}
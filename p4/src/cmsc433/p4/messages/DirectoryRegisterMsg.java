@@ -0,0 +1,33 @@
+package cmsc433.p4.messages;
+
+import java.util.ArrayList;
+
+import akka.actor.ActorRef;
+
+/**
+ * Class of messages a resource manager sends to a directory shard to record that it
+ * owns resources whose names hash to that shard.
+ * 
+ */
+public class DirectoryRegisterMsg {
+	private final ArrayList<String> resourceNames;
+	private final ActorRef owner;
+	
+	public DirectoryRegisterMsg (ArrayList<String> resourceNames, ActorRef owner) {
+		this.resourceNames = resourceNames;
+		this.owner = owner;
+	}
+
+	public ArrayList<String> getResourceNames() {
+		return resourceNames;
+	}
+
+	public ActorRef getOwner() {
+		return owner;
+	}
+	
+	@Override 
+	public String toString () {
+		return "I have " + resourceNames;
+	}
+}
@@ -0,0 +1,10 @@
+package cmsc433.p4.messages;
+
+/**
+ * Class of messages an open-loop user periodically sends itself to take the steps of
+ * its script that have come due.
+ * 
+ */
+public class IssueTickMsg {
+
+}
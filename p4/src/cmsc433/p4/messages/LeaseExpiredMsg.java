@@ -0,0 +1,45 @@
+package cmsc433.p4.messages;
+
+import cmsc433.p4.enums.AccessType;
+import akka.actor.ActorRef;
+
+/**
+ * Class of messages a resource manager schedules to itself for when a lease runs out.
+ * The lease token tells a current lease from one that was since released or renewed.
+ * 
+ */
+public class LeaseExpiredMsg {
+	private final String resourceName;
+	private final ActorRef user;		// Holder of the leased access
+	private final int userId;
+	private final AccessType type;
+	private final long lease;			// Token of the lease that expired
+	
+	public LeaseExpiredMsg (String resourceName, ActorRef user, int userId, AccessType type, long lease) {
+		this.resourceName = resourceName;
+		this.user = user;
+		this.userId = userId;
+		this.type = type;
+		this.lease = lease;
+	}
+
+	public String getResourceName() {
+		return resourceName;
+	}
+
+	public ActorRef getUser() {
+		return user;
+	}
+	
+	public int getUserId() {
+		return userId;
+	}
+
+	public AccessType getType() {
+		return type;
+	}
+
+	public long getLease() {
+		return lease;
+	}
+}
@@ -0,0 +1,38 @@
+package cmsc433.p4.messages;
+
+import cmsc433.p4.util.LeaseRenewal;
+import akka.actor.ActorRef;
+
+/**
+ * Class of messages for extending the lease on held access without re-queuing.
+ * Renewals of access that is not held, or holds no lease, are ignored.
+ * 
+ */
+public class LeaseRenewMsg {
+	private final LeaseRenewal renewal;
+	private final ActorRef sender;
+	private final int senderId;
+
+	public LeaseRenewMsg(LeaseRenewal renewal, ActorRef sender, int senderId) {
+		this.renewal = renewal;
+		this.sender = sender;
+		this.senderId = senderId;
+	}
+	
+	public LeaseRenewal getRenewal() {
+		return renewal;
+	}
+	
+	public ActorRef getSender() {
+		return sender;
+	}
+	
+	public int getSenderId() {
+		return senderId;
+	}
+	
+	@Override 
+	public String toString () {
+		return renewal.toString();
+	}
+}
@@ -1,11 +1,13 @@
 package cmsc433.p4.messages;
 
+
 import cmsc433.p4.enums.AccessRequestDenialReason;
 import cmsc433.p4.enums.ManagementRequestDenialReason;
 import cmsc433.p4.enums.ResourceStatus;
 import cmsc433.p4.util.AccessRelease;
 import cmsc433.p4.util.AccessRequest;
 import cmsc433.p4.util.ManagementRequest;
+import cmsc433.p4.util.SimulationClock;
 import akka.actor.ActorRef;
 
 /**
@@ -60,6 +62,9 @@ public class LogMsg {
 		/* Logged by a ResourceManagerActor when an invalid access release has
 		 * been ignored. */
 		ACCESS_RELEASE_IGNORED,
+		/* Logged by a ResourceManagerActor when it takes access away from a
+		 * user because the lease on that access expired. */
+		ACCESS_REVOKED,
 		
 		/* Logged by a ResourceManagerActor when it receives a management 
 		 * request (regardless of whether it came directly from a user or from
@@ -218,6 +223,17 @@ public class LogMsg {
 		return new LogMsg(EventType.ACCESS_RELEASE_IGNORED, user, local_resource_manager, null, access_release.getResourceName(), null, null, access_release, null, null, null);
 	}
 	
+	/**
+	 * 
+	 * @param user The user whose access has been revoked
+	 * @param local_resource_manager The resource manager who owns the resource on which access is being revoked
+	 * @param access_revoked An AccessRelease object describing the access that was revoked
+	 * @return A LogMsg indicating a resource manager has revoked a user's access because its lease expired
+	 */
+	public static LogMsg makeAccessRevokedLogMsg (ActorRef user, ActorRef local_resource_manager, AccessRelease access_revoked) {
+		return new LogMsg(EventType.ACCESS_REVOKED, user, local_resource_manager, null, access_revoked.getResourceName(), null, null, access_revoked, null, null, null);
+	}
+	
 	/**
 	 * 
 	 * @param sender The user actor that originally sent this request
@@ -286,6 +302,8 @@ public class LogMsg {
 	private final ManagementRequest management_request;
 	private final ManagementRequestDenialReason management_request_denial_reason;
 	private final ResourceStatus new_resource_status;
+	private final long timestamp;						// When the event was logged, from SimulationClock.nanoTime()
+	private final long sequence;						// Number ordering the event among its simulation's
 	
 	
 	
@@ -305,6 +323,9 @@ public class LogMsg {
 		this.management_request = management_request;
 		this.management_request_denial_reason = management_request_denial_reason;
 		this.new_resource_status = new_resource_status;
+		SimulationClock clock = SimulationClock.current();
+		this.timestamp = clock.nanoTime();
+		this.sequence = clock.nextSequence();
 	}
 	
 	public EventType getType() {
@@ -351,6 +372,22 @@ public class LogMsg {
 		return new_resource_status;
 	}
 	
+	/**
+	 * @return	When the event was logged, in nanoseconds from SimulationClock.nanoTime(); only
+	 * 			differences between timestamps from one clock are meaningful
+	 */
+	public long getTimestamp () {
+		return timestamp;
+	}
+	
+	/**
+	 * @return	Sequence number of the event, from SimulationClock.nextSequence(); logs
+	 * 			kept in parts are merged by it
+	 */
+	public long getSequence () {
+		return sequence;
+	}
+	
 	
 	@Override public String toString() {
 		if (type == EventType.USER_START) {
@@ -377,6 +414,8 @@ public class LogMsg {
 			return actorRefToString(user) + " released " + access_release.getType().toString() + " access to " + resource_name + " (managed by " + actorRefToString(local_resource_manager) + ")"; 
 		} else if (type == EventType.ACCESS_RELEASE_IGNORED) {
 			return actorRefToString(user) + "'s release of " + access_release.getType().toString() + " access to " + resource_name + " (managed by " + actorRefToString(local_resource_manager) + ") was ignored";
+		} else if (type == EventType.ACCESS_REVOKED) {
+			return actorRefToString(user) + "'s " + access_release.getType().toString() + " access to " + resource_name + " (managed by " + actorRefToString(local_resource_manager) + ") was revoked because its lease expired";
 		} else if (type == EventType.MANAGEMENT_REQUEST_RECEIVED) {
 			return actorRefToString(local_resource_manager) + " received " + management_request.toString()  + " from " + actorRefToString(user);
 		} else if (type == EventType.MANAGEMENT_REQUEST_FORWARDED) {
@@ -0,0 +1,19 @@
+package cmsc433.p4.messages;
+
+/**
+ * Class of messages a logger shard sends the main logger when it starts, so that the
+ * main logger collects its events at the end.
+ * 
+ */
+public class LogShardRegisterMsg {
+	
+	private final int shard;	// ID of the shard, from 1; its part's place in the merge
+
+	public LogShardRegisterMsg(int shard) {
+		this.shard = shard;
+	}
+
+	public int getShard() {
+		return shard;
+	}
+}
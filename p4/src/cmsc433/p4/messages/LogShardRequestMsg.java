@@ -0,0 +1,10 @@
+package cmsc433.p4.messages;
+
+/**
+ * Class of messages the main logger sends each logger shard once every user has
+ * terminated, asking for the shard's events.
+ * 
+ */
+public class LogShardRequestMsg {
+
+}
@@ -0,0 +1,20 @@
+package cmsc433.p4.messages;
+
+import java.util.ArrayList;
+
+/**
+ * Class of messages with which a logger shard hands its events to the main logger.
+ * 
+ */
+public class LogShardResponseMsg {
+	
+	private final ArrayList<Object> log;
+
+	public LogShardResponseMsg(ArrayList<Object> log) {
+		this.log = log;
+	}
+
+	public ArrayList<Object> getLog() {
+		return log;
+	}
+}
@@ -13,10 +13,12 @@ import cmsc433.p4.util.ManagementRequest;
 public class ManagementRequestDeniedMsg {
 	private final ManagementRequest request;			// Request being replied to
 	private final ManagementRequestDenialReason reason;	// Why request was denied
+	private final int requestId;						// Correlation ID of the request
 	
 	public ManagementRequestDeniedMsg (ManagementRequest request, ManagementRequestDenialReason reason) {
 		this.request = request;
 		this.reason = reason;
+		this.requestId = 0;
 	}
 	
 	/**
@@ -28,6 +30,7 @@ public class ManagementRequestDeniedMsg {
 	public ManagementRequestDeniedMsg (ManagementRequestMsg msg, ManagementRequestDenialReason reason) {
 		this.request = msg.getRequest();
 		this.reason = reason;
+		this.requestId = msg.getRequestId();
 	}
 
 	/**
@@ -43,6 +46,13 @@ public class ManagementRequestDeniedMsg {
 	public ManagementRequestDenialReason getReason() {
 		return reason;
 	}
+
+	/**
+	 * @return	Correlation ID of the request being replied to, or 0 if it had none
+	 */
+	public int getRequestId() {
+		return requestId;
+	}
 	
 	@Override 
 	public String toString () {
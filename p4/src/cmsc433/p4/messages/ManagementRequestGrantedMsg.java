@@ -11,9 +11,11 @@ import cmsc433.p4.util.ManagementRequest;
  */
 public class ManagementRequestGrantedMsg {
 	private final ManagementRequest request;	// Request being replied to
+	private final int requestId;				// Correlation ID of the request
 	
 	public ManagementRequestGrantedMsg (ManagementRequest request) {
 		this.request = request;
+		this.requestId = 0;
 	}
 	
 	/**
@@ -23,11 +25,19 @@ public class ManagementRequestGrantedMsg {
 	 */
 	public ManagementRequestGrantedMsg (ManagementRequestMsg msg) {
 		this.request = msg.getRequest();
+		this.requestId = msg.getRequestId();
 	}
 
 	public ManagementRequest getRequest() {
 		return request;
 	}
+
+	/**
+	 * @return	Correlation ID of the request being replied to, or 0 if it had none
+	 */
+	public int getRequestId() {
+		return requestId;
+	}
 	
 	@Override 
 	public String toString () {
@@ -12,10 +12,18 @@ import akka.actor.ActorRef;
 public class ManagementRequestMsg {
 	private final ManagementRequest request;
 	private final ActorRef replyTo;
+	private final int userId;
+	private final int requestId;	// Correlation ID, echoed in the response
 	
-	public ManagementRequestMsg (ManagementRequest request, ActorRef user) {
+	public ManagementRequestMsg (ManagementRequest request, ActorRef user, int userId) {
+		this(request, user, userId, 0);
+	}
+	
+	public ManagementRequestMsg (ManagementRequest request, ActorRef user, int userId, int requestId) {
 		this.request = request;
 		this.replyTo = user;
+		this.userId = userId;
+		this.requestId = requestId;
 	}
 
 	public ManagementRequest getRequest() {
@@ -26,6 +34,17 @@ public class ManagementRequestMsg {
 		return replyTo;
 	}
 	
+	public int getUserId() {
+		return userId;
+	}
+	
+	/**
+	 * @return	Correlation ID, unique among the user's requests, or 0 if there is none
+	 */
+	public int getRequestId() {
+		return requestId;
+	}
+	
 	@Override 
 	public String toString () {
 		return request.getType() + " " + request.getResourceName();
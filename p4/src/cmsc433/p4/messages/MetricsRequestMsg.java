@@ -0,0 +1,10 @@
+package cmsc433.p4.messages;
+
+/**
+ * Class of messages asking a resource manager for the latency histograms of its local
+ * resources' locks.  The manager answers the sender with a MetricsResponseMsg.
+ * 
+ */
+public class MetricsRequestMsg {
+
+}
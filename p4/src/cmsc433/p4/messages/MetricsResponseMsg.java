@@ -0,0 +1,30 @@
+package cmsc433.p4.messages;
+
+import java.util.HashMap;
+
+import cmsc433.p4.util.LockMetrics;
+import akka.actor.ActorRef;
+
+/**
+ * Class of messages with which a resource manager returns copies of the latency
+ * histograms of its local resources' locks, keyed by resource name.  Resources whose
+ * lock has never been used are left out.
+ * 
+ */
+public class MetricsResponseMsg {
+	private final ActorRef manager;
+	private final HashMap<String, LockMetrics> metrics;
+	
+	public MetricsResponseMsg (ActorRef manager, HashMap<String, LockMetrics> metrics) {
+		this.manager = manager;
+		this.metrics = metrics;
+	}
+
+	public ActorRef getManager() {
+		return manager;
+	}
+
+	public HashMap<String, LockMetrics> getMetrics() {
+		return metrics;
+	}
+}
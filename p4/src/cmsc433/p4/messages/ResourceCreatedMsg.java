@@ -0,0 +1,26 @@
+package cmsc433.p4.messages;
+
+import java.util.ArrayList;
+
+/**
+ * Class of messages a resource manager sends to every other manager when it creates
+ * resources after the managers have been introduced, so that none of them keeps
+ * treating those names as nonexistent.
+ * 
+ */
+public class ResourceCreatedMsg {
+	private final ArrayList<String> resourceNames;
+	
+	public ResourceCreatedMsg (ArrayList<String> resourceNames) {
+		this.resourceNames = resourceNames;
+	}
+
+	public ArrayList<String> getResourceNames() {
+		return resourceNames;
+	}
+	
+	@Override 
+	public String toString () {
+		return "Created " + resourceNames;
+	}
+}
@@ -2,6 +2,9 @@ package cmsc433.p4.messages;
 
 import java.util.ArrayList;
 
+import cmsc433.p4.util.LogFiles;
+import cmsc433.p4.util.ShardedLog;
+
 /**
  * Message class used by simulation managers to return result of simulation (i.e. log).
  * 
@@ -10,13 +13,41 @@ import java.util.ArrayList;
  */
 public class SimulationFinishMsg {
 	
-	private final ArrayList<Object> log;
+	private final ArrayList<Object> log;		// Events in memory, or null if streamed to disk
+	private final LogFiles logFiles;		// Files events were streamed to, or null
+	private final ShardedLog shardedLog;	// Events kept by several logger shards, or null
 
 	public SimulationFinishMsg(ArrayList<Object> log) {
 		this.log = log;
+		this.logFiles = null;
+		this.shardedLog = null;
+	}
+
+	public SimulationFinishMsg(LogFiles logFiles) {
+		this.log = null;
+		this.logFiles = logFiles;
+		this.shardedLog = null;
+	}
+
+	public SimulationFinishMsg(ShardedLog shardedLog) {
+		this.log = null;
+		this.logFiles = null;
+		this.shardedLog = shardedLog;
 	}
 
+	/**
+	 * @return	Events in memory, merged from the shards if the log was sharded; null if
+	 * 			the log was streamed to disk
+	 */
 	public ArrayList<Object> getLog() {
-		return log;
+		return shardedLog != null ? shardedLog.getMerged() : log;
+	}
+
+	public LogFiles getLogFiles() {
+		return logFiles;
+	}
+
+	public ShardedLog getShardedLog() {
+		return shardedLog;
 	}
 }
@@ -0,0 +1,71 @@
+package cmsc433.p4.messages;
+
+import cmsc433.p4.util.LogFiles;
+
+/**
+ * Class of messages with which a sweep manager reports one finished simulation: how
+ * long it took and how many events of each type it logged.  A log kept in memory is
+ * counted and dropped; a log streamed to disk may still be being written, so only its
+ * files are passed on, to be read once the actor system has shut down.
+ *
+ */
+public class SimulationSummaryMsg {
+	private final String name;			// Name of the simulation in its specification
+	private final int index;			// Position of the specification in the sweep
+	private final long wallMs;			// From start to result
+	private final int[] counts;			// Events logged, by type ordinal; null if unknown
+	private final LogFiles logFiles;	// Files the log was streamed to, or null
+	private final boolean failed;		// Whether it stopped without a result
+
+	public SimulationSummaryMsg (String name, int index, long wallMs, int[] counts, LogFiles logFiles, boolean failed) {
+		this.name = name;
+		this.index = index;
+		this.wallMs = wallMs;
+		this.counts = counts;
+		this.logFiles = logFiles;
+		this.failed = failed;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public long getWallMs() {
+		return wallMs;
+	}
+
+	/**
+	 * @return	Events logged, or -1 if the log was streamed to disk or the simulation failed
+	 */
+	public int getEvents() {
+		if (counts == null) {
+			return -1;
+		}
+		int n = 0;
+		for (int c : counts) {
+			n += c;
+		}
+		return n;
+	}
+
+	/**
+	 * @param type	Type of event
+	 * @return		Events of that type logged, or -1 if the log was streamed to disk or
+	 * 				the simulation failed
+	 */
+	public int getCount(LogMsg.EventType type) {
+		return counts == null ? -1 : counts[type.ordinal()];
+	}
+
+	public LogFiles getLogFiles() {
+		return logFiles;
+	}
+
+	public boolean isFailed() {
+		return failed;
+	}
+}
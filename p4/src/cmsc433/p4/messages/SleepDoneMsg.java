@@ -0,0 +1,10 @@
+package cmsc433.p4.messages;
+
+/**
+ * Class of messages a user schedules to itself for when the sleep of its current
+ * script step is over.
+ * 
+ */
+public class SleepDoneMsg {
+
+}
@@ -0,0 +1,24 @@
+package cmsc433.p4.messages;
+
+/**
+ * Class of messages with which a sweep manager reports that every simulation of the
+ * sweep has finished, after the summaries of all of them.
+ *
+ */
+public class SweepFinishMsg {
+	private final int simulations;	// Simulations run
+	private final int failed;		// Of which stopped without a result
+
+	public SweepFinishMsg (int simulations, int failed) {
+		this.simulations = simulations;
+		this.failed = failed;
+	}
+
+	public int getSimulations() {
+		return simulations;
+	}
+
+	public int getFailed() {
+		return failed;
+	}
+}
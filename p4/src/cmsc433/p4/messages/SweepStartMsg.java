@@ -0,0 +1,10 @@
+package cmsc433.p4.messages;
+
+/**
+ * Class of messages used to tell sweep managers to start.  The sender is sent the
+ * summary of each simulation as it finishes, and a SweepFinishMsg once all have.
+ *
+ */
+public class SweepStartMsg {
+
+}
@@ -0,0 +1,23 @@
+package cmsc433.p4.messages;
+
+/**
+ * Class of messages with which a resource manager hands a local user the dense ID it
+ * goes by in requests, as the user is added to the manager.
+ * 
+ */
+public class UserIdMsg {
+	private final int userId;
+	
+	public UserIdMsg (int userId) {
+		this.userId = userId;
+	}
+
+	public int getUserId() {
+		return userId;
+	}
+	
+	@Override 
+	public String toString () {
+		return "User ID " + userId;
+	}
+}
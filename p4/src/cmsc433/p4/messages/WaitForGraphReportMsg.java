@@ -0,0 +1,30 @@
+package cmsc433.p4.messages;
+
+import java.util.ArrayList;
+
+import cmsc433.p4.util.WaitForEdge;
+import akka.actor.ActorRef;
+
+/**
+ * Class of messages resource managers send to the deadlock coordinator with the
+ * wait-for edges of requests currently blocked on their resources.  Each report
+ * replaces the reporter's previous one.
+ * 
+ */
+public class WaitForGraphReportMsg {
+	private final ActorRef reporter;
+	private final ArrayList<WaitForEdge> edges;
+	
+	public WaitForGraphReportMsg (ActorRef reporter, ArrayList<WaitForEdge> edges) {
+		this.reporter = reporter;
+		this.edges = edges;
+	}
+
+	public ActorRef getReporter() {
+		return reporter;
+	}
+
+	public ArrayList<WaitForEdge> getEdges() {
+		return edges;
+	}
+}
@@ -12,10 +12,16 @@ public class AccessRequest {
 	
 	private final String resourceName;
 	private final AccessRequestType type;
+	private final long leaseMs;		// How long a grant lasts before it is revoked; 0 means forever
 	
 	public AccessRequest (String resourceName, AccessRequestType type) {
+		this(resourceName, type, 0);
+	}
+	
+	public AccessRequest (String resourceName, AccessRequestType type, long leaseMs) {
 		this.resourceName = resourceName;
 		this.type = type;
+		this.leaseMs = leaseMs;
 	}
 
 	public String getResourceName() {
@@ -26,8 +32,18 @@ public class AccessRequest {
 		return type;
 	}
 	
+	/**
+	 * @return	Lease duration in milliseconds, or 0 if a grant never expires
+	 */
+	public long getLeaseMs() {
+		return leaseMs;
+	}
+	
 	@Override
 	public String toString () {
+		if (leaseMs > 0) {
+			return type.toString() + " request for " + resourceName + " with " + leaseMs + " ms lease";
+		}
 		return type.toString() + " request for " + resourceName;
 	}
 
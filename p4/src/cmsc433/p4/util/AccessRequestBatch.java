@@ -0,0 +1,49 @@
+package cmsc433.p4.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+/**
+ * A set of access requests that users want granted all together or not at all.
+ * 
+ * Requests are acquired in increasing order of resource name.  Because every batch
+ * uses the same global order, two batches can never each hold a resource the other
+ * is waiting for.
+ * 
+ */
+public class AccessRequestBatch {
+	
+	private final ArrayList<AccessRequest> requests;	// Requests in acquisition order
+	
+	/**
+	 * Create a batch from the given requests.  The list is copied.
+	 * 
+	 * @param requests	Requests to acquire together
+	 */
+	public AccessRequestBatch (ArrayList<AccessRequest> requests) {
+		this.requests = new ArrayList<AccessRequest>(requests);
+		Collections.sort(this.requests, new Comparator<AccessRequest>() {
+			public int compare(AccessRequest r1, AccessRequest r2) {
+				return r1.getResourceName().compareTo(r2.getResourceName());
+			}
+		});
+	}
+	
+	/**
+	 * @return	Requests in the batch, in acquisition order
+	 */
+	public ArrayList<AccessRequest> getRequests() {
+		return requests;
+	}
+	
+	@Override
+	public String toString () {
+		StringBuilder str = new StringBuilder("Batch of");
+		for (int i = 0; i < requests.size(); i++) {
+			str.append(i == 0 ? " " : " & ");
+			str.append(requests.get(i).toString());
+		}
+		return str.toString();
+	}
+}
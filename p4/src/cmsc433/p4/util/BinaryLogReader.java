@@ -0,0 +1,222 @@
+package cmsc433.p4.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+import cmsc433.p4.enums.AccessRequestDenialReason;
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.enums.AccessType;
+import cmsc433.p4.enums.ManagementRequestDenialReason;
+import cmsc433.p4.enums.ManagementRequestType;
+import cmsc433.p4.enums.ResourceStatus;
+import cmsc433.p4.messages.LogMsg.EventType;
+
+/**
+ * Cursor over the records of a log written by BinaryLogWriter.
+ *
+ * Files are memory-mapped read-only and the getters read fields straight out of the
+ * mapping, so stepping through a log creates no objects; call next() and then the
+ * getters for the record it moved to.  Names behind actor and resource IDs come from
+ * the log's dictionary, loaded once.
+ *
+ * <pre>
+ * BinaryLogReader reader = new BinaryLogReader(logFiles);
+ * while (reader.next()) {
+ *     if (reader.getType() == EventType.ACCESS_REQUEST_GRANTED) ...
+ * }
+ * </pre>
+ *
+ */
+public class BinaryLogReader {
+
+	private static final EventType[] TYPES = EventType.values();
+	private static final AccessRequestType[] REQUEST_TYPES = AccessRequestType.values();
+	private static final AccessType[] ACCESS_TYPES = AccessType.values();
+	private static final ManagementRequestType[] MANAGEMENT_TYPES = ManagementRequestType.values();
+	private static final AccessRequestDenialReason[] ACCESS_DENIALS = AccessRequestDenialReason.values();
+	private static final ManagementRequestDenialReason[] MANAGEMENT_DENIALS = ManagementRequestDenialReason.values();
+	private static final ResourceStatus[] STATUSES = ResourceStatus.values();
+
+	private final ArrayList<File> files;
+	private int nextFile = 0;
+	private MappedByteBuffer buffer = null;	// Mapping of the current file
+	private long records = 0;				// Records in the current file
+	private long index = -1;				// Current record in the current file
+	private int at = 0;						// Offset of the current record
+
+	private final IntObjectMap<String> actorNames = new IntObjectMap<String>();
+	private final IntObjectMap<String> resourceNames = new IntObjectMap<String>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param log			Handle to a binary log
+	 * @throws IOException	If the dictionary cannot be read
+	 */
+	public BinaryLogReader (LogFiles log) throws IOException {
+		this.files = log.getFiles();
+		BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(log.getNamesFile()), "UTF-8"));
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				String[] fields = line.split("\t", 3);
+				IntObjectMap<String> names = fields[0].equals("A") ? actorNames : resourceNames;
+				names.put(Integer.parseInt(fields[1]), fields[2]);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Moves to the next record.
+	 *
+	 * @return				False if there are no more records
+	 * @throws IOException	If a file cannot be mapped or is not a binary log
+	 */
+	public boolean next() throws IOException {
+		while (index + 1 >= records) {
+			if (nextFile == files.size()) {
+				return false;
+			}
+			map(files.get(nextFile++));
+		}
+		index++;
+		at = BinaryLogWriter.HEADER_SIZE + (int)index * BinaryLogWriter.RECORD_SIZE;
+		return true;
+	}
+
+	public long getTimestamp() {
+		return buffer.getLong(at + BinaryLogWriter.TIMESTAMP);
+	}
+
+	public EventType getType() {
+		return TYPES[buffer.get(at + BinaryLogWriter.TYPE)];
+	}
+
+	/**
+	 * @return	Actor ID of the user, or -1
+	 */
+	public int getUser() {
+		return buffer.getInt(at + BinaryLogWriter.USER);
+	}
+
+	/**
+	 * @return	Actor ID of the manager that logged the event, or -1
+	 */
+	public int getManager() {
+		return buffer.getInt(at + BinaryLogWriter.MANAGER);
+	}
+
+	/**
+	 * @return	Actor ID of the other manager, or -1
+	 */
+	public int getRemote() {
+		return buffer.getInt(at + BinaryLogWriter.REMOTE);
+	}
+
+	/**
+	 * @return	Resource ID, or -1
+	 */
+	public int getResource() {
+		return buffer.getInt(at + BinaryLogWriter.RESOURCE);
+	}
+
+	/**
+	 * @return	Ordinal of the AccessRequestType, AccessType or ManagementRequestType,
+	 * 			depending on the event type, or -1
+	 */
+	public int getDetail() {
+		return buffer.get(at + BinaryLogWriter.DETAIL);
+	}
+
+	/**
+	 * @return	Ordinal of the AccessRequestDenialReason, ManagementRequestDenialReason
+	 * 			or new ResourceStatus, depending on the event type, or -1
+	 */
+	public int getOutcome() {
+		return buffer.get(at + BinaryLogWriter.OUTCOME);
+	}
+
+	/**
+	 * @param id	Actor ID from this log
+	 * @return		Name of the actor
+	 */
+	public String actorName(int id) {
+		return actorNames.get(id);
+	}
+
+	/**
+	 * @param id	Resource ID from this log
+	 * @return		Name of the resource
+	 */
+	public String resourceName(int id) {
+		return resourceNames.get(id);
+	}
+
+	/**
+	 * @return	The current record as one line of text
+	 */
+	public String format() {
+		EventType type = getType();
+		StringBuilder line = new StringBuilder();
+		line.append(getTimestamp()).append(' ').append(type);
+		if (getUser() >= 0) {
+			line.append(" user=").append(actorName(getUser()));
+		}
+		if (getManager() >= 0) {
+			line.append(" manager=").append(actorName(getManager()));
+		}
+		if (getRemote() >= 0) {
+			line.append(" remote=").append(actorName(getRemote()));
+		}
+		if (getResource() >= 0) {
+			line.append(" resource=").append(resourceName(getResource()));
+		}
+		int detail = getDetail();
+		if (detail >= 0) {
+			if (type.name().startsWith("ACCESS_REQUEST")) {
+				line.append(' ').append(REQUEST_TYPES[detail]);
+			} else if (type.name().startsWith("MANAGEMENT")) {
+				line.append(' ').append(MANAGEMENT_TYPES[detail]);
+			} else {
+				line.append(' ').append(ACCESS_TYPES[detail]);
+			}
+		}
+		int outcome = getOutcome();
+		if (outcome >= 0) {
+			if (type == EventType.ACCESS_REQUEST_DENIED) {
+				line.append(' ').append(ACCESS_DENIALS[outcome]);
+			} else if (type == EventType.MANAGEMENT_REQUEST_DENIED) {
+				line.append(' ').append(MANAGEMENT_DENIALS[outcome]);
+			} else {
+				line.append(' ').append(STATUSES[outcome]);
+			}
+		}
+		return line.toString();
+	}
+
+	// Map a whole file and check its header.
+	private void map(File file) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+		} finally {
+			in.close();
+		}
+		if (buffer.capacity() < BinaryLogWriter.HEADER_SIZE || buffer.getInt(0) != BinaryLogWriter.MAGIC
+				|| buffer.getShort(4) != BinaryLogWriter.VERSION || buffer.getShort(6) != BinaryLogWriter.RECORD_SIZE) {
+			throw new IOException(file + " is not a binary log");
+		}
+		long written = (buffer.capacity() - BinaryLogWriter.HEADER_SIZE) / BinaryLogWriter.RECORD_SIZE;
+		records = Math.min(buffer.getLong(BinaryLogWriter.COUNT_OFFSET), written);
+		index = -1;
+	}
+}
@@ -0,0 +1,212 @@
+package cmsc433.p4.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+
+import cmsc433.p4.enums.LogFormat;
+import cmsc433.p4.messages.LogMsg;
+import akka.actor.ActorRef;
+
+/**
+ * Writes log events as fixed-width binary records into memory-mapped files.
+ *
+ * Each file starts with a HEADER_SIZE-byte header (magic, version, record size and
+ * record count) followed by RECORD_SIZE-byte records, all big-endian:
+ *
+ * <pre>
+ *  0  long  timestamp    LogMsg.getTimestamp()
+ *  8  int   user         actor ID, or -1
+ * 12  int   manager      actor ID of the manager logging the event, or -1
+ * 16  int   remote       actor ID of the other manager, or -1
+ * 20  int   resource     resource ID in this log's dictionary, or -1
+ * 24  byte  type         LogMsg.EventType ordinal
+ * 25  byte  detail       ordinal of the request's AccessRequestType, the release's
+ *                        AccessType or the ManagementRequestType, or -1
+ * 26  byte  outcome      ordinal of the denial reason or new ResourceStatus, or -1
+ * 27  byte  reserved
+ * 28  int   reserved
+ * </pre>
+ *
+ * A file is mapped in full when it is started, so writing a record is a handful of
+ * stores into memory; it is cut to the records written when the next file is started
+ * or the writer is closed.  The names behind the IDs go to a text dictionary beside
+ * the files, one "A id name" or "R id name" line (tab-separated) per actor or
+ * resource, written when the ID is first used.
+ *
+ */
+public class BinaryLogWriter implements LogSink {
+
+	public static final int MAGIC = 0x50344c47;	// "P4LG"
+	public static final short VERSION = 1;
+	public static final int HEADER_SIZE = 16;
+	public static final int RECORD_SIZE = 32;
+
+	// Offsets of header fields.
+	static final int COUNT_OFFSET = 8;
+
+	// Offsets of record fields.
+	static final int TIMESTAMP = 0;
+	static final int USER = 8;
+	static final int MANAGER = 12;
+	static final int REMOTE = 16;
+	static final int RESOURCE = 20;
+	static final int TYPE = 24;
+	static final int DETAIL = 25;
+	static final int OUTCOME = 26;
+
+	private final File directory;
+	private final String prefix;
+	private final long eventsPerFile;
+
+	private RandomAccessFile file = null;	// File being written
+	private MappedByteBuffer buffer = null;	// Its mapping
+	private long inFile = 0;				// Records in the current file
+	private int fileCount = 0;				// Files started so far
+
+	private final HashMap<ActorRef, Integer> actorIds = new HashMap<ActorRef, Integer>();
+	private final HashMap<String, Integer> resourceIds = new HashMap<String, Integer>();	// Every name logged, so missing ones too
+	private final Writer names;
+
+	/**
+	 * Constructor
+	 *
+	 * @param directory		Directory to write log files to; created if missing
+	 * @param prefix		Start of every log file name
+	 * @param eventsPerFile	Most events in one file before rolling to the next
+	 * @throws IOException	If the directory or dictionary cannot be created
+	 */
+	public BinaryLogWriter (File directory, String prefix, long eventsPerFile) throws IOException {
+		if (HEADER_SIZE + eventsPerFile * RECORD_SIZE > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("At most " + (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE + " events fit in one mapped file");
+		}
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create log directory " + directory);
+		}
+		this.directory = directory;
+		this.prefix = prefix;
+		this.eventsPerFile = eventsPerFile;
+		this.names = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(namesFile(directory, prefix)), "UTF-8"));
+	}
+
+	/**
+	 * @return	Dictionary file of the log with the given directory and prefix
+	 */
+	static File namesFile(File directory, String prefix) {
+		return new File(directory, prefix + ".names");
+	}
+
+	public void append(LogMsg event) throws IOException {
+		if (buffer == null || inFile == eventsPerFile) {
+			openNext();
+		}
+
+		String resourceName = event.getResourceName();
+		int detail = -1;
+		int outcome = -1;
+		if (event.getAccessRequest() != null) {
+			resourceName = event.getAccessRequest().getResourceName();
+			detail = event.getAccessRequest().getType().ordinal();
+		} else if (event.getAccessRelease() != null) {
+			resourceName = event.getAccessRelease().getResourceName();
+			detail = event.getAccessRelease().getType().ordinal();
+		} else if (event.getManagementRequest() != null) {
+			resourceName = event.getManagementRequest().getResourceName();
+			detail = event.getManagementRequest().getType().ordinal();
+		}
+		if (event.getAccessRequestDenialReason() != null) {
+			outcome = event.getAccessRequestDenialReason().ordinal();
+		} else if (event.getManagementRequestDenialReason() != null) {
+			outcome = event.getManagementRequestDenialReason().ordinal();
+		} else if (event.getNewResourceStatus() != null) {
+			outcome = event.getNewResourceStatus().ordinal();
+		}
+		int resource = resourceId(resourceName);
+
+		int at = HEADER_SIZE + (int)inFile * RECORD_SIZE;
+		buffer.putLong(at + TIMESTAMP, event.getTimestamp());
+		buffer.putInt(at + USER, actorId(event.getUser()));
+		buffer.putInt(at + MANAGER, actorId(event.getLocalResourceManager()));
+		buffer.putInt(at + REMOTE, actorId(event.getRemoteResourceManager()));
+		buffer.putInt(at + RESOURCE, resource);
+		buffer.put(at + TYPE, (byte)event.getType().ordinal());
+		buffer.put(at + DETAIL, (byte)detail);
+		buffer.put(at + OUTCOME, (byte)outcome);
+		inFile++;
+		buffer.putLong(COUNT_OFFSET, inFile);
+	}
+
+	public LogFiles getLogFiles() {
+		return new LogFiles(directory, prefix, LogFormat.BINARY);
+	}
+
+	// Records are stored in the mapping, header count included, as they are appended;
+	// only dictionary lines are buffered.
+	public void flush() throws IOException {
+		names.flush();
+	}
+
+	public void close() throws IOException {
+		finishFile();
+		names.close();
+	}
+
+	// ID of an actor in this log, assigned and put in the dictionary on first use.
+	private int actorId(ActorRef actor) throws IOException {
+		if (actor == null) {
+			return -1;
+		}
+		Integer id = actorIds.get(actor);
+		if (id == null) {
+			id = actorIds.size();
+			actorIds.put(actor, id);
+			names.write("A\t" + id + "\t" + actor.path().name() + "\n");
+		}
+		return id;
+	}
+
+	// ID of a resource name in this log, assigned and put in the dictionary on first use.
+	private int resourceId(String name) throws IOException {
+		if (name == null) {
+			return -1;
+		}
+		Integer id = resourceIds.get(name);
+		if (id == null) {
+			id = resourceIds.size();
+			resourceIds.put(name, id);
+			names.write("R\t" + id + "\t" + name + "\n");
+		}
+		return id;
+	}
+
+	// Cut the current file to the records written, and map a fresh one.
+	private void openNext() throws IOException {
+		finishFile();
+		File next = new File(directory, String.format("%s-%05d%s", prefix, fileCount++, LogFiles.BINARY_SUFFIX));
+		file = new RandomAccessFile(next, "rw");
+		buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + eventsPerFile * RECORD_SIZE);
+		buffer.putInt(0, MAGIC);
+		buffer.putShort(4, VERSION);
+		buffer.putShort(6, (short)RECORD_SIZE);
+		buffer.putLong(COUNT_OFFSET, 0);
+		inFile = 0;
+	}
+
+	private void finishFile() throws IOException {
+		if (file != null) {
+			buffer.force();
+			buffer = null;
+			file.setLength(HEADER_SIZE + inFile * RECORD_SIZE);
+			file.close();
+			file = null;
+		}
+		names.flush();
+	}
+}
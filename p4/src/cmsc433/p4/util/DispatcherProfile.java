@@ -0,0 +1,181 @@
+package cmsc433.p4.util;
+
+import akka.actor.Props;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+/**
+ * Class of settings for the dispatchers the actors of a simulation run on, by role.
+ *
+ * A shared profile, the default, leaves every actor on the actor system's default
+ * dispatcher.  An isolated profile gives each role dispatchers of its own, so that a
+ * flood of busy users cannot keep the managers or the logger from running: managers
+ * (and their partitions) get a thread each, or a fixed pool of managerThreads threads
+ * if that is set; users share a fork-join pool; and each logger gets a thread of its
+ * own.  Throughput, the number of messages an actor handles before giving up its
+ * thread, is set per role; a high throughput keeps a busy manager on a warm thread.
+ *
+ * The dispatchers of an isolated profile must be defined in the actor system the
+ * simulation runs in, by creating it with toConfig() ahead of its other configuration.
+ * Profiles with different names can be defined side by side, for simulations of one
+ * sweep to use different ones.  Under a virtual SimulationClock the profile is ignored,
+ * as every actor has to run on the clock's thread.
+ *
+ */
+public class DispatcherProfile {
+
+	private boolean isolated = false;			// Whether each role gets dispatchers of its own
+	private String name = "p4";					// Prefix of the profile's dispatcher IDs
+	private int managerThreads = 0;				// Threads shared by managers, or 0 for a thread per manager
+	private int managerThroughput = 100;
+	private double userParallelismFactor = 1.0;	// User threads per processor
+	private int userThroughput = 5;
+	private int loggerThroughput = 1000;
+
+	/**
+	 * @param props	Props of a resource manager or manager partition
+	 * @return		The same Props, on the managers' dispatcher if there is one
+	 */
+	public Props forManager(Props props) {
+		return on(props, getManagerDispatcher());
+	}
+
+	/**
+	 * @param props	Props of a user
+	 * @return		The same Props, on the users' dispatcher if there is one
+	 */
+	public Props forUser(Props props) {
+		return on(props, getUserDispatcher());
+	}
+
+	/**
+	 * @param props	Props of a logger or logger shard
+	 * @return		The same Props, on the loggers' dispatcher if there is one
+	 */
+	public Props forLogger(Props props) {
+		return on(props, getLoggerDispatcher());
+	}
+
+	private Props on(Props props, String dispatcher) {
+		if (dispatcher == null || SimulationClock.current().isVirtual()) {
+			return props;
+		}
+		return props.withDispatcher(dispatcher);
+	}
+
+	/**
+	 * @return	Definitions of the profile's dispatchers, to create the actor system with;
+	 * 			empty for a shared profile
+	 */
+	public Config toConfig() {
+		if (!isolated) {
+			return ConfigFactory.empty();
+		}
+		StringBuilder str = new StringBuilder();
+		if (managerThreads > 0) {
+			str.append(getManagerDispatcher() + " { type = Dispatcher, executor = thread-pool-executor, ");
+			str.append("thread-pool-executor { core-pool-size-min = " + managerThreads + ", core-pool-size-max = " + managerThreads);
+			str.append(", max-pool-size-min = " + managerThreads + ", max-pool-size-max = " + managerThreads + " }, ");
+		} else {
+			str.append(getManagerDispatcher() + " { type = PinnedDispatcher, executor = thread-pool-executor, ");
+		}
+		str.append("throughput = " + managerThroughput + " }\n");
+		str.append(getUserDispatcher() + " { type = Dispatcher, executor = fork-join-executor, ");
+		str.append("fork-join-executor { parallelism-min = 2, parallelism-factor = " + userParallelismFactor);
+		str.append(", parallelism-max = 64 }, throughput = " + userThroughput + " }\n");
+		str.append(getLoggerDispatcher() + " { type = PinnedDispatcher, executor = thread-pool-executor, ");
+		str.append("throughput = " + loggerThroughput + " }\n");
+		return ConfigFactory.parseString(str.toString());
+	}
+
+	/**
+	 * @return	ID of the managers' dispatcher, or null to use the default
+	 */
+	public String getManagerDispatcher() {
+		return isolated ? name + "-manager-dispatcher" : null;
+	}
+
+	/**
+	 * @return	ID of the users' dispatcher, or null to use the default
+	 */
+	public String getUserDispatcher() {
+		return isolated ? name + "-user-dispatcher" : null;
+	}
+
+	/**
+	 * @return	ID of the loggers' dispatcher, or null to use the default
+	 */
+	public String getLoggerDispatcher() {
+		return isolated ? name + "-logger-dispatcher" : null;
+	}
+
+	public boolean isIsolated() {
+		return isolated;
+	}
+
+	/**
+	 * @param isolated	Whether each role gets dispatchers of its own, rather than all
+	 * 					sharing the default dispatcher
+	 */
+	public void setIsolated(boolean isolated) {
+		this.isolated = isolated;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @param name	Prefix of the dispatcher IDs, telling profiles in one actor system apart
+	 */
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public int getManagerThreads() {
+		return managerThreads;
+	}
+
+	/**
+	 * @param managerThreads	Size of a pool of threads shared by the managers, or 0 to
+	 * 							pin each manager to a thread of its own
+	 */
+	public void setManagerThreads(int managerThreads) {
+		this.managerThreads = managerThreads;
+	}
+
+	public int getManagerThroughput() {
+		return managerThroughput;
+	}
+
+	public void setManagerThroughput(int managerThroughput) {
+		this.managerThroughput = managerThroughput;
+	}
+
+	public double getUserParallelismFactor() {
+		return userParallelismFactor;
+	}
+
+	/**
+	 * @param userParallelismFactor	Threads of the users' fork-join pool per processor
+	 */
+	public void setUserParallelismFactor(double userParallelismFactor) {
+		this.userParallelismFactor = userParallelismFactor;
+	}
+
+	public int getUserThroughput() {
+		return userThroughput;
+	}
+
+	public void setUserThroughput(int userThroughput) {
+		this.userThroughput = userThroughput;
+	}
+
+	public int getLoggerThroughput() {
+		return loggerThroughput;
+	}
+
+	public void setLoggerThroughput(int loggerThroughput) {
+		this.loggerThroughput = loggerThroughput;
+	}
+}
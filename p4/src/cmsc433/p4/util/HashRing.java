@@ -0,0 +1,90 @@
+package cmsc433.p4.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import akka.actor.ActorRef;
+
+/**
+ * Consistent-hash ring assigning resource names to resource managers.
+ * 
+ * Each manager is placed on the ring at several points (virtual nodes), and a name
+ * belongs to the first manager at or after the name's own hash, wrapping around.
+ * Points are computed from actor paths only, and ties between equal points broken by
+ * path, so every manager given the same members builds the same ring.
+ * 
+ */
+public class HashRing {
+	
+	// Points per manager; more points spread names more evenly.
+	private static final int VIRTUAL_NODES = 64;
+	
+	private final int[] points;			// Ring positions, ascending
+	private final ActorRef[] owners;	// Manager at each position
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param members	Managers sharing the ring
+	 */
+	public HashRing (Collection<ActorRef> members) {
+		// Members are indexed in path order, not in the caller's order, so that where two
+		// points collide every manager breaks the tie in favour of the same member.
+		ArrayList<ActorRef> list = new ArrayList<ActorRef>(members);
+		Collections.sort(list);
+		
+		// Sort (point, member index) pairs together by packing them into longs.
+		long[] packed = new long[list.size() * VIRTUAL_NODES];
+		for (int m = 0; m < list.size(); m++) {
+			int base = hash(list.get(m).path().toString());
+			for (int i = 0; i < VIRTUAL_NODES; i++) {
+				packed[m * VIRTUAL_NODES + i] = ((long)mix(base + i * 0x9e3779b9) << 32) | m;
+			}
+		}
+		Arrays.sort(packed);
+		
+		points = new int[packed.length];
+		owners = new ActorRef[packed.length];
+		for (int i = 0; i < packed.length; i++) {
+			points[i] = (int)(packed[i] >> 32);
+			owners[i] = list.get((int)packed[i]);
+		}
+	}
+	
+	/**
+	 * @param key	Resource name
+	 * @return		Manager the name belongs to, or null if the ring is empty
+	 */
+	public ActorRef ownerOf (String key) {
+		if (points.length == 0) {
+			return null;
+		}
+		int i = Arrays.binarySearch(points, hash(key));
+		if (i < 0) {
+			i = -i - 1;
+		}
+		return owners[i == points.length ? 0 : i];
+	}
+	
+	// FNV-1a, then mixed so that similar names land far apart.
+	private static int hash (String key) {
+		int h = 0x811c9dc5;
+		for (int i = 0; i < key.length(); i++) {
+			h ^= key.charAt(i);
+			h *= 0x01000193;
+		}
+		return mix(h);
+	}
+	
+	// murmur3 finalizer.
+	private static int mix (int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+}
@@ -0,0 +1,183 @@
+package cmsc433.p4.util;
+
+/**
+ * Map from non-negative int keys to objects, using open addressing with linear
+ * probing.  Unlike a HashMap, lookups and updates neither box keys nor allocate
+ * entries.
+ * 
+ * Slots can be scanned with capacity(), keyAt() and valueAt(); a slot is in use iff
+ * its value is non-null.  The map must not be changed during such a scan.
+ * 
+ * @param <V>	Type of values; null values are not allowed
+ */
+public class IntObjectMap<V> {
+	
+	private int[] keys;
+	private Object[] values;	// null marks an empty slot
+	private int size = 0;
+	
+	/**
+	 * Creates an empty map.
+	 */
+	public IntObjectMap() {
+		this(8);
+	}
+	
+	/**
+	 * Creates an empty map.
+	 * @param expected	Number of entries to make room for
+	 */
+	public IntObjectMap(int expected) {
+		int capacity = 8;
+		while (capacity < expected * 2) {
+			capacity *= 2;
+		}
+		keys = new int[capacity];
+		values = new Object[capacity];
+	}
+	
+	/**
+	 * @return	Number of entries
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @return	True if the map has no entries
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/**
+	 * @param key	Key to look up
+	 * @return		Value for the key, or null if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+		int mask = keys.length - 1;
+		for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return (V)values[i];
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @param key	Key to look up
+	 * @return		True if the map has a value for the key
+	 */
+	public boolean containsKey(int key) {
+		return get(key) != null;
+	}
+	
+	/**
+	 * @param key	Key
+	 * @param value	New value for the key; must not be null
+	 * @return		Previous value for the key, or null if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value) {
+		if (value == null) {
+			throw new NullPointerException("Null value for key " + key);
+		}
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		for (; values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				V old = (V)values[i];
+				values[i] = value;
+				return old;
+			}
+		}
+		keys[i] = key;
+		values[i] = value;
+		size += 1;
+		if (size * 2 > keys.length) {
+			grow();
+		}
+		return null;
+	}
+	
+	/**
+	 * @param key	Key to remove
+	 * @return		Value the key had, or null if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int key) {
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		while (values[i] != null && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		if (values[i] == null) {
+			return null;
+		}
+		V old = (V)values[i];
+		values[i] = null;
+		size -= 1;
+		
+		// Shift later entries of the probe run back so none is cut off from its home slot.
+		int gap = i;
+		for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+			int home = slot(keys[j], mask);
+			if (((j - home) & mask) >= ((j - gap) & mask)) {
+				keys[gap] = keys[j];
+				values[gap] = values[j];
+				values[j] = null;
+				gap = j;
+			}
+		}
+		return old;
+	}
+	
+	/**
+	 * @return	Number of slots, for scanning
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+	
+	/**
+	 * @param slot	Slot number, 0 to capacity() - 1
+	 * @return		Key in the slot; meaningless if the slot is empty
+	 */
+	public int keyAt(int slot) {
+		return keys[slot];
+	}
+	
+	/**
+	 * @param slot	Slot number, 0 to capacity() - 1
+	 * @return		Value in the slot, or null if the slot is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public V valueAt(int slot) {
+		return (V)values[slot];
+	}
+	
+	private void grow() {
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new int[oldKeys.length * 2];
+		values = new Object[oldValues.length * 2];
+		int mask = keys.length - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldValues[j] != null) {
+				int i = slot(oldKeys[j], mask);
+				while (values[i] != null) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[j];
+				values[i] = oldValues[j];
+			}
+		}
+	}
+	
+	// Dense IDs are consecutive, so scramble them before masking.
+	private static int slot(int key, int mask) {
+		int h = key * 0x9e3779b9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+}
@@ -0,0 +1,51 @@
+package cmsc433.p4.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns dense integer IDs 0, 1, 2, ... to strings, the same string always getting
+ * the same ID.  Safe to use from several threads; looking up a string that already
+ * has an ID does not lock.
+ * 
+ */
+public class Interner {
+	
+	private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+	private int nextId = 0;		// Guarded by this
+	
+	/**
+	 * @param s	String to intern
+	 * @return	ID of the string, assigned now if it has none yet
+	 */
+	public int idOf(String s) {
+		Integer id = ids.get(s);
+		if (id != null) {
+			return id;
+		}
+		synchronized (this) {
+			id = ids.get(s);
+			if (id == null) {
+				id = nextId;
+				nextId += 1;
+				ids.put(s, id);
+			}
+			return id;
+		}
+	}
+	
+	/**
+	 * @param s	String to look up
+	 * @return	ID of the string, or -1 if it has none; never assigns one
+	 */
+	public int find(String s) {
+		Integer id = ids.get(s);
+		return id != null ? id : -1;
+	}
+	
+	/**
+	 * @return	Number of IDs assigned so far
+	 */
+	public synchronized int size() {
+		return nextId;
+	}
+}
@@ -0,0 +1,139 @@
+package cmsc433.p4.util;
+
+/**
+ * Histogram of durations in nanoseconds, with log-linear buckets in the style of
+ * HdrHistogram.
+ *
+ * Values below 2 * SUB_BUCKETS get a bucket each; above that, every power of two is
+ * split into SUB_BUCKETS equal buckets, so a value is known to within 1/SUB_BUCKETS of
+ * itself.  Counts live in one fixed array, so recording a value is a few arithmetic
+ * operations and an increment, and never allocates.  Values of 2^MAX_BITS ns (about
+ * 18 minutes) or more are counted in the last bucket; the exact maximum is kept
+ * separately.
+ *
+ * Not thread-safe; each histogram belongs to one actor.
+ *
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BITS = 4;
+	public static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int MAX_BITS = 40;
+	private static final long MAX_TRACKED = (1L << MAX_BITS) - 1;
+	private static final int BUCKETS = 2 * SUB_BUCKETS + (MAX_BITS - 1 - SUB_BITS) * SUB_BUCKETS;
+
+	private final long[] counts = new long[BUCKETS];
+	private long count = 0;
+	private long sum = 0;
+	private long min = Long.MAX_VALUE;
+	private long max = 0;
+
+	/**
+	 * Count one duration.
+	 *
+	 * @param ns	Duration in nanoseconds; negative values count as 0
+	 */
+	public void record(long ns) {
+		if (ns < 0) {
+			ns = 0;
+		}
+		counts[bucketOf(Math.min(ns, MAX_TRACKED))]++;
+		count++;
+		sum += ns;
+		if (ns < min) {
+			min = ns;
+		}
+		if (ns > max) {
+			max = ns;
+		}
+	}
+
+	/**
+	 * Add every value counted by another histogram to this one.
+	 *
+	 * @param other	Histogram to merge in
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] += other.counts[i];
+		}
+		count += other.count;
+		sum += other.sum;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * @return	Independent copy of this histogram
+	 */
+	public LatencyHistogram copy() {
+		LatencyHistogram copy = new LatencyHistogram();
+		copy.add(this);
+		return copy;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return	Least value counted, or 0 if there is none
+	 */
+	public long getMin() {
+		return count == 0 ? 0 : min;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * @return	Mean of the values counted, or 0 if there is none
+	 */
+	public double getMean() {
+		return count == 0 ? 0 : (double)sum / count;
+	}
+
+	/**
+	 * @param percentile	Percentile wanted, from 0 to 100
+	 * @return				Largest value that may be in the bucket holding that percentile,
+	 * 						but no more than the maximum; 0 if no values were counted
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long)Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(highestValueIn(i), max);
+			}
+		}
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return "count=" + count + " min=" + getMin() + " p50=" + getValueAtPercentile(50)
+				+ " p99=" + getValueAtPercentile(99) + " max=" + max + " (ns)";
+	}
+
+	private static int bucketOf(long ns) {
+		if (ns < 2 * SUB_BUCKETS) {
+			return (int)ns;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(ns) - SUB_BITS;
+		return 2 * SUB_BUCKETS + (shift - 1) * SUB_BUCKETS + (int)(ns >>> shift) - SUB_BUCKETS;
+	}
+
+	private static long highestValueIn(int bucket) {
+		if (bucket < 2 * SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = (bucket - 2 * SUB_BUCKETS) / SUB_BUCKETS + 1;
+		long sub = (bucket - 2 * SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+		return ((sub + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,36 @@
+package cmsc433.p4.util;
+
+import cmsc433.p4.enums.AccessType;
+
+/**
+ * A request by the holder of leased access to extend the lease.
+ * 
+ */
+public class LeaseRenewal {
+	
+	private final String resourceName;
+	private final AccessType type;
+	private final long leaseMs;		// New lease duration, counted from when the renewal arrives
+	
+	public LeaseRenewal (String resourceName, AccessType type, long leaseMs) {
+		this.resourceName = resourceName;
+		this.type = type;
+		this.leaseMs = leaseMs;
+	}
+	
+	public String getResourceName () {
+		return resourceName;
+	}
+	
+	public AccessType getType () {
+		return type;
+	}
+	
+	public long getLeaseMs () {
+		return leaseMs;
+	}
+	
+	public String toString () {
+		return "Renew " + type.toString() + " lease on " + resourceName + " for " + leaseMs + " ms";
+	}
+}
@@ -0,0 +1,100 @@
+package cmsc433.p4.util;
+
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.enums.AccessType;
+
+/**
+ * Latency histograms of one resource's lock:
+ * <ul>
+ * <li>queue wait: from a blocking request joining the wait queue to its grant, by
+ * AccessRequestType;</li>
+ * <li>hold time: from a user's first outstanding grant of a kind of access to its
+ * last release or revocation, by AccessType (a release does not say how the access
+ * was requested);</li>
+ * <li>forward to grant: from another manager forwarding a request to its grant, by
+ * AccessRequestType.</li>
+ * </ul>
+ * Each histogram is created the first time it gets a value, so unused combinations
+ * cost nothing; after that recording never allocates.
+ *
+ */
+public class LockMetrics {
+
+	private static final int REQUEST_TYPES = AccessRequestType.values().length;
+	private static final int ACCESS_TYPES = AccessType.values().length;
+
+	private final LatencyHistogram[] queueWait = new LatencyHistogram[REQUEST_TYPES];
+	private final LatencyHistogram[] hold = new LatencyHistogram[ACCESS_TYPES];
+	private final LatencyHistogram[] forwardToGrant = new LatencyHistogram[REQUEST_TYPES];
+
+	public void recordQueueWait(AccessRequestType type, long ns) {
+		record(queueWait, type.ordinal(), ns);
+	}
+
+	public void recordHold(AccessType type, long ns) {
+		record(hold, type.ordinal(), ns);
+	}
+
+	public void recordForwardToGrant(AccessRequestType type, long ns) {
+		record(forwardToGrant, type.ordinal(), ns);
+	}
+
+	/**
+	 * @return	Queue waits of requests of the given type, or null if there were none
+	 */
+	public LatencyHistogram getQueueWait(AccessRequestType type) {
+		return queueWait[type.ordinal()];
+	}
+
+	/**
+	 * @return	Hold times of the given kind of access, or null if there were none
+	 */
+	public LatencyHistogram getHold(AccessType type) {
+		return hold[type.ordinal()];
+	}
+
+	/**
+	 * @return	Forward-to-grant times of requests of the given type, or null if there were none
+	 */
+	public LatencyHistogram getForwardToGrant(AccessRequestType type) {
+		return forwardToGrant[type.ordinal()];
+	}
+
+	/**
+	 * Add every value counted by other metrics to these.
+	 *
+	 * @param other	Metrics to merge in
+	 */
+	public void add(LockMetrics other) {
+		add(queueWait, other.queueWait);
+		add(hold, other.hold);
+		add(forwardToGrant, other.forwardToGrant);
+	}
+
+	/**
+	 * @return	Independent copy of these metrics
+	 */
+	public LockMetrics copy() {
+		LockMetrics copy = new LockMetrics();
+		copy.add(this);
+		return copy;
+	}
+
+	private static void record(LatencyHistogram[] histograms, int i, long ns) {
+		if (histograms[i] == null) {
+			histograms[i] = new LatencyHistogram();
+		}
+		histograms[i].record(ns);
+	}
+
+	private static void add(LatencyHistogram[] into, LatencyHistogram[] from) {
+		for (int i = 0; i < into.length; i++) {
+			if (from[i] != null) {
+				if (into[i] == null) {
+					into[i] = new LatencyHistogram();
+				}
+				into[i].add(from[i]);
+			}
+		}
+	}
+}
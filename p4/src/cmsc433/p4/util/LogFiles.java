@@ -0,0 +1,168 @@
+package cmsc433.p4.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import cmsc433.p4.enums.LogFormat;
+
+/**
+ * Handle to a log written to disk by a LogWriter or BinaryLogWriter.  Lines are read
+ * back lazily, one file open at a time; a binary log is rendered one line per record,
+ * and can be read without making objects through a BinaryLogReader.
+ *
+ * As with a log kept in memory, events may still be arriving when the simulation
+ * reports it is finished, so the log should only be read once the actor system has
+ * shut down.
+ *
+ */
+public class LogFiles implements Iterable<String> {
+
+	public static final String TEXT_SUFFIX = ".log";
+	public static final String BINARY_SUFFIX = ".bin";
+	
+	private final File directory;	// Directory holding the files
+	private final String prefix;	// Start of every file name of this log
+	private final LogFormat format;
+
+	public LogFiles (File directory, String prefix, LogFormat format) {
+		this.directory = directory;
+		this.prefix = prefix;
+		this.format = format;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	public LogFormat getFormat() {
+		return format;
+	}
+
+	/**
+	 * @return	Dictionary of the names behind the IDs in a binary log
+	 */
+	public File getNamesFile() {
+		return BinaryLogWriter.namesFile(directory, prefix);
+	}
+
+	private String suffix() {
+		return format == LogFormat.BINARY ? BINARY_SUFFIX : TEXT_SUFFIX;
+	}
+
+	/**
+	 * @return	Files of this log, in the order written
+	 */
+	public ArrayList<File> getFiles() {
+		ArrayList<File> files = new ArrayList<File>();
+		File[] all = directory.listFiles();
+		if (all != null) {
+			Arrays.sort(all);
+			for (File file : all) {
+				if (file.getName().startsWith(prefix + "-") && file.getName().endsWith(suffix())) {
+					files.add(file);
+				}
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Iterates over every logged line, in the order logged.  An I/O error while
+	 * reading is rethrown as an IllegalStateException.
+	 */
+	public Iterator<String> iterator() {
+		if (format == LogFormat.BINARY) {
+			return binaryIterator();
+		}
+		final ArrayList<File> files = getFiles();
+		return new Iterator<String>() {
+			private int nextFile = 0;
+			private BufferedReader reader = null;
+			private String line = null;
+
+			public boolean hasNext() {
+				try {
+					while (line == null) {
+						if (reader != null) {
+							line = reader.readLine();
+							if (line != null) {
+								break;
+							}
+							reader.close();
+							reader = null;
+						}
+						if (nextFile == files.size()) {
+							return false;
+						}
+						reader = new BufferedReader(new InputStreamReader(new FileInputStream(files.get(nextFile++)), "UTF-8"));
+					}
+					return true;
+				} catch (IOException e) {
+					throw new IllegalStateException("Cannot read log", e);
+				}
+			}
+
+			public String next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				String result = line;
+				line = null;
+				return result;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	// Lines of a binary log, as BinaryLogReader.format() renders its records.
+	private Iterator<String> binaryIterator() {
+		final BinaryLogReader reader;
+		try {
+			reader = new BinaryLogReader(this);
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot read log", e);
+		}
+		return new Iterator<String>() {
+			private String line = null;
+
+			public boolean hasNext() {
+				try {
+					if (line == null && reader.next()) {
+						line = reader.format();
+					}
+					return line != null;
+				} catch (IOException e) {
+					throw new IllegalStateException("Cannot read log", e);
+				}
+			}
+
+			public String next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				String result = line;
+				line = null;
+				return result;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return new File(directory, prefix + "-*" + suffix()).toString();
+	}
+}
@@ -0,0 +1,38 @@
+package cmsc433.p4.util;
+
+import java.io.IOException;
+
+import cmsc433.p4.messages.LogMsg;
+
+/**
+ * Destination a logger streams events to instead of keeping them in memory.  Used
+ * from one thread only.
+ *
+ */
+public interface LogSink {
+
+	/**
+	 * @param event			Event to log
+	 * @throws IOException	If the event cannot be logged
+	 */
+	void append(LogMsg event) throws IOException;
+
+	/**
+	 * @return	Handle to the files logged to; it sees every event appended before close()
+	 */
+	LogFiles getLogFiles();
+
+	/**
+	 * Writes out every event appended so far, so that the files hold them when read.
+	 *
+	 * @throws IOException	If any event could not be written
+	 */
+	void flush() throws IOException;
+
+	/**
+	 * Finishes writing every logged event and releases the files.
+	 *
+	 * @throws IOException	If any event could not be written
+	 */
+	void close() throws IOException;
+}
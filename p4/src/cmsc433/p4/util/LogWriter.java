@@ -0,0 +1,202 @@
+package cmsc433.p4.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import cmsc433.p4.enums.LogFormat;
+import cmsc433.p4.messages.LogMsg;
+
+/**
+ * Streams log events to a sequence of rolling text files, one event per line.
+ *
+ * Events are handed over through a fixed-size ring buffer and formatted and written
+ * by a dedicated thread, so the producer never does I/O.  When the ring is full the
+ * producer waits for the writer to catch up; memory use is therefore bounded by the
+ * ring, however long the run.
+ *
+ * One thread appends, the writer thread drains.  Files are named
+ * <code>prefix-00000.log</code>, <code>prefix-00001.log</code>, ... and each holds at
+ * most a fixed number of events.
+ *
+ */
+public class LogWriter implements LogSink {
+
+	private final Object[] ring;		// Events not yet written; null marks a free slot
+	private long head = 0;				// Next event the writer takes
+	private long tail = 0;				// Next slot the producer fills
+	private long written = 0;			// Events written out to the files
+	private boolean closed = false;
+	private IOException failure = null;	// Set by the writer thread if writing fails
+
+	private final File directory;
+	private final String prefix;
+	private final long eventsPerFile;
+	private int fileCount = 0;			// Files started so far
+
+	private final Thread thread;
+
+	/**
+	 * Constructor; starts the writer thread.
+	 *
+	 * @param directory		Directory to write log files to; created if missing
+	 * @param prefix		Start of every log file name
+	 * @param capacity		Most events buffered between producer and writer
+	 * @param eventsPerFile	Most events in one file before rolling to the next
+	 * @throws IOException	If the directory cannot be created
+	 */
+	public LogWriter (File directory, String prefix, int capacity, long eventsPerFile) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create log directory " + directory);
+		}
+		this.ring = new Object[capacity];
+		this.directory = directory;
+		this.prefix = prefix;
+		this.eventsPerFile = eventsPerFile;
+		this.thread = new Thread(new Runnable() {
+			public void run() {
+				drain();
+			}
+		}, "log-writer-" + prefix);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Queues an event for writing, waiting while the ring is full.
+	 *
+	 * @param event			Event to write; its toString() is the line written
+	 * @throws IOException	If the writer has failed or been closed
+	 */
+	public synchronized void append (LogMsg event) throws IOException {
+		while (tail - head == ring.length && failure == null) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for log writer");
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+		if (closed) {
+			throw new IOException("Log writer is closed");
+		}
+		ring[(int)(tail % ring.length)] = event;
+		tail++;
+		notifyAll();
+	}
+
+	public LogFiles getLogFiles () {
+		return new LogFiles(directory, prefix, LogFormat.TEXT);
+	}
+
+	/**
+	 * Waits until every event appended so far is written out.
+	 */
+	public synchronized void flush () throws IOException {
+		while (written < tail && failure == null) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for log writer");
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Writes out every queued event and stops the writer thread.
+	 */
+	public void close () throws IOException {
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while closing log writer");
+		}
+		synchronized (this) {
+			if (failure != null) {
+				throw failure;
+			}
+		}
+	}
+
+	// Writer thread: take whatever is buffered, write it outside the lock, repeat until
+	// closed and empty.
+	private void drain() {
+		Writer out = null;
+		long inFile = 0;
+		Object[] batch = new Object[ring.length];
+		try {
+			while (true) {
+				int n;
+				synchronized (this) {
+					while (head == tail && !closed) {
+						wait();
+					}
+					if (head == tail) {
+						break;
+					}
+					n = (int)(tail - head);
+					for (int i = 0; i < n; i++) {
+						int slot = (int)((head + i) % ring.length);
+						batch[i] = ring[slot];
+						ring[slot] = null;
+					}
+					head += n;
+					notifyAll();
+				}
+
+				for (int i = 0; i < n; i++) {
+					if (out == null || inFile == eventsPerFile) {
+						if (out != null) {
+							out.close();
+						}
+						out = openNext();
+						inFile = 0;
+					}
+					out.write(batch[i].toString());
+					out.write('\n');
+					batch[i] = null;
+					inFile++;
+				}
+				out.flush();
+				synchronized (this) {
+					written += n;
+					notifyAll();
+				}
+			}
+			if (out != null) {
+				out.close();
+			}
+		} catch (IOException e) {
+			fail(e);
+		} catch (InterruptedException e) {
+			fail(new IOException("Log writer interrupted"));
+		}
+	}
+
+	// Start the next file in the sequence.
+	private Writer openNext() throws IOException {
+		File file = new File(directory, String.format("%s-%05d%s", prefix, fileCount++, LogFiles.TEXT_SUFFIX));
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 1 << 16);
+	}
+
+	// Record a write failure and wake a producer waiting for space or a flush.
+	private synchronized void fail(IOException e) {
+		failure = e;
+		notifyAll();
+	}
+}
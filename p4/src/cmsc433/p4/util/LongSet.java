@@ -0,0 +1,112 @@
+package cmsc433.p4.util;
+
+/**
+ * Set of non-zero longs, using open addressing with linear probing.  Unlike a
+ * HashSet, lookups and updates neither box elements nor allocate entries.
+ *
+ */
+public class LongSet {
+
+	private long[] keys;	// 0 marks an empty slot
+	private int size = 0;
+
+	/**
+	 * Creates an empty set.
+	 */
+	public LongSet() {
+		keys = new long[8];
+	}
+
+	/**
+	 * @return	Number of elements
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param key	Element to look up
+	 * @return		True if the set holds it
+	 */
+	public boolean contains(long key) {
+		int mask = keys.length - 1;
+		for (int i = slot(key, mask); keys[i] != 0; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param key	Element to add; must not be 0
+	 * @return		True if it was not already in the set
+	 */
+	public boolean add(long key) {
+		if (key == 0) {
+			throw new IllegalArgumentException("0 cannot be an element");
+		}
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		for (; keys[i] != 0; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return false;
+			}
+		}
+		keys[i] = key;
+		size += 1;
+		if (size * 2 > keys.length) {
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * @param key	Element to remove
+	 * @return		True if it was in the set
+	 */
+	public boolean remove(long key) {
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		while (keys[i] != 0 && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		if (keys[i] == 0) {
+			return false;
+		}
+		keys[i] = 0;
+		size -= 1;
+
+		// Shift later elements of the probe run back so none is cut off from its home slot.
+		int gap = i;
+		for (int j = (i + 1) & mask; keys[j] != 0; j = (j + 1) & mask) {
+			int home = slot(keys[j], mask);
+			if (((j - home) & mask) >= ((j - gap) & mask)) {
+				keys[gap] = keys[j];
+				keys[j] = 0;
+				gap = j;
+			}
+		}
+		return true;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		keys = new long[oldKeys.length * 2];
+		int mask = keys.length - 1;
+		for (long key : oldKeys) {
+			if (key != 0) {
+				int i = slot(key, mask);
+				while (keys[i] != 0) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = key;
+			}
+		}
+	}
+
+	private static int slot(long key, int mask) {
+		long h = key * 0x9e3779b97f4a7c15L;
+		return (int)(h ^ (h >>> 32)) & mask;
+	}
+}
@@ -56,8 +56,13 @@ public class Main {
 		
 		// It is critical not to examine the log until after the actor system has shutdown. Otherwise, the log
 		// may still be being modified as ResourceManagers send messages to the LoggerActor.
-		for (Object o : msg.getLog())
-			System.out.println(o);
+		if (msg.getLogFiles() != null) {
+			for (String line : msg.getLogFiles())
+				System.out.println(line);
+		} else {
+			for (Object o : msg.getLog())
+				System.out.println(o);
+		}
 	}
 
 	private static ArrayList<NodeSpecification> setupTest1 () throws FileNotFoundException {
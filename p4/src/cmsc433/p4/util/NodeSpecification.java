@@ -2,13 +2,16 @@ package cmsc433.p4.util;
 
 import java.util.ArrayList;
 
+import cmsc433.p4.enums.FairnessPolicy;
+
 /**
  * Class of specifications of nodes in resource-management system.
  * 
  * A node consists of a list of resource local to the node, and scripts to be run
  * by users local to the node.  The idea is that each node will have a single
  * resource manager that manages the resources and processes requests from users,
- * each of which will be running one script.
+ * each of which will be running one script.  The node's fairness policy applies to
+ * every local resource that does not set its own.
  * 
  * @author Rance Cleaveland
  *
@@ -16,10 +19,16 @@ import java.util.ArrayList;
 public class NodeSpecification {
 	private final ArrayList<Resource> resources;
 	private final ArrayList<UserScript> userScripts;
+	private final FairnessPolicy fairnessPolicy;
 	
 	public NodeSpecification (ArrayList<Resource> resources, ArrayList<UserScript> userScripts) {
+		this(resources, userScripts, FairnessPolicy.READER_PREFERRING);
+	}
+	
+	public NodeSpecification (ArrayList<Resource> resources, ArrayList<UserScript> userScripts, FairnessPolicy fairnessPolicy) {
 		this.resources = resources;
 		this.userScripts = userScripts;
+		this.fairnessPolicy = fairnessPolicy;
 	}
 
 	public ArrayList<Resource> getResources() {
@@ -29,4 +38,8 @@ public class NodeSpecification {
 	public ArrayList<UserScript> getUserScripts() {
 		return userScripts;
 	}
+
+	public FairnessPolicy getFairnessPolicy() {
+		return fairnessPolicy;
+	}
 }
@@ -0,0 +1,88 @@
+package cmsc433.p4.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of resource names recently found not to exist anywhere, so that
+ * repeated requests for them can be denied without asking other managers again.
+ * 
+ * Entries expire after a fixed time; when the cache is full the oldest entry is
+ * dropped.
+ * 
+ */
+public class NotFoundCache {
+	
+	private final long ttlMs;		// How long an entry is trusted
+	private final int capacity;		// Most names held at once
+	
+	// Expiry time of each name, oldest entry first.
+	private final LinkedHashMap<String, Long> expiries;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param ttlMs		How long a name stays cached, in milliseconds; 0 disables the cache
+	 * @param capacity	Most names cached at once
+	 */
+	public NotFoundCache (long ttlMs, final int capacity) {
+		this.ttlMs = ttlMs;
+		this.capacity = capacity;
+		this.expiries = new LinkedHashMap<String, Long>(16, 0.75f, false) {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+	
+	/**
+	 * Remember that a name was not found.
+	 * 
+	 * @param name	Resource name
+	 * @param now	Current time in milliseconds
+	 */
+	public void add (String name, long now) {
+		if (ttlMs <= 0 || capacity <= 0) {
+			return;
+		}
+		// Re-inserting moves the name to the young end, so it is evicted last.
+		expiries.remove(name);
+		expiries.put(name, now + ttlMs);
+	}
+	
+	/**
+	 * @param name	Resource name
+	 * @param now	Current time in milliseconds
+	 * @return		True if the name is known not to exist
+	 */
+	public boolean contains (String name, long now) {
+		Long expiry = expiries.get(name);
+		if (expiry == null) {
+			return false;
+		}
+		if (expiry <= now) {
+			expiries.remove(name);
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Forget a name, e.g. because a resource with that name was created.
+	 * 
+	 * @param name	Resource name
+	 */
+	public void remove (String name) {
+		expiries.remove(name);
+	}
+	
+	/**
+	 * Forget every name.
+	 */
+	public void clear () {
+		expiries.clear();
+	}
+}
@@ -1,5 +1,6 @@
 package cmsc433.p4.util;
 
+import cmsc433.p4.enums.FairnessPolicy;
 import cmsc433.p4.enums.ResourceStatus;
 
 /**
@@ -9,8 +10,10 @@ import cmsc433.p4.enums.ResourceStatus;
  *
  */
 public class Resource {
+	
 	public final String name;	// Resource name
 	private volatile ResourceStatus status = ResourceStatus.DISABLED;
+	private FairnessPolicy fairnessPolicy = null;	// Overrides manager's policy if non-null
 	
 	/**
 	 * Creates new resource with given name, and default status of DISABLED.
@@ -35,6 +38,25 @@ public class Resource {
 		return status;
 	}
 	
+	/**
+	 * @return	Fairness policy for blocked requests on this resource, or null if the
+	 * 			managing node's policy applies
+	 */
+	public FairnessPolicy getFairnessPolicy() {
+		return fairnessPolicy;
+	}
+	
+	/**
+	 * Set the fairness policy for blocked requests on this resource, overriding the
+	 * policy of the node that manages it.  Must be called before the resource is
+	 * handed to a manager.
+	 * 
+	 * @param fairnessPolicy	Policy to use, or null for the node's policy
+	 */
+	public void setFairnessPolicy(FairnessPolicy fairnessPolicy) {
+		this.fairnessPolicy = fairnessPolicy;
+	}
+	
 	/**
 	 * Change resource status to ENABLED.
 	 */
@@ -0,0 +1,705 @@
+package cmsc433.p4.util;
+
+import java.util.ArrayList;
+
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.enums.AccessType;
+import cmsc433.p4.enums.FairnessPolicy;
+import cmsc433.p4.messages.AccessRequestMsg;
+
+/**
+ * Lock state of a single resource.
+ * 
+ * The lock records how many distinct users hold concurrent-read access, how many
+ * times each holder has been granted each kind of access, and which user (if any)
+ * holds exclusive-write access.  Grant, deny and release decisions therefore take
+ * constant time no matter how many users hold the resource.  Users are identified by
+ * their dense IDs, and per-holder records are recycled, so a grant and its release
+ * allocate nothing once the lock has warmed up.
+ * 
+ * A user may hold several grants on the same resource (e.g. read and then write,
+ * if it is the only reader); each grant must be released separately.
+ * 
+ * The lock also owns the queue of blocking requests waiting on the resource, so a
+ * release only has to look at waiters of the resource being released.  Which waiter
+ * goes next, and whether a new request may overtake the queue, is decided by the
+ * lock's fairness policy.  Under the reader-preferring policy the readers that overtake
+ * a blocked writer are taken in one pass over the queue, which is closed up once at the
+ * end, so letting n readers go takes time linear in n.
+ * 
+ * Requests that carry a request ID are remembered, keyed by user and ID, while they
+ * are queued and while the grant they got is held, so that a manager can tell a
+ * retried request from a new one in constant time.  A release gives up the grant
+ * made for the request it names, or else the user's oldest grant of its kind.
+ * 
+ * Each grant may carry a lease token of its own.  When a lease runs out only the grants
+ * bearing its token are taken away; grants without a lease, or with a later one, stay.
+ * 
+ * A timed lock also notes when each request joined the queue and when each user's
+ * hold began, and records hold times in its LockMetrics as holds end.
+ *
+ */
+public class ResourceLock {
+	
+	// Grants held by a single user on this resource.
+	private static class Holds {
+		private int reads = 0;		// Outstanding concurrent-read grants
+		private int writes = 0;		// Outstanding exclusive-write grants
+		private long readSince = 0;		// When the outstanding read grants began, if timed
+		private long writeSince = 0;	// When the outstanding write grants began, if timed
+		private int[] readIds = new int[2];		// Request ID of each read grant, oldest first; 0 if none
+		private int[] writeIds = new int[2];	// Request ID of each write grant, oldest first; 0 if none
+		private long[] readLeases = new long[2];	// Lease token of each read grant, as readIds; 0 if none
+		private long[] writeLeases = new long[2];	// Lease token of each write grant, as writeIds; 0 if none
+	}
+	
+	// Most released holder records kept for reuse.
+	private static final int SPARE_LIMIT = 4;
+	
+	private final FairnessPolicy policy;
+	private final IntObjectMap<Holds> holders = new IntObjectMap<Holds>(4);
+	private int readers = 0;		// Number of distinct users holding concurrent-read access
+	private int writer = -1;		// User holding exclusive-write access, or -1 if none
+	private final ArrayList<Holds> spares = new ArrayList<Holds>();	// Released holder records
+	private final LockMetrics metrics;	// Latency histograms, or null if the lock is not timed
+	
+	// Blocked requests, kept as a circular array in arrival order.
+	private AccessRequestMsg[] waiters = new AccessRequestMsg[4];
+	private long[] waitingSince = new long[4];	// When each waiter was queued, if timed
+	private int head = 0;
+	private int waiterCount = 0;
+	private int waitingWriters = 0;	// Number of queued exclusive-write requests
+	
+	// Pass of readers overtaking a blocked writer, or scan = -1 if none is under way.
+	// Waiters at positions [kept, scan) have been taken and [scan, ...) not yet looked at.
+	private int scan = -1;
+	private int kept = 0;
+	private final LongSet waitingIds = new LongSet();	// Keys of queued requests with IDs
+	private final LongSet grantedIds = new LongSet();	// Keys of requests with IDs whose grants are held
+	
+	/**
+	 * Creates a free lock using the original reader-preferring policy.
+	 */
+	public ResourceLock() {
+		this(FairnessPolicy.READER_PREFERRING);
+	}
+	
+	/**
+	 * Creates a free lock.
+	 * @param policy	Policy for ordering blocked readers and writers
+	 */
+	public ResourceLock(FairnessPolicy policy) {
+		this(policy, false);
+	}
+	
+	/**
+	 * Creates a free lock.
+	 * @param policy	Policy for ordering blocked readers and writers
+	 * @param timed		Whether to time queue waits and holds
+	 */
+	public ResourceLock(FairnessPolicy policy, boolean timed) {
+		this.policy = policy;
+		this.metrics = timed ? new LockMetrics() : null;
+	}
+	
+	/**
+	 * @return	Latency histograms of this lock, or null if it is not timed
+	 */
+	public LockMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * @param type	Type of an access request
+	 * @return		Kind of access the request asks for
+	 */
+	public static AccessType accessTypeOf(AccessRequestType type) {
+		if (type == AccessRequestType.CONCURRENT_READ_BLOCKING || type == AccessRequestType.CONCURRENT_READ_NONBLOCKING) {
+			return AccessType.CONCURRENT_READ;
+		}
+		return AccessType.EXCLUSIVE_WRITE;
+	}
+	
+	/**
+	 * @return	Policy for ordering blocked readers and writers
+	 */
+	public FairnessPolicy getPolicy() {
+		return policy;
+	}
+	
+	/**
+	 * @return	True if no user holds any access to the resource
+	 */
+	public boolean isFree() {
+		return holders.isEmpty();
+	}
+	
+	/**
+	 * @param user	User to check
+	 * @return		True if user holds some access to the resource
+	 */
+	public boolean isHeldBy(int user) {
+		return holders.containsKey(user);
+	}
+	
+	/**
+	 * @return	Users holding some access to the resource
+	 */
+	public ArrayList<Integer> getHolders() {
+		ArrayList<Integer> list = new ArrayList<Integer>(holders.size());
+		for (int i = 0; i < holders.capacity(); i++) {
+			if (holders.valueAt(i) != null) {
+				list.add(holders.keyAt(i));
+			}
+		}
+		return list;
+	}
+	
+	/**
+	 * @return	Number of distinct users holding concurrent-read access
+	 */
+	public int getReaderCount() {
+		return readers;
+	}
+	
+	/**
+	 * @return	User holding exclusive-write access, or -1 if there is none
+	 */
+	public int getWriter() {
+		return writer;
+	}
+	
+	/**
+	 * Determine if the given access can be granted to the user right now.  Reads conflict
+	 * only with another user's write; writes conflict with any other user's access.
+	 * 
+	 * @param user	User requesting access
+	 * @param type	Kind of access requested
+	 * @return		True if access can be granted
+	 */
+	public boolean canGrant(int user, AccessType type) {
+		if (writer >= 0 && writer != user) {
+			return false;
+		}
+		if (type == AccessType.EXCLUSIVE_WRITE) {
+			Holds mine = holders.get(user);
+			int otherReaders = readers - ((mine != null && mine.reads > 0) ? 1 : 0);
+			return otherReaders == 0;
+		}
+		return true;
+	}
+	
+	/**
+	 * Determine if a newly arrived request can be granted right away, or whether the
+	 * policy makes it wait behind the queue.  A user that already holds the resource is
+	 * never made to queue behind requests that may themselves be waiting for that user.
+	 * 
+	 * @param user	User requesting access
+	 * @param type	Kind of access requested
+	 * @return		True if access can be granted now
+	 */
+	public boolean canGrantNew(int user, AccessType type) {
+		if (!canGrant(user, type)) {
+			return false;
+		}
+		if (waiterCount == 0 || isHeldBy(user)) {
+			return true;
+		}
+		if (policy == FairnessPolicy.WRITER_PREFERRING) {
+			return type == AccessType.EXCLUSIVE_WRITE || waitingWriters == 0;
+		} else if (policy == FairnessPolicy.FIFO) {
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Record a grant of access to the user.  Caller is responsible for checking
+	 * canGrant() first.
+	 * 
+	 * @param user	User being granted access
+	 * @param type	Kind of access granted
+	 */
+	public void grant(int user, AccessType type) {
+		grant(user, type, 0);
+	}
+	
+	/**
+	 * Record a grant of access to the user for one of its requests.  Caller is
+	 * responsible for checking canGrant() first.
+	 * 
+	 * @param user		User being granted access
+	 * @param type		Kind of access granted
+	 * @param requestId	Correlation ID of the request granted, or 0 if it has none
+	 */
+	public void grant(int user, AccessType type, int requestId) {
+		grant(user, type, requestId, 0);
+	}
+	
+	/**
+	 * Record a grant of access to the user for one of its requests, under a lease.
+	 * Caller is responsible for checking canGrant() first.
+	 * 
+	 * @param user		User being granted access
+	 * @param type		Kind of access granted
+	 * @param requestId	Correlation ID of the request granted, or 0 if it has none
+	 * @param lease		Token identifying the grant's lease, or 0 if it has none
+	 */
+	public void grant(int user, AccessType type, int requestId, long lease) {
+		Holds mine = holders.get(user);
+		if (mine == null) {
+			mine = spares.isEmpty() ? new Holds() : spares.remove(spares.size() - 1);
+			holders.put(user, mine);
+		}
+		if (type == AccessType.EXCLUSIVE_WRITE) {
+			if (mine.writes == 0 && metrics != null) {
+				mine.writeSince = SimulationClock.current().nanoTime();
+			}
+			mine.writeIds = append(mine.writeIds, mine.writes, requestId);
+			mine.writeLeases = append(mine.writeLeases, mine.writes, lease);
+			mine.writes += 1;
+			writer = user;
+		} else {
+			if (mine.reads == 0) {
+				readers += 1;
+				if (metrics != null) {
+					mine.readSince = SimulationClock.current().nanoTime();
+				}
+			}
+			mine.readIds = append(mine.readIds, mine.reads, requestId);
+			mine.readLeases = append(mine.readLeases, mine.reads, lease);
+			mine.reads += 1;
+		}
+		if (requestId != 0) {
+			grantedIds.add(key(user, requestId));
+		}
+	}
+	
+	/**
+	 * Release one grant of the given kind held by the user.
+	 * 
+	 * @param user	User releasing access
+	 * @param type	Kind of access being released
+	 * @return		True if the user held such access, false if the release is invalid
+	 */
+	public boolean release(int user, AccessType type) {
+		return release(user, type, 0);
+	}
+	
+	/**
+	 * Release the grant of the given kind made to the user for one of its requests.
+	 * 
+	 * @param user		User releasing access
+	 * @param type		Kind of access being released
+	 * @param requestId	Correlation ID of the request granted, or 0 for the oldest grant
+	 * @return			True if the user held such a grant, false if the release is invalid
+	 */
+	public boolean release(int user, AccessType type, int requestId) {
+		Holds mine = holders.get(user);
+		if (mine == null) {
+			return false;
+		}
+		if (type == AccessType.EXCLUSIVE_WRITE) {
+			int i = indexOf(mine.writeIds, mine.writes, requestId);
+			if (i < 0) {
+				return false;
+			}
+			forget(user, removeAt(mine.writeIds, mine.writes, i));
+			removeAt(mine.writeLeases, mine.writes, i);
+			mine.writes -= 1;
+		} else {
+			int i = indexOf(mine.readIds, mine.reads, requestId);
+			if (i < 0) {
+				return false;
+			}
+			forget(user, removeAt(mine.readIds, mine.reads, i));
+			removeAt(mine.readLeases, mine.reads, i);
+			mine.reads -= 1;
+		}
+		givenUp(user, mine, type);
+		return true;
+	}
+	
+	/**
+	 * Take away the user's grants of the given kind that are under a lease that ran out.
+	 * Grants released since, or whose lease was renewed, are no longer under it.
+	 * 
+	 * @param user	User losing access
+	 * @param type	Kind of access being revoked
+	 * @param lease	Token of the lease that ran out
+	 * @return		Number of grants revoked
+	 */
+	public int expire(int user, AccessType type, long lease) {
+		Holds mine = holders.get(user);
+		if (mine == null || lease == 0) {
+			return 0;
+		}
+		boolean write = (type == AccessType.EXCLUSIVE_WRITE);
+		int[] ids = write ? mine.writeIds : mine.readIds;
+		long[] leases = write ? mine.writeLeases : mine.readLeases;
+		int count = write ? mine.writes : mine.reads;
+		int kept = 0;
+		for (int i = 0; i < count; i++) {
+			if (leases[i] == lease) {
+				forget(user, ids[i]);
+			} else {
+				ids[kept] = ids[i];
+				leases[kept] = leases[i];
+				kept++;
+			}
+		}
+		if (kept == count) {
+			return 0;
+		}
+		if (write) {
+			mine.writes = kept;
+		} else {
+			mine.reads = kept;
+		}
+		givenUp(user, mine, type);
+		return count - kept;
+	}
+	
+	/**
+	 * Put every leased grant of the given kind held by the user under a new lease.
+	 * Grants without a lease stay without one.
+	 * 
+	 * @param user	Holder of the access
+	 * @param type	Kind of access
+	 * @param lease	Token identifying the new lease; must be non-zero
+	 * @return		Number of grants renewed
+	 */
+	public int renewLeases(int user, AccessType type, long lease) {
+		Holds mine = holders.get(user);
+		if (mine == null) {
+			return 0;
+		}
+		boolean write = (type == AccessType.EXCLUSIVE_WRITE);
+		long[] leases = write ? mine.writeLeases : mine.readLeases;
+		int count = write ? mine.writes : mine.reads;
+		int renewed = 0;
+		for (int i = 0; i < count; i++) {
+			if (leases[i] != 0) {
+				leases[i] = lease;
+				renewed++;
+			}
+		}
+		return renewed;
+	}
+	
+	/**
+	 * @return	True if some blocked request is waiting on the resource
+	 */
+	public boolean hasWaiters() {
+		return waiterCount > 0;
+	}
+	
+	/**
+	 * @return	Number of blocked requests waiting on the resource
+	 */
+	public int getWaiterCount() {
+		return waiterCount;
+	}
+	
+	/**
+	 * Add a blocked request to the back of the wait queue.
+	 * 
+	 * @param msg	Request to enqueue
+	 */
+	public void enqueue(AccessRequestMsg msg) {
+		closeGap();
+		if (waiterCount == waiters.length) {
+			AccessRequestMsg[] bigger = new AccessRequestMsg[waiters.length * 2];
+			long[] biggerSince = new long[waiters.length * 2];
+			for (int i = 0; i < waiterCount; i++) {
+				bigger[i] = waiters[(head + i) % waiters.length];
+				biggerSince[i] = waitingSince[(head + i) % waiters.length];
+			}
+			waiters = bigger;
+			waitingSince = biggerSince;
+			head = 0;
+		}
+		waiters[(head + waiterCount) % waiters.length] = msg;
+		if (metrics != null) {
+			waitingSince[(head + waiterCount) % waiters.length] = SimulationClock.current().nanoTime();
+		}
+		waiterCount += 1;
+		if (isWrite(msg)) {
+			waitingWriters += 1;
+		}
+		if (msg.getRequestId() != 0) {
+			waitingIds.add(key(msg.getUserId(), msg.getRequestId()));
+		}
+	}
+	
+	/**
+	 * @param user		ID of user
+	 * @param requestId	Correlation ID of one of the user's requests, not 0
+	 * @return			Whether that request is already in the wait queue
+	 */
+	public boolean isWaiting(int user, int requestId) {
+		return waitingIds.contains(key(user, requestId));
+	}
+	
+	/**
+	 * @param user		ID of user
+	 * @param requestId	Correlation ID of one of the user's requests, not 0
+	 * @return			Whether that request was granted and the grant is still held
+	 */
+	public boolean isGranted(int user, int requestId) {
+		return grantedIds.contains(key(user, requestId));
+	}
+	
+	/**
+	 * @param i	Position in the wait queue, 0 being the oldest waiter
+	 * @return	Waiting request at that position
+	 */
+	public AccessRequestMsg getWaiter(int i) {
+		closeGap();
+		if (i < 0 || i >= waiterCount) {
+			throw new IndexOutOfBoundsException("No waiter at position " + i);
+		}
+		return waiters[(head + i) % waiters.length];
+	}
+	
+	/**
+	 * @param i	Position in the wait queue, 0 being the oldest waiter
+	 * @return	When the waiter at that position was queued, from SimulationClock.nanoTime(), or 0
+	 * 			if the lock is not timed
+	 */
+	public long getWaitingSince(int i) {
+		getWaiter(i);
+		return waitingSince[(head + i) % waiters.length];
+	}
+	
+	/**
+	 * Remove a request from the wait queue.  Removing the oldest waiter takes constant
+	 * time; removing from elsewhere shifts the waiters behind it.
+	 * 
+	 * @param i	Position in the wait queue, 0 being the oldest waiter
+	 * @return	Request that was removed
+	 */
+	public AccessRequestMsg removeWaiter(int i) {
+		AccessRequestMsg msg = getWaiter(i);
+		if (i == 0) {
+			waiters[head] = null;
+			head = (head + 1) % waiters.length;
+		} else {
+			for (int j = i; j < waiterCount - 1; j++) {
+				waiters[(head + j) % waiters.length] = waiters[(head + j + 1) % waiters.length];
+				waitingSince[(head + j) % waiters.length] = waitingSince[(head + j + 1) % waiters.length];
+			}
+			waiters[(head + waiterCount - 1) % waiters.length] = null;
+		}
+		dequeued(msg);
+		return msg;
+	}
+	
+	/**
+	 * Remove from the wait queue the request the policy says should be granted next, and
+	 * record how long it waited.  The caller must grant it before asking for another.
+	 * Readers overtaking a blocked writer are found by a single scan that each call takes
+	 * up where the last one stopped.
+	 * 
+	 * @return	Request to grant, or null if none can be granted
+	 */
+	public AccessRequestMsg takeGrantable() {
+		if (scan < 0) {
+			int next = nextGrantable();
+			if (next < 0) {
+				return null;
+			}
+			if (next == 0 || policy != FairnessPolicy.READER_PREFERRING) {
+				long since = getWaitingSince(next);
+				return taken(removeWaiter(next), since);
+			}
+			scan = next;
+			kept = next;
+		}
+		
+		// Granting a read neither frees the writer at the head nor blocks another read,
+		// so the scan only has to go forward once.
+		int end = waiterCount + (scan - kept);
+		while (scan < end) {
+			int from = (head + scan) % waiters.length;
+			AccessRequestMsg msg = waiters[from];
+			long since = waitingSince[from];
+			scan++;
+			if (!isWrite(msg) && grantable(msg)) {
+				dequeued(msg);
+				return taken(msg, since);
+			}
+			int to = (head + kept) % waiters.length;
+			waiters[to] = msg;
+			waitingSince[to] = since;
+			kept++;
+		}
+		closeGap();
+		return null;
+	}
+	
+	/**
+	 * Find the queued request, if any, that the policy says should be granted next.
+	 * 
+	 * @return	Position of that request in the wait queue, or -1 if none can be granted
+	 */
+	public int nextGrantable() {
+		if (waiterCount == 0) {
+			return -1;
+		}
+		if (policy == FairnessPolicy.WRITER_PREFERRING && waitingWriters > 0) {
+			// Readers stay queued behind the oldest writer.
+			for (int i = 0; i < waiterCount; i++) {
+				if (isWrite(getWaiter(i))) {
+					return grantable(i) ? i : -1;
+				}
+			}
+		}
+		if (grantable(0)) {
+			return 0;
+		}
+		if (policy == FairnessPolicy.READER_PREFERRING) {
+			// Readers overtake a blocked writer at the head.
+			for (int i = 1; i < waiterCount; i++) {
+				if (!isWrite(getWaiter(i)) && grantable(i)) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+	
+	private boolean grantable(int i) {
+		return grantable(getWaiter(i));
+	}
+	
+	private boolean grantable(AccessRequestMsg msg) {
+		return canGrant(msg.getUserId(), accessTypeOf(msg.getAccessRequest().getType()));
+	}
+	
+	// Update queue counts after a request left the queue.
+	private void dequeued(AccessRequestMsg msg) {
+		waiterCount -= 1;
+		if (isWrite(msg)) {
+			waitingWriters -= 1;
+		}
+		if (msg.getRequestId() != 0) {
+			waitingIds.remove(key(msg.getUserId(), msg.getRequestId()));
+		}
+	}
+	
+	// Record how long a request taken to be granted waited; return it.
+	private AccessRequestMsg taken(AccessRequestMsg msg, long since) {
+		if (metrics != null) {
+			metrics.recordQueueWait(msg.getAccessRequest().getType(), SimulationClock.current().nanoTime() - since);
+		}
+		return msg;
+	}
+	
+	// End a pass of overtaking readers: move the waiters not yet looked at down over the
+	// ones taken, so that the queue is contiguous again.
+	private void closeGap() {
+		if (scan < 0) {
+			return;
+		}
+		int end = waiterCount + (scan - kept);
+		for (int i = scan; i < end; i++) {
+			int from = (head + i) % waiters.length;
+			int to = (head + kept) % waiters.length;
+			waiters[to] = waiters[from];
+			waitingSince[to] = waitingSince[from];
+			kept++;
+		}
+		for (int i = kept; i < end; i++) {
+			waiters[(head + i) % waiters.length] = null;
+		}
+		scan = -1;
+	}
+	
+	private static boolean isWrite(AccessRequestMsg msg) {
+		return accessTypeOf(msg.getAccessRequest().getType()) == AccessType.EXCLUSIVE_WRITE;
+	}
+	
+	// Key of a user's request in the sets of queued and granted requests.
+	private static long key(int user, int requestId) {
+		return ((long)user << 32) | (requestId & 0xffffffffL);
+	}
+	
+	// Stop remembering a request whose grant was given up.
+	private void forget(int user, int requestId) {
+		if (requestId != 0) {
+			grantedIds.remove(key(user, requestId));
+		}
+	}
+	
+	// Update holder counts after the user gave up some of its grants of the given kind.
+	private void givenUp(int user, Holds mine, AccessType type) {
+		if (type == AccessType.EXCLUSIVE_WRITE) {
+			if (mine.writes == 0) {
+				writer = -1;
+				if (metrics != null) {
+					metrics.recordHold(type, SimulationClock.current().nanoTime() - mine.writeSince);
+				}
+			}
+		} else if (mine.reads == 0) {
+			readers -= 1;
+			if (metrics != null) {
+				metrics.recordHold(type, SimulationClock.current().nanoTime() - mine.readSince);
+			}
+		}
+		if (mine.reads == 0 && mine.writes == 0) {
+			holders.remove(user);
+			if (spares.size() < SPARE_LIMIT) {
+				spares.add(mine);
+			}
+		}
+	}
+	
+	// Store id at position count of ids, growing it if full; return the array.
+	private static int[] append(int[] ids, int count, int id) {
+		if (count == ids.length) {
+			int[] bigger = new int[ids.length * 2];
+			System.arraycopy(ids, 0, bigger, 0, count);
+			ids = bigger;
+		}
+		ids[count] = id;
+		return ids;
+	}
+	
+	// Store lease at position count of leases, growing it if full; return the array.
+	private static long[] append(long[] leases, int count, long lease) {
+		if (count == leases.length) {
+			long[] bigger = new long[leases.length * 2];
+			System.arraycopy(leases, 0, bigger, 0, count);
+			leases = bigger;
+		}
+		leases[count] = lease;
+		return leases;
+	}
+	
+	// Position among the count entries of ids of the grant for a request, the oldest for
+	// request 0; -1 if there is none.
+	private static int indexOf(int[] ids, int count, int requestId) {
+		if (requestId == 0) {
+			return count > 0 ? 0 : -1;
+		}
+		for (int i = 0; i < count; i++) {
+			if (ids[i] == requestId) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	// Remove and return entry i of the count entries of ids.
+	private static int removeAt(int[] ids, int count, int i) {
+		int id = ids[i];
+		System.arraycopy(ids, i + 1, ids, i, count - 1 - i);
+		return id;
+	}
+	
+	// Remove entry i of the count entries of leases.
+	private static void removeAt(long[] leases, int count, int i) {
+		System.arraycopy(leases, i + 1, leases, i, count - 1 - i);
+	}
+}
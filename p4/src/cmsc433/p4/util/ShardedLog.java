@@ -0,0 +1,81 @@
+package cmsc433.p4.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import cmsc433.p4.messages.LogMsg;
+
+/**
+ * Event log kept in parts by several logger shards, read as one stream.
+ * 
+ * Part i holds the events of the logger shard with ID i, the main logger's being part 0,
+ * in the order the shard received them; so the events of any one actor, and of any
+ * actors the shard heard from in turn, keep their order.  The parts are interleaved by
+ * LogMsg sequence number, taking each part's next event in turn, with ties going to the
+ * part of lower ID.  The merge is therefore a total order that the same parts always
+ * give, even where sequence numbers from different threads repeat.
+ * 
+ * The parts are merged the first time the log is read.  Each shard's part is a copy
+ * of its events taken once every user had terminated; events it logs later are added
+ * to that part by the main logger.  As with a single log kept in memory, the parts may
+ * still be growing when the simulation reports it is finished, so the log should only
+ * be read once the actor system has shut down.
+ * 
+ */
+public class ShardedLog {
+	
+	private final ArrayList<ArrayList<Object>> parts;
+	private ArrayList<Object> merged = null;
+	
+	/**
+	 * @param parts	Part of each logger shard, by shard ID; null for an ID not in use
+	 */
+	public ShardedLog (ArrayList<ArrayList<Object>> parts) {
+		this.parts = parts;
+	}
+	
+	/**
+	 * @return	Every event of every part, in sequence order
+	 */
+	public synchronized ArrayList<Object> getMerged() {
+		if (merged == null) {
+			int size = 0;
+			for (ArrayList<Object> part : parts) {
+				size += (part == null) ? 0 : part.size();
+			}
+			merged = new ArrayList<Object>(size);
+			
+			// Parts with events left, by the sequence number of their next one, then ID.
+			final int[] next = new int[parts.size()];
+			PriorityQueue<Integer> heads = new PriorityQueue<Integer>(Math.max(1, parts.size()), new Comparator<Integer>() {
+				public int compare(Integer a, Integer b) {
+					long x = sequenceAt(a, next[a]);
+					long y = sequenceAt(b, next[b]);
+					if (x != y) {
+						return x < y ? -1 : 1;
+					}
+					return a - b;
+				}
+			});
+			for (int i = 0; i < parts.size(); i++) {
+				if (parts.get(i) != null && !parts.get(i).isEmpty()) {
+					heads.add(i);
+				}
+			}
+			while (!heads.isEmpty()) {
+				int i = heads.poll();
+				merged.add(parts.get(i).get(next[i]));
+				next[i] += 1;
+				if (next[i] < parts.get(i).size()) {
+					heads.add(i);
+				}
+			}
+		}
+		return merged;
+	}
+	
+	private long sequenceAt(int part, int i) {
+		return ((LogMsg)parts.get(part).get(i)).getSequence();
+	}
+}
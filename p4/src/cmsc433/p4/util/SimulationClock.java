@@ -0,0 +1,389 @@
+package cmsc433.p4.util;
+
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Cancellable;
+import akka.dispatch.ExecutionContexts;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Source of time and timers for the actors of a simulation.
+ *
+ * The wall clock, WALL, is real time and the actor system's own scheduler.  A virtual
+ * clock instead runs every actor of the actor system it makes on one thread of its
+ * own, picking which actor goes next with a seeded generator, and keeps a virtual time
+ * that only moves when no actor has anything left to do, jumping straight to the next
+ * timer.  Handling a message takes no virtual time, so sleeps and leases of any length
+ * pass at once, and a simulation started the same way with the same seed does the
+ * same things in the same order.
+ *
+ * Actors find the clock they run under with current(), so code reading the time or
+ * setting timers through it runs unchanged under either clock.  Under a virtual clock
+ * nothing in an actor may block waiting for another actor, as there is no other
+ * thread to run it.
+ *
+ */
+public class SimulationClock implements Executor {
+
+	/**
+	 * Real time.
+	 */
+	public static final SimulationClock WALL = new SimulationClock(false, 0);
+
+	private static final ThreadLocal<SimulationClock> CURRENT = new ThreadLocal<SimulationClock>();
+	private static volatile boolean anyVirtual = false;	// Spares the wall clock the thread-local lookup
+
+	private final boolean virtual;
+	private final long seed;
+	private final Random random;					// Picks the next task
+	private final ArrayList<Runnable> tasks = new ArrayList<Runnable>();	// Tasks ready to run
+	private final PriorityQueue<Timer> timers = new PriorityQueue<Timer>();
+	private volatile long now = 0;					// Virtual time, in nanoseconds
+	private long timerCounter = 0;					// Orders timers due at the same time
+	private long eventCounter = 0;					// Numbers logged events while time stands still
+	private boolean running = false;				// Whether a task is running
+	private boolean frozen = false;					// Whether time has been stopped by settle()
+	private boolean stopped = false;
+	private volatile LoggingAdapter log = null;	// Failures of tasks, once the actor system is up
+
+	private SimulationClock(boolean virtual, long seed) {
+		this.virtual = virtual;
+		this.seed = seed;
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Make a virtual clock, with its thread.
+	 *
+	 * @param seed	Seed of the order actors are run in
+	 * @return		New clock, at time 0
+	 */
+	public static SimulationClock makeVirtual(long seed) {
+		final SimulationClock clock = new SimulationClock(true, seed);
+		anyVirtual = true;
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				clock.runTasks();
+			}
+		}, "simulation-clock-" + seed);
+		thread.setDaemon(true);
+		thread.start();
+		return clock;
+	}
+
+	/**
+	 * @return	Clock of the actor running on this thread; the wall clock outside
+	 * 			virtual clocks
+	 */
+	public static SimulationClock current() {
+		if (!anyVirtual) {
+			return WALL;
+		}
+		SimulationClock clock = CURRENT.get();
+		return clock == null ? WALL : clock;
+	}
+
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	/**
+	 * Make an actor system run by this clock.  Under the wall clock it is an ordinary
+	 * actor system.  Under a virtual clock every actor runs on the clock's thread, one
+	 * message at a time; the system is returned once it has finished starting, so that
+	 * whatever is sent to it next is the first thing it does, and the clock's thread
+	 * ends when the system terminates.
+	 *
+	 * @param name	Name of the actor system
+	 * @return		New actor system
+	 */
+	public ActorSystem makeSystem(String name) throws InterruptedException {
+		return makeSystem(name, ConfigFactory.empty());
+	}
+	
+	/**
+	 * Make an actor system run by this clock, as makeSystem(name), with configuration of
+	 * its own ahead of the application's.
+	 *
+	 * @param name		Name of the actor system
+	 * @param extra		Configuration overriding the application's, such as dispatcher definitions
+	 * @return			New actor system
+	 */
+	public ActorSystem makeSystem(String name, Config extra) throws InterruptedException {
+		if (!virtual) {
+			return ActorSystem.create(name, extra.withFallback(ConfigFactory.load()));
+		}
+		Config config = ConfigFactory.parseString("akka.actor.default-dispatcher.throughput = 1")
+				.withFallback(extra).withFallback(ConfigFactory.load());
+		ActorSystem system = ActorSystem.create(name, config, SimulationClock.class.getClassLoader(),
+				ExecutionContexts.fromExecutor(this));
+		log = Logging.getLogger(system, this);
+		system.registerOnTermination(new Runnable() {
+			public void run() {
+				stop();
+			}
+		});
+		synchronized (this) {
+			while (running || !tasks.isEmpty()) {
+				wait();
+			}
+			// Starting raced with this thread; the seeded order begins from here.
+			random.setSeed(seed);
+		}
+		return system;
+	}
+
+	/**
+	 * Stop time and wait for the actors to finish everything they can do without it,
+	 * so that a finished simulation, whose log is still filling with the last events
+	 * in flight, ends in the same state each run.  Call before shutting the actor
+	 * system down; timers no longer fire.  Does nothing under the wall clock.
+	 */
+	public void settle() throws InterruptedException {
+		if (!virtual) {
+			return;
+		}
+		synchronized (this) {
+			frozen = true;
+			while (running || !tasks.isEmpty()) {
+				wait();
+			}
+		}
+	}
+
+	/**
+	 * @return	Time in nanoseconds, from System.nanoTime() under the wall clock and from
+	 * 			the start of the clock under a virtual one
+	 */
+	public long nanoTime() {
+		return virtual ? now : System.nanoTime();
+	}
+
+	/**
+	 * Number an event being logged now, for merging logs kept in parts.  Under a virtual
+	 * clock, where time stands still while actors run, the clock counts the events of its
+	 * own simulation on its thread, so the numbers are distinct and follow the order the
+	 * events happened in.  Under the wall clock the number is System.nanoTime(), so no
+	 * counter is shared between threads or simulations, but events on different threads
+	 * may get the same number.  ShardedLog therefore keeps each part in its own order and
+	 * breaks ties by shard.
+	 *
+	 * @return	Sequence number of the event
+	 */
+	public long nextSequence() {
+		if (!virtual) {
+			return System.nanoTime();
+		}
+		eventCounter += 1;
+		return eventCounter;
+	}
+
+	/**
+	 * @return	Time in milliseconds, from System.currentTimeMillis() under the wall clock
+	 * 			and from the start of the clock under a virtual one
+	 */
+	public long currentTimeMillis() {
+		return virtual ? now / 1000000 : System.currentTimeMillis();
+	}
+
+	/**
+	 * Send a message once after a delay.
+	 *
+	 * @param system	Actor system of the sender
+	 * @param delayMs	Delay, in milliseconds
+	 * @param receiver	Actor to send the message to
+	 * @param msg		Message to send
+	 * @param sender	Sender of the message
+	 * @return			Handle to cancel the message with
+	 */
+	public Cancellable scheduleOnce(ActorSystem system, long delayMs, ActorRef receiver, Object msg, ActorRef sender) {
+		if (!virtual) {
+			return system.scheduler().scheduleOnce(Duration.create(delayMs, TimeUnit.MILLISECONDS),
+					receiver, msg, system.dispatcher(), sender);
+		}
+		return addTimer(delayMs, 0, receiver, msg, sender);
+	}
+
+	/**
+	 * Send a message after a delay and then at every interval until cancelled.
+	 *
+	 * @param system		Actor system of the sender
+	 * @param initialMs		Delay before the first message, in milliseconds
+	 * @param intervalMs	Interval between messages, in milliseconds
+	 * @param receiver		Actor to send the message to
+	 * @param msg			Message to send
+	 * @param sender		Sender of the message
+	 * @return				Handle to cancel the messages with
+	 */
+	public Cancellable schedule(ActorSystem system, long initialMs, long intervalMs, ActorRef receiver, Object msg, ActorRef sender) {
+		if (!virtual) {
+			return system.scheduler().schedule(Duration.create(initialMs, TimeUnit.MILLISECONDS),
+					Duration.create(intervalMs, TimeUnit.MILLISECONDS), receiver, msg, system.dispatcher(), sender);
+		}
+		return addTimer(initialMs, Math.max(1, intervalMs), receiver, msg, sender);
+	}
+
+	private synchronized Timer addTimer(long delayMs, long intervalMs, ActorRef receiver, Object msg, ActorRef sender) {
+		timerCounter += 1;
+		Timer timer = new Timer(now + delayMs * 1000000, timerCounter, intervalMs * 1000000, receiver, msg, sender);
+		timers.add(timer);
+		notifyAll();
+		return timer;
+	}
+
+	/**
+	 * Queue a task for the clock's thread; under the wall clock, run it at once.  Code
+	 * outside the actors starts a simulation through here, so that a virtual clock
+	 * orders it with everything the actors do.
+	 */
+	public void execute(Runnable task) {
+		if (!virtual) {
+			task.run();
+			return;
+		}
+		queue(task);
+	}
+
+	private synchronized void queue(Runnable task) {
+		if (!stopped) {
+			tasks.add(task);
+			notifyAll();
+		}
+	}
+
+	private synchronized void stop() {
+		stopped = true;
+		tasks.clear();
+		timers.clear();
+		notifyAll();
+	}
+
+	// Body of the clock's thread: run ready tasks in random order, and when there are
+	// none move time on to the next timer and fire it.  A task that throws is reported
+	// and the clock goes on; an Error, or a failure before the actor system is up, stops
+	// the clock and ends the thread with it.
+	private void runTasks() {
+		CURRENT.set(this);
+		while (true) {
+			Runnable task = null;
+			Timer due = null;
+			synchronized (this) {
+				running = false;
+				while (task == null && due == null) {
+					if (stopped) {
+						return;
+					}
+					if (!tasks.isEmpty()) {
+						int i = random.nextInt(tasks.size());
+						int last = tasks.size() - 1;
+						task = tasks.get(i);
+						tasks.set(i, tasks.get(last));
+						tasks.remove(last);
+					} else if (!timers.isEmpty() && !frozen) {
+						due = timers.poll();
+						if (due.isCancelled()) {
+							due = null;
+							continue;
+						}
+						now = Math.max(now, due.time);
+						if (due.interval > 0) {
+							timerCounter += 1;
+							timers.add(due.next(timerCounter));
+						}
+					} else {
+						notifyAll();	// Idle, for makeSystem
+						try {
+							wait();
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+				}
+				running = true;
+			}
+			try {
+				if (task != null) {
+					task.run();
+				} else {
+					due.receiver.tell(due.msg, due.sender);
+				}
+			} catch (RuntimeException e) {
+				LoggingAdapter log = this.log;
+				if (log == null) {
+					halt();
+					throw e;
+				}
+				log.error(e, "Task of simulation clock {} failed", seed);
+			} catch (Error e) {
+				halt();
+				throw e;
+			}
+		}
+	}
+
+	// The clock's thread is ending: drop everything left and release whoever waits for it.
+	private synchronized void halt() {
+		stop();
+		running = false;
+	}
+
+	/**
+	 * Message due at a virtual time.  A periodic timer is replaced by its next
+	 * occurrence each time it fires; cancelling any of them cancels the rest.
+	 */
+	private static class Timer implements Cancellable, Comparable<Timer> {
+		private final long time;			// When due, in nanoseconds
+		private final long order;			// Tie-breaker between timers due together
+		private final long interval;		// Nanoseconds to the next occurrence, or 0
+		private final ActorRef receiver;
+		private final Object msg;
+		private final ActorRef sender;
+		private final Timer first;			// First occurrence, holding the cancellation
+		private volatile boolean cancelled = false;	// Of the first occurrence only
+
+		private Timer (long time, long order, long interval, ActorRef receiver, Object msg, ActorRef sender) {
+			this(time, order, interval, receiver, msg, sender, null);
+		}
+
+		private Timer (long time, long order, long interval, ActorRef receiver, Object msg, ActorRef sender, Timer first) {
+			this.time = time;
+			this.order = order;
+			this.interval = interval;
+			this.receiver = receiver;
+			this.msg = msg;
+			this.sender = sender;
+			this.first = first == null ? this : first;
+		}
+
+		private Timer next(long order) {
+			return new Timer(time + interval, order, interval, receiver, msg, sender, first);
+		}
+
+		public boolean cancel() {
+			boolean was = first.cancelled;
+			first.cancelled = true;
+			return !was;
+		}
+
+		public boolean isCancelled() {
+			return first.cancelled;
+		}
+
+		public int compareTo(Timer other) {
+			if (time != other.time) {
+				return time < other.time ? -1 : 1;
+			}
+			return order < other.order ? -1 : (order == other.order ? 0 : 1);
+		}
+	}
+}
@@ -0,0 +1,226 @@
+package cmsc433.p4.util;
+
+import java.util.Arrays;
+
+import cmsc433.p4.enums.DiscoveryMode;
+import cmsc433.p4.enums.IssueMode;
+import cmsc433.p4.enums.LogFormat;
+import cmsc433.p4.messages.LogMsg;
+
+/**
+ * Class of system-wide settings for a simulation.  Settings particular to a node
+ * belong in its NodeSpecification instead.
+ * 
+ * A configuration is shared by every actor in the simulation, so it should not be
+ * changed once the simulation has been created.
+ * 
+ */
+public class SimulationConfig {
+	
+	private DiscoveryMode discoveryMode = DiscoveryMode.BROADCAST;	// How managers find remote resources
+	private long notFoundCacheTtlMs = 1000;		// How long a manager trusts that a name does not exist
+	private int notFoundCacheSize = 1024;		// Most nonexistent names each manager remembers
+	private int shards = 1;						// Child actors each manager splits its resources among
+	private boolean lockMetrics = true;			// Whether managers time lock waits and holds
+	private String logDirectory = null;			// Where the log is streamed to, or null to keep it in memory
+	private LogFormat logFormat = LogFormat.TEXT;	// Form of a log streamed to disk
+	private int logBufferSize = 8192;			// Most text log events buffered before the writer catches up
+	private long logFileEvents = 1000000;		// Most log events per file before rolling to the next
+	private boolean shardedLog = false;			// Whether each node logs to a logger of its own
+	private boolean[] loggedEvents = allLogged(true);	// Whether each LogMsg.EventType is logged, by ordinal
+	private IssueMode issueMode = IssueMode.WINDOWED;	// How users decide when to send their next steps
+	private int window = 1;						// Most unfinished steps of a windowed user
+	private double openLoopRate = 100;			// Steps per second taken by each open-loop user
+	private DispatcherProfile dispatchers = new DispatcherProfile();	// Dispatchers actors run on, by role
+	
+	public DiscoveryMode getDiscoveryMode() {
+		return discoveryMode;
+	}
+	
+	public void setDiscoveryMode(DiscoveryMode discoveryMode) {
+		this.discoveryMode = discoveryMode;
+	}
+	
+	public long getNotFoundCacheTtlMs() {
+		return notFoundCacheTtlMs;
+	}
+	
+	/**
+	 * @param notFoundCacheTtlMs	How long a failed lookup is remembered, in milliseconds; 0 disables the cache
+	 */
+	public void setNotFoundCacheTtlMs(long notFoundCacheTtlMs) {
+		this.notFoundCacheTtlMs = notFoundCacheTtlMs;
+	}
+	
+	public int getNotFoundCacheSize() {
+		return notFoundCacheSize;
+	}
+	
+	public void setNotFoundCacheSize(int notFoundCacheSize) {
+		this.notFoundCacheSize = notFoundCacheSize;
+	}
+	
+	public int getShards() {
+		return shards;
+	}
+	
+	/**
+	 * @param shards	Number of child actors each manager spreads its local resources over;
+	 * 					1 keeps every resource in the manager itself
+	 */
+	public void setShards(int shards) {
+		this.shards = shards;
+	}
+	
+	public boolean isLockMetrics() {
+		return lockMetrics;
+	}
+	
+	/**
+	 * @param lockMetrics	Whether managers keep histograms of queue wait, hold and
+	 * 						forward-to-grant times, for MetricsRequestMsg to fetch
+	 */
+	public void setLockMetrics(boolean lockMetrics) {
+		this.lockMetrics = lockMetrics;
+	}
+	
+	public String getLogDirectory() {
+		return logDirectory;
+	}
+	
+	/**
+	 * @param logDirectory	Directory the logger streams events to, in rolling files; null keeps
+	 * 						every event in memory and returns them in the SimulationFinishMsg.
+	 * 						A streamed log cannot be sharded.
+	 */
+	public void setLogDirectory(String logDirectory) {
+		if (logDirectory != null && shardedLog) {
+			throw new IllegalArgumentException("A sharded log is kept in memory and cannot be streamed to " + logDirectory);
+		}
+		this.logDirectory = logDirectory;
+	}
+	
+	public LogFormat getLogFormat() {
+		return logFormat;
+	}
+	
+	public void setLogFormat(LogFormat logFormat) {
+		this.logFormat = logFormat;
+	}
+	
+	public boolean isShardedLog() {
+		return shardedLog;
+	}
+	
+	/**
+	 * @param shardedLog	Whether each node's manager and users log to a logger shard of
+	 * 						their own, the parts being merged by sequence number when the
+	 * 						log is read; only a log kept in memory can be sharded
+	 */
+	public void setShardedLog(boolean shardedLog) {
+		if (shardedLog && logDirectory != null) {
+			throw new IllegalArgumentException("A log streamed to " + logDirectory + " cannot be sharded");
+		}
+		this.shardedLog = shardedLog;
+	}
+	
+	public boolean isLogged(LogMsg.EventType type) {
+		return loggedEvents[type.ordinal()];
+	}
+	
+	/**
+	 * Turns logging of one type of event on or off.  Managers do not even build events of
+	 * a type that is off.  Users always report their start and termination, as the logger
+	 * needs them to tell when the simulation is over, but the logger leaves them out of
+	 * the log if they are off.
+	 * 
+	 * @param type		Type of event
+	 * @param logged	Whether events of this type are logged
+	 */
+	public void setLogged(LogMsg.EventType type, boolean logged) {
+		loggedEvents[type.ordinal()] = logged;
+	}
+	
+	/**
+	 * @param logged	Whether events of every type are logged; follow with setLogged
+	 * 					to keep only a few types
+	 */
+	public void setAllLogged(boolean logged) {
+		loggedEvents = allLogged(logged);
+	}
+	
+	/**
+	 * @return	Copy of the filter, indexed by LogMsg.EventType ordinal
+	 */
+	public boolean[] getLoggedEvents() {
+		return loggedEvents.clone();
+	}
+	
+	private static boolean[] allLogged(boolean logged) {
+		boolean[] events = new boolean[LogMsg.EventType.values().length];
+		Arrays.fill(events, logged);
+		return events;
+	}
+	
+	public int getLogBufferSize() {
+		return logBufferSize;
+	}
+	
+	public void setLogBufferSize(int logBufferSize) {
+		this.logBufferSize = logBufferSize;
+	}
+	
+	public long getLogFileEvents() {
+		return logFileEvents;
+	}
+	
+	public void setLogFileEvents(long logFileEvents) {
+		this.logFileEvents = logFileEvents;
+	}
+	
+	public IssueMode getIssueMode() {
+		return issueMode;
+	}
+	
+	public void setIssueMode(IssueMode issueMode) {
+		this.issueMode = issueMode;
+	}
+	
+	public int getWindow() {
+		return window;
+	}
+	
+	/**
+	 * @param window	Most steps a windowed user has taken from its script and not finished;
+	 * 					steps touching a common resource still run in script order, and a step
+	 * 					with a sleep runs alone.  1 runs each step to the end before the next
+	 */
+	public void setWindow(int window) {
+		this.window = window;
+	}
+	
+	public double getOpenLoopRate() {
+		return openLoopRate;
+	}
+	
+	/**
+	 * @param openLoopRate	Steps per second each open-loop user takes from its script, and sends
+	 * 						as soon as no earlier unfinished step touches the same resource;
+	 * 						sleep steps are skipped, the rate setting the pace instead
+	 */
+	public void setOpenLoopRate(double openLoopRate) {
+		this.openLoopRate = openLoopRate;
+	}
+	
+	public DispatcherProfile getDispatchers() {
+		return dispatchers;
+	}
+	
+	/**
+	 * @param dispatchers	Dispatchers managers, users and loggers run on; an isolated
+	 * 						profile must be defined in the actor system
+	 */
+	public void setDispatchers(DispatcherProfile dispatchers) {
+		this.dispatchers = dispatchers;
+	}
+}
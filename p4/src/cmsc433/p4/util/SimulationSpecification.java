@@ -0,0 +1,36 @@
+package cmsc433.p4.util;
+
+import java.util.ArrayList;
+
+/**
+ * Class of specifications of whole simulations, as run side by side by a sweep: the
+ * nodes of the simulated system, its settings, and a name to report its result under.
+ *
+ */
+public class SimulationSpecification {
+	private final String name;
+	private final ArrayList<NodeSpecification> nodes;
+	private final SimulationConfig config;
+
+	public SimulationSpecification (String name, ArrayList<NodeSpecification> nodes) {
+		this(name, nodes, new SimulationConfig());
+	}
+
+	public SimulationSpecification (String name, ArrayList<NodeSpecification> nodes, SimulationConfig config) {
+		this.name = name;
+		this.nodes = nodes;
+		this.config = config;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public ArrayList<NodeSpecification> getNodes() {
+		return nodes;
+	}
+
+	public SimulationConfig getConfig() {
+		return config;
+	}
+}
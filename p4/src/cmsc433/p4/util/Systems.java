@@ -3,18 +3,19 @@ package cmsc433.p4.util;
 import java.util.ArrayList;
 import java.util.Arrays;
 
+import cmsc433.p4.actors.LoggerActor;
 import cmsc433.p4.actors.ResourceManagerActor;
 import cmsc433.p4.actors.UserActor;
 import cmsc433.p4.messages.AddInitialLocalResourcesRequestMsg;
-import cmsc433.p4.messages.AddInitialLocalResourcesResponseMsg;
 import cmsc433.p4.messages.AddLocalUsersRequestMsg;
-import cmsc433.p4.messages.AddLocalUsersResponseMsg;
 import cmsc433.p4.messages.AddRemoteManagersRequestMsg;
-import cmsc433.p4.messages.AddRemoteManagersResponseMsg;
 import akka.actor.ActorRef;
-import akka.actor.ActorSystem;
+import akka.actor.ActorRefFactory;
+import akka.dispatch.Futures;
+import akka.dispatch.Mapper;
 import akka.pattern.Patterns;
 import scala.concurrent.Await;
+import scala.concurrent.ExecutionContext;
 import scala.concurrent.Future;
 import scala.concurrent.duration.Duration;
 
@@ -25,6 +26,10 @@ import scala.concurrent.duration.Duration;
  *
  */
 public class Systems {
+	
+	// How long bootstrap waits for any one acknowledgement; every node is set up at
+	// once, so a large system needs far longer than one round trip.
+	private static final long BOOTSTRAP_TIMEOUT_MS = 120000;
 
 	/**
 	 * Make a resource with the given name.
@@ -76,69 +81,156 @@ public class Systems {
 	 * @param context	Context in which to install actors
 	 * @return List of user actors created
 	 */
-	public static SystemActors makeSystem(ArrayList<NodeSpecification> nodes, ActorRef logger, ActorSystem system) {
+	public static SystemActors makeSystem(ArrayList<NodeSpecification> nodes, ActorRef logger, ActorRefFactory context) {
+		return makeSystem(nodes, new SimulationConfig(), logger, context);
+	}
+	
+	/**
+	 * Create system of resource-manager, user actors from node list and
+	 * return actors.
+	 * 
+	 * @param nodes		List of node specs (resource list, user scripts)
+	 * @param config	System-wide settings of the simulation
+	 * @param logger	Actor to send logging messages to
+	 * @param context	Context in which to install actors
+	 * @return List of user actors created
+	 */
+	public static SystemActors makeSystem(ArrayList<NodeSpecification> nodes, SimulationConfig config, ActorRef logger, ActorRefFactory context) {
 
 		ArrayList<ActorRef> managers = new ArrayList<ActorRef>();
 		ArrayList<ActorRef> users = new ArrayList<ActorRef>();
 		
-		long futureDelay = 1000; // millisecond
 		Duration awaitDelay = Duration.Inf();
 		
-		// For each node spec, create manager, users, accumulating each
+		ArrayList<Future<Object>> acks = makeNodes(nodes, config, logger, context, managers, users);
+		if (!awaitAll(acks, awaitDelay, context, "local resources and users")) {
+			return null;
+		}
 		
+		if (!awaitAll(addRemoteManagers(managers), awaitDelay, context, "remote managers")) {
+			return null;
+		}
+		
+		// Return list of users
+
+		return new SystemActors(managers, users);
+	}
+	
+	/**
+	 * Create system of resource-manager, user actors from node list without waiting for
+	 * it to be set up, as an actor must not block its thread.  The managers are sent
+	 * their resources and users, then the other managers once those are acknowledged.
+	 * 
+	 * @param nodes		List of node specs (resource list, user scripts)
+	 * @param config	System-wide settings of the simulation
+	 * @param logger	Actor to send logging messages to
+	 * @param context	Context in which to install actors
+	 * @return			Future of the actors created, completed once every manager has
+	 * 					acknowledged its set-up, or failed if one did not in time
+	 */
+	public static Future<SystemActors> startSystem(ArrayList<NodeSpecification> nodes, SimulationConfig config, ActorRef logger,
+			ActorRefFactory context) {
+		final ArrayList<ActorRef> managers = new ArrayList<ActorRef>();
+		final ArrayList<ActorRef> users = new ArrayList<ActorRef>();
+		final ExecutionContext ec = context.dispatcher();
+		
+		ArrayList<Future<Object>> acks = makeNodes(nodes, config, logger, context, managers, users);
+		return Futures.sequence(acks, ec).flatMap(new Mapper<Iterable<Object>, Future<Iterable<Object>>>() {
+			@Override
+			public Future<Iterable<Object>> apply(Iterable<Object> added) {
+				return Futures.sequence(addRemoteManagers(managers), ec);
+			}
+		}, ec).map(new Mapper<Iterable<Object>, SystemActors>() {
+			@Override
+			public SystemActors apply(Iterable<Object> added) {
+				return new SystemActors(managers, users);
+			}
+		}, ec);
+	}
+	
+	// Create every manager and user, and send every manager its resources and users at
+	// once; return the acknowledgements, to be gathered afterwards as a group.
+	private static ArrayList<Future<Object>> makeNodes(ArrayList<NodeSpecification> nodes, SimulationConfig config, ActorRef logger,
+			ActorRefFactory context, ArrayList<ActorRef> managers, ArrayList<ActorRef> users) {
+		int nextUserId = 0;		// Users are numbered densely across all nodes
+		int nextShard = 1;		// Logger shards are numbered by node, the main logger being 0
+		ArrayList<Future<Object>> acks = new ArrayList<Future<Object>>();
 		for (NodeSpecification spec : nodes) {
 			
+			// Each node may log to a shard of its own, so one logger is not every actor's bottleneck.
+			ActorRef nodeLogger = logger;
+			if (config.isShardedLog()) {
+				nodeLogger = LoggerActor.makeLoggerShard(logger, context, nextShard, config);
+				nextShard += 1;
+			}
+			
 			// Create manager, add to list of managers.
-			ActorRef manager = ResourceManagerActor.makeResourceManager(logger, system);
+			ActorRef manager = ResourceManagerActor.makeResourceManager(nodeLogger, context, spec.getFairnessPolicy(), config);
 			managers.add(manager);
 			
 			// Assign local resources to new manager.
 			AddInitialLocalResourcesRequestMsg rmsg = new AddInitialLocalResourcesRequestMsg (spec.getResources());
-			Future<Object> fmsg = Patterns.ask(manager, rmsg, futureDelay);
-			try {
-				AddInitialLocalResourcesResponseMsg ack = (AddInitialLocalResourcesResponseMsg)Await.result(fmsg, awaitDelay);
-			}
-			catch (Exception e) {
-				System.out.println(e);
-				System.out.println("Error in makeSystem(): local users");
-				return null;
-			}
+			acks.add(Patterns.ask(manager, rmsg, BOOTSTRAP_TIMEOUT_MS));
 			
-			
-			// Create users and add them into manager
+			// Create users and add them into manager; only this node's users are local to it.
+			ArrayList<ActorRef> nodeUsers = new ArrayList<ActorRef>();
 			for (UserScript s : spec.getUserScripts()) {
-				ActorRef user = UserActor.makeUser(s, manager, logger, system);
-				users.add(user);
-			}
-			AddLocalUsersRequestMsg amsg = new AddLocalUsersRequestMsg(users);
-			fmsg = Patterns.ask(manager, amsg, futureDelay);
-			try {
-				AddLocalUsersResponseMsg ack = (AddLocalUsersResponseMsg)Await.result(fmsg, awaitDelay);
-			}
-			catch (Exception e) {
-				System.out.println(e);
-				System.out.println("Error in makeSystem(): local users");
-				return null;
+				ActorRef user = UserActor.makeUser(s, manager, nodeLogger, config, context);
+				nodeUsers.add(user);
 			}
-			
+			users.addAll(nodeUsers);
+			AddLocalUsersRequestMsg amsg = new AddLocalUsersRequestMsg(nodeUsers, nextUserId);
+			nextUserId += nodeUsers.size();
+			acks.add(Patterns.ask(manager, amsg, BOOTSTRAP_TIMEOUT_MS));
 		}
-		
-		// Update remote managers of each manager
+		return acks;
+	}
+	
+	// Update remote managers of each manager; return the acknowledgements.  Managers
+	// register their resources with the directory at this point, so every manager must
+	// already have its resources.
+	private static ArrayList<Future<Object>> addRemoteManagers(ArrayList<ActorRef> managers) {
+		ArrayList<Future<Object>> acks = new ArrayList<Future<Object>>();
 		for (ActorRef m : managers) {
-			Future<Object> fmsg = Patterns.ask(m, new AddRemoteManagersRequestMsg(managers), futureDelay);
-			try {
-				AddRemoteManagersResponseMsg msg = (AddRemoteManagersResponseMsg)Await.result(fmsg, awaitDelay);
-			}
-			catch (Exception e) {
-				System.out.println(e);
-				System.out.println("Error in makeSystem(): remote managers");
-				return null;
-			}
+			acks.add(Patterns.ask(m, new AddRemoteManagersRequestMsg(managers), BOOTSTRAP_TIMEOUT_MS));
 		}
-		
-		// Return list of users
-
-		return new SystemActors(managers, users);
+		return acks;
+	}
+	
+	/**
+	 * @param nodes		List of node specs
+	 * @param config	System-wide settings of the simulation
+	 * @return			Number of logger shards makeSystem creates for the nodes, to be
+	 * 					collected by the main logger
+	 */
+	public static int logShardCount(ArrayList<NodeSpecification> nodes, SimulationConfig config) {
+		return config.isShardedLog() ? nodes.size() : 0;
+	}
+	
+	/**
+	 * Wait for every acknowledgement.  On the thread of a virtual clock nothing else could
+	 * run to send them, so there the wait is skipped: each manager's mailbox already holds
+	 * the requests ahead of anything its users will send.
+	 * 
+	 * @param acks		Acknowledgements to wait for
+	 * @param awaitDelay	How long to wait
+	 * @param context	Where the actors were installed
+	 * @param stage		Stage of set-up, for the error message
+	 * @return			False if the acknowledgements did not all arrive
+	 */
+	private static boolean awaitAll(ArrayList<Future<Object>> acks, Duration awaitDelay, ActorRefFactory context, String stage) {
+		if (SimulationClock.current().isVirtual()) {
+			return true;
+		}
+		try {
+			Await.result(Futures.sequence(acks, context.dispatcher()), awaitDelay);
+		}
+		catch (Exception e) {
+			System.out.println(e);
+			System.out.println("Error in makeSystem(): " + stage);
+			return false;
+		}
+		return true;
 	}
 
 
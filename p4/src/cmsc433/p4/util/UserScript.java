@@ -7,6 +7,7 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 
 import cmsc433.p4.enums.AccessRequestType;
@@ -26,7 +27,9 @@ import cmsc433.p4.enums.ManagementRequestType;
  */
 public class UserScript {
 	
-	private ArrayList<ArrayList<Object>> script;  // List of steps
+	private List<ArrayList<Object>> script;  // List of steps, or null for a script streamed from a file
+	private int start;						// Index in script of the first step
+	private String filename;				// File a streamed script is read from
 	// TODO Add sleep step. 
 	
 	
@@ -47,12 +50,30 @@ public class UserScript {
 	}
 	
 	/**
-	 * Return list of steps in script.
+	 * Create script of the steps of a list from the given index on.  List is not copied.
+	 * 
+	 * @param script	List of steps
+	 * @param start		Index of the first step
+	 */
+	private UserScript(List<ArrayList<Object>> script, int start) {
+		this.script = script;
+		this.start = start;
+	}
+	
+	/**
+	 * Return list of steps in script.  A streamed script is read in full.
 	 * 
 	 * @return	List of steps
 	 */
-	private ArrayList<ArrayList<Object>> getScript() {
-		return script;
+	private List<ArrayList<Object>> getScript() {
+		if (filename != null) {
+			try {
+				return fromFile(filename).getScript();
+			} catch (FileNotFoundException e) {
+				throw new IllegalStateException("Script file " + filename + " is gone", e);
+			}
+		}
+		return script.subList(start, script.size());
 	}
 	
 	/**
@@ -103,7 +124,17 @@ public class UserScript {
 	 * @return	Boolean indicating if script is finished
 	 */
 	public boolean isDone() {
-		return script.isEmpty();
+		if (filename != null) {
+			Cursor cursor = cursor();
+			try {
+				boolean done = cursor.isDone();
+				cursor.close();
+				return done;
+			} catch (IOException e) {
+				throw new IllegalStateException("Cannot read script file " + filename, e);
+			}
+		}
+		return start >= script.size();
 	}
 	
 	/**
@@ -113,25 +144,138 @@ public class UserScript {
 	 * @throws Exception	Thrown if script has no steps
 	 */
 	public ArrayList<Object> firstStep () throws Exception {
+		if (filename != null) {
+			Cursor cursor = cursor();
+			try {
+				return cursor.nextStep();
+			} finally {
+				cursor.close();
+			}
+		}
 		if (isDone()) {
 			throw new Exception ("Empty script");
 		}
 		else {
-			return ((ArrayList<Object>) script.get(0).clone());
+			return ((ArrayList<Object>) script.get(start).clone());
 		}
 	}
 	
 	/**
-	 * Returns script minus first step, if script is non-empty.
+	 * Returns script minus first step, if script is non-empty.  The steps are shared,
+	 * not copied; scripts being run should rather be walked with a cursor.
+	 * 
 	 * @return	Rest of script, minus first step
 	 * @throws Exception	Thrown is script has no steps
 	 */
 	public UserScript rest() throws Exception {
+		if (filename != null) {
+			return fromFile(filename).rest();
+		}
 		if (isDone()) {
 			throw new Exception ("Empty script");
 		}
 		else {			
-			return new UserScript (new ArrayList<ArrayList<Object>> (script.subList(1, script.size())));
+			return new UserScript (script, start + 1);
+		}
+	}
+	
+	/**
+	 * Return a cursor at the first step of the script.  Each cursor walks the script
+	 * on its own, so one script can be run by many users.
+	 * 
+	 * @return	New cursor
+	 */
+	public Cursor cursor() {
+		if (filename != null) {
+			return new Cursor(filename);
+		}
+		return new Cursor(script, start);
+	}
+	
+	/**
+	 * Position in a script, handing out its steps in order, each once, at constant cost
+	 * per step.  A cursor over a streamed script keeps only the next step in memory and
+	 * opens the file when the first step is wanted; the file is closed at its end, or by
+	 * close() if the cursor is abandoned before then.
+	 */
+	public static class Cursor {
+		
+		private final List<ArrayList<Object>> steps;	// Steps of an in-memory script, or null
+		private int position;							// Index in steps of the next step
+		private final String filename;					// File of a streamed script, or null
+		private BufferedReader reader;					// Reader of the file, once opened and until its end
+		private boolean opened;							// Whether the file has been opened
+		private ArrayList<Object> next;					// Next step read from the file, if any
+		
+		private Cursor (List<ArrayList<Object>> steps, int position) {
+			this.steps = steps;
+			this.position = position;
+			this.filename = null;
+		}
+		
+		private Cursor (String filename) {
+			this.steps = null;
+			this.filename = filename;
+		}
+		
+		/**
+		 * @return	Whether every step has been handed out
+		 * @throws IOException	Thrown if a streamed script cannot be read
+		 */
+		public boolean isDone() throws IOException {
+			if (steps != null) {
+				return position >= steps.size();
+			}
+			if (!opened) {
+				reader = new BufferedReader(new FileReader(filename));
+				opened = true;
+			}
+			while (next == null && reader != null) {
+				String line = reader.readLine();
+				if (line == null) {
+					close();
+				} else {
+					next = parseLine(line);
+				}
+			}
+			return next == null;
+		}
+		
+		/**
+		 * Return the next step and move past it.  The step is the caller's to change.
+		 * 
+		 * @return	Next step
+		 * @throws Exception	Thrown if the script has no more steps, or cannot be read
+		 */
+		public ArrayList<Object> nextStep() throws Exception {
+			if (isDone()) {
+				throw new Exception ("Empty script");
+			}
+			if (steps != null) {
+				return new ArrayList<Object>(steps.get(position++));
+			}
+			ArrayList<Object> step = next;
+			next = null;
+			return step;
+		}
+		
+		/**
+		 * Release the file of a streamed script.  The cursor then has no more steps.
+		 * 
+		 * @throws IOException	Thrown if the file cannot be closed
+		 */
+		public void close() throws IOException {
+			if (steps != null) {
+				position = steps.size();
+			} else if (reader != null) {
+				BufferedReader r = reader;
+				reader = null;
+				next = null;
+				opened = true;
+				r.close();
+			} else {
+				opened = true;
+			}
 		}
 	}
 	
@@ -139,10 +283,16 @@ public class UserScript {
 	 * 
 	 * @param script A string representation of the script, in the form:<br>
 	 * e = (Write/Read)-(Request-n/Request-b/Release) (Resource Name)<br>
+	 *   = (Write/Read)-(Request-n/Request-b):(Lease) (Resource Name)<br>
+	 *   = (Write/Read)-Renew:(Lease) (Resource Name)<br>
 	 *   = (Enable/Disable) (Resource Name)<br>
 	 *   = Sleep (Duration)<br>
+	 *   = r &amp; r<br>
 	 *   = e | e<br>
-	 * Where the entire script is a series of one or more e's on different lines    
+	 * Where r is a (Write/Read)-(Request-n/Request-b) statement; requests joined by &amp; form
+	 * an AccessRequestBatch that is granted all-or-nothing.  A lease (in milliseconds) makes the
+	 * manager revoke the grant when it runs out unless the holder renews it first.
+	 * The entire script is a series of one or more e's on different lines    
 	 * @return A UserScript object representing the script
 	 */
 	public static UserScript fromString (String script) {
@@ -150,53 +300,101 @@ public class UserScript {
 		
 		String[] lines = script.split("(\r|\n)+");
 		for (String line : lines) {
-			if (line.isEmpty()) 
-				continue;
-			
-			ArrayList<Object> thisLine = new ArrayList<Object> ();
+			ArrayList<Object> thisLine = parseLine(line);
+			if (thisLine != null)
+				result.add(thisLine);
+		}
+		return new UserScript(result);
+	}
+	
+	/**
+	 * Parse one line of a script into a step.
+	 * 
+	 * @param line	Text of the line
+	 * @return		Step described by the line, or null if the line is empty
+	 */
+	private static ArrayList<Object> parseLine (String line) {
+		if (line.isEmpty()) 
+			return null;
+		
+		ArrayList<Object> thisLine = new ArrayList<Object> ();
+		
+		String[] statements = line.trim().split("\\|");
+		for (String statement : statements) {
 			
-			String[] statements = line.trim().split("\\|");
-			for (String statement : statements) {				
-				
-				String[] parts = statement.trim().split("\\s");
-				
-				if (parts.length < 2) 
-					throw new IllegalArgumentException("Script statement: " + statement + " did not have enough arguments\n\ton line: " + line);
-				
-				String command = parts[0];
-				String resource_name = parts[parts.length - 1];
-				
-				for (int i = 1; i < parts.length - 1; i++)
-					if (!parts[i].isEmpty())
-						throw new IllegalArgumentException("Script statement: " + statement + " had too many arguments\n\ton line: " + line);
-				
-				Object action;
-				if (command.equalsIgnoreCase("write-request-n")) {
-					action = new AccessRequest(resource_name, AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING); 
-				} else if (command.equalsIgnoreCase("write-request-b")) {
-					action = new AccessRequest(resource_name, AccessRequestType.EXCLUSIVE_WRITE_BLOCKING);
-				} else if (command.equalsIgnoreCase("read-request-n")) {
-					action = new AccessRequest(resource_name, AccessRequestType.CONCURRENT_READ_NONBLOCKING);
-				} else if (command.equalsIgnoreCase("read-request-b")) {
-					action = new AccessRequest(resource_name, AccessRequestType.CONCURRENT_READ_BLOCKING);
-				} else if (command.equalsIgnoreCase("write-release")) {
-					action = new AccessRelease(resource_name, AccessType.EXCLUSIVE_WRITE);
-				} else if (command.equalsIgnoreCase("read-release")) {
-					action = new AccessRelease(resource_name, AccessType.CONCURRENT_READ);
-				} else if (command.equalsIgnoreCase("enable")) {
-					action = new ManagementRequest(resource_name, ManagementRequestType.ENABLE);
-				} else if (command.equalsIgnoreCase("disable")) {
-					action = new ManagementRequest(resource_name, ManagementRequestType.DISABLE);
-				} else if (command.equalsIgnoreCase("sleep")) { 
-					action = new SleepStep (Long.parseLong(resource_name));
-				} else {
-					throw new IllegalArgumentException("Illegal command: " + command + "\n\ton the line: " + line);
+			if (statement.contains("&")) {
+				ArrayList<AccessRequest> batch = new ArrayList<AccessRequest> ();
+				for (String part : statement.split("&")) {
+					Object action = parseStatement(part, line);
+					if (!(action instanceof AccessRequest))
+						throw new IllegalArgumentException("Script statement: " + part + " cannot be part of an atomic request\n\ton line: " + line);
+					batch.add((AccessRequest)action);
 				}
-				thisLine.add(action);
+				thisLine.add(new AccessRequestBatch(batch));
+			} else {
+				thisLine.add(parseStatement(statement, line));
 			}
-			result.add(thisLine);
 		}
-		return new UserScript(result);
+		return thisLine;
+	}
+	
+	/**
+	 * Parse a single statement of a script line.
+	 * 
+	 * @param statement	Text of the statement
+	 * @param line		Line containing the statement, for error messages
+	 * @return			Request, release or sleep step described by the statement
+	 */
+	private static Object parseStatement (String statement, String line) {
+		String[] parts = statement.trim().split("\\s");
+		
+		if (parts.length < 2) 
+			throw new IllegalArgumentException("Script statement: " + statement + " did not have enough arguments\n\ton line: " + line);
+		
+		String command = parts[0];
+		String resource_name = parts[parts.length - 1];
+		
+		for (int i = 1; i < parts.length - 1; i++)
+			if (!parts[i].isEmpty())
+				throw new IllegalArgumentException("Script statement: " + statement + " had too many arguments\n\ton line: " + line);
+		
+		// Requests and renewals may carry a lease duration, as in write-request-b:500
+		long lease = 0;
+		int colon = command.indexOf(':');
+		if (colon >= 0) {
+			lease = Long.parseLong(command.substring(colon + 1));
+			command = command.substring(0, colon);
+			if (lease <= 0 || !(command.toLowerCase().contains("-request-") || command.toLowerCase().endsWith("-renew")))
+				throw new IllegalArgumentException("Script statement: " + statement + " has an invalid lease\n\ton line: " + line);
+		}
+		
+		Object action;
+		if (command.equalsIgnoreCase("write-request-n")) {
+			action = new AccessRequest(resource_name, AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING, lease); 
+		} else if (command.equalsIgnoreCase("write-request-b")) {
+			action = new AccessRequest(resource_name, AccessRequestType.EXCLUSIVE_WRITE_BLOCKING, lease);
+		} else if (command.equalsIgnoreCase("read-request-n")) {
+			action = new AccessRequest(resource_name, AccessRequestType.CONCURRENT_READ_NONBLOCKING, lease);
+		} else if (command.equalsIgnoreCase("read-request-b")) {
+			action = new AccessRequest(resource_name, AccessRequestType.CONCURRENT_READ_BLOCKING, lease);
+		} else if (command.equalsIgnoreCase("write-release")) {
+			action = new AccessRelease(resource_name, AccessType.EXCLUSIVE_WRITE);
+		} else if (command.equalsIgnoreCase("read-release")) {
+			action = new AccessRelease(resource_name, AccessType.CONCURRENT_READ);
+		} else if (command.equalsIgnoreCase("write-renew") && lease > 0) {
+			action = new LeaseRenewal(resource_name, AccessType.EXCLUSIVE_WRITE, lease);
+		} else if (command.equalsIgnoreCase("read-renew") && lease > 0) {
+			action = new LeaseRenewal(resource_name, AccessType.CONCURRENT_READ, lease);
+		} else if (command.equalsIgnoreCase("enable")) {
+			action = new ManagementRequest(resource_name, ManagementRequestType.ENABLE);
+		} else if (command.equalsIgnoreCase("disable")) {
+			action = new ManagementRequest(resource_name, ManagementRequestType.DISABLE);
+		} else if (command.equalsIgnoreCase("sleep")) { 
+			action = new SleepStep (Long.parseLong(resource_name));
+		} else {
+			throw new IllegalArgumentException("Illegal command: " + command + "\n\ton the line: " + line);
+		}
+		return action;
 	}
 	
 	/**
@@ -266,4 +464,21 @@ public class UserScript {
 		
 		return fromString(str.toString());	*/
 	}
+	
+	/**
+	 * Creates a UserScript that reads the specified file (using the same grammar as the fromString
+	 * method) a line at a time as it is run, rather than all at once, so that a script of any length
+	 * costs the same memory.  Each cursor reads the file afresh, so the file must not change while
+	 * the script is in use; errors in a line are only found when the line is reached.
+	 * @param filename - The name of the file to read the script from
+	 * @return A UserScript streaming the commands specified by the script in the file.
+	 * @throws FileNotFoundException
+	 */
+	public static UserScript streamFile (String filename) throws FileNotFoundException {
+		if (!new File(filename).isFile())
+			throw new FileNotFoundException(filename);
+		UserScript result = new UserScript(null, 0);
+		result.filename = filename;
+		return result;
+	}
 }
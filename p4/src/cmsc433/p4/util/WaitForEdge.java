@@ -0,0 +1,45 @@
+package cmsc433.p4.util;
+
+import akka.actor.ActorRef;
+
+/**
+ * Edge of the wait-for graph: a user blocked on a resource is waiting for another
+ * user, either a holder of the resource or the request queued just ahead of it.
+ * Users are identified by their IDs.
+ * 
+ */
+public class WaitForEdge {
+	
+	private final int waiter;			// User whose blocked request is waiting
+	private final int holder;			// User it is waiting for
+	private final String resourceName;	// Resource the blocked request is for
+	private final ActorRef manager;		// Manager holding the blocked request
+	
+	public WaitForEdge (int waiter, int holder, String resourceName, ActorRef manager) {
+		this.waiter = waiter;
+		this.holder = holder;
+		this.resourceName = resourceName;
+		this.manager = manager;
+	}
+
+	public int getWaiter() {
+		return waiter;
+	}
+
+	public int getHolder() {
+		return holder;
+	}
+
+	public String getResourceName() {
+		return resourceName;
+	}
+
+	public ActorRef getManager() {
+		return manager;
+	}
+	
+	@Override
+	public String toString () {
+		return "user " + waiter + " waits for user " + holder + " on " + resourceName;
+	}
+}
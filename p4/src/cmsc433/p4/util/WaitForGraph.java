@@ -0,0 +1,134 @@
+package cmsc433.p4.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Wait-for graph assembled from managers' reports, used to find deadlocks.
+ * 
+ * Nodes are users and edges are WaitForEdges.  A user blocked on a step waits for
+ * every request in the step, so any cycle is a deadlock.
+ * 
+ */
+public class WaitForGraph {
+	
+	private static final int WHITE = 0;		// Not yet visited
+	private static final int GRAY = 1;		// On the current search path
+	private static final int BLACK = 2;		// Fully explored
+	
+	private final HashMap<Integer, ArrayList<WaitForEdge>> out = new HashMap<Integer, ArrayList<WaitForEdge>>();
+	
+	/**
+	 * Add edges to the graph.
+	 * 
+	 * @param edges	Edges to add
+	 */
+	public void addEdges(Collection<WaitForEdge> edges) {
+		for (WaitForEdge edge : edges) {
+			ArrayList<WaitForEdge> list = out.get(edge.getWaiter());
+			if (list == null) {
+				list = new ArrayList<WaitForEdge>();
+				out.put(edge.getWaiter(), list);
+			}
+			list.add(edge);
+		}
+	}
+	
+	/**
+	 * Find cycles and pick one blocked request in each to deny.  The victim of a cycle is
+	 * the edge with the greatest waiter (then resource name), so the same cycle always
+	 * yields the same victim.  Cycles overlapping one already broken may be left for a
+	 * later search.
+	 * 
+	 * @return	One edge per cycle found, identifying the blocked request to deny
+	 */
+	public ArrayList<WaitForEdge> findVictims() {
+		ArrayList<WaitForEdge> victims = new ArrayList<WaitForEdge>();
+		HashSet<String> broken = new HashSet<String>();
+		HashMap<Integer, Integer> color = new HashMap<Integer, Integer>();
+		
+		// Iterative depth-first search; path[i] is the edge taken out of nodes[i].
+		ArrayList<Integer> nodes = new ArrayList<Integer>();
+		ArrayList<Integer> next = new ArrayList<Integer>();
+		ArrayList<WaitForEdge> path = new ArrayList<WaitForEdge>();
+		
+		for (Integer root : out.keySet()) {
+			if (colorOf(color, root) != WHITE) {
+				continue;
+			}
+			color.put(root, GRAY);
+			nodes.add(root);
+			next.add(0);
+			
+			while (!nodes.isEmpty()) {
+				int top = nodes.size() - 1;
+				ArrayList<WaitForEdge> edges = out.get(nodes.get(top));
+				int i = next.get(top);
+				
+				if (edges == null || i >= edges.size()) {
+					color.put(nodes.get(top), BLACK);
+					nodes.remove(top);
+					next.remove(top);
+					if (top > 0) {
+						path.remove(top - 1);
+					}
+					continue;
+				}
+				next.set(top, i + 1);
+				
+				WaitForEdge edge = edges.get(i);
+				if (broken.contains(key(edge))) {
+					continue;
+				}
+				Integer target = edge.getHolder();
+				int targetColor = colorOf(color, target);
+				
+				if (targetColor == WHITE) {
+					color.put(target, GRAY);
+					path.add(edge);
+					nodes.add(target);
+					next.add(0);
+				} else if (targetColor == GRAY) {
+					WaitForEdge victim = edge;
+					for (int j = nodes.lastIndexOf(target); j < path.size(); j++) {
+						if (isWorseVictim(path.get(j), victim)) {
+							victim = path.get(j);
+						}
+					}
+					boolean alreadyBroken = false;
+					for (int j = nodes.lastIndexOf(target); j < path.size(); j++) {
+						alreadyBroken |= broken.contains(key(path.get(j)));
+					}
+					if (!alreadyBroken) {
+						broken.add(key(victim));
+						victims.add(victim);
+					}
+				}
+			}
+		}
+		return victims;
+	}
+	
+	/**
+	 * @param edge	Edge of the graph
+	 * @return		Key identifying the blocked request the edge comes from
+	 */
+	public static String key(WaitForEdge edge) {
+		return edge.getWaiter() + " " + edge.getResourceName();
+	}
+	
+	private static int colorOf(HashMap<Integer, Integer> color, Integer node) {
+		Integer c = color.get(node);
+		return c == null ? WHITE : c;
+	}
+	
+	private static boolean isWorseVictim(WaitForEdge candidate, WaitForEdge current) {
+		int cmp = candidate.getWaiter() - current.getWaiter();
+		if (cmp == 0) {
+			cmp = candidate.getResourceName().compareTo(current.getResourceName());
+		}
+		return cmp > 0;
+	}
+}
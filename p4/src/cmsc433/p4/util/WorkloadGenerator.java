@@ -0,0 +1,314 @@
+package cmsc433.p4.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.enums.AccessType;
+import cmsc433.p4.enums.Distribution;
+import cmsc433.p4.enums.FairnessPolicy;
+import cmsc433.p4.enums.Popularity;
+
+/**
+ * Builds synthetic simulations: node specifications whose users run generated scripts.
+ *
+ * Resources are named W_0, W_1, ... in order of popularity rank, and resource i lives
+ * on node i mod nodes, so that the popular resources are spread over the nodes.  User
+ * u runs on node u mod nodes.  Every operation of a user requests one resource, holds
+ * it for a while, releases it and thinks for a while before the next operation; no
+ * user ever holds two resources, so generated workloads cannot deadlock.  A request
+ * is for a resource of the user's own node with probability localRatio, and otherwise
+ * for a resource of another node; within either set resources are picked by their
+ * global popularity.
+ *
+ * Everything random comes from one generator seeded with the seed, drawn in a fixed
+ * order, so the same settings always give the same simulation.  Settings are changed
+ * through setters before calling generate().
+ *
+ */
+public class WorkloadGenerator {
+
+	private long seed = 433L;
+	private int nodes = 4;
+	private int resources = 1000;
+	private int users = 100;					// Over all nodes
+	private int operationsPerUser = 10;
+	private Popularity popularity = Popularity.ZIPF;
+	private double zipfExponent = 1.0;
+	private double readRatio = 0.8;				// Chance a request is for reading
+	private double blockingRatio = 0.5;			// Chance a request blocks rather than being denied when busy
+	private double localRatio = 0.8;			// Chance a request is for a resource of the user's node
+	private Distribution holdTime = Distribution.EXPONENTIAL;
+	private long meanHoldMs = 5;
+	private Distribution thinkTime = Distribution.EXPONENTIAL;
+	private long meanThinkMs = 10;
+	private FairnessPolicy fairnessPolicy = FairnessPolicy.READER_PREFERRING;
+
+	/**
+	 * @param i	Popularity rank of a resource, from 0
+	 * @return	Name of the resource
+	 */
+	public static String resourceName(int i) {
+		return "W_" + i;
+	}
+
+	/**
+	 * Generate the simulation.
+	 *
+	 * @return	One specification per node
+	 */
+	public ArrayList<NodeSpecification> generate() {
+		Random random = new Random(seed);
+
+		// Popularity of each resource, by rank.
+		double[] weights = new double[resources];
+		for (int i = 0; i < resources; i++) {
+			weights[i] = popularity == Popularity.ZIPF ? 1.0 / Math.pow(i + 1, zipfExponent) : 1.0;
+		}
+
+		ArrayList<ArrayList<Resource>> nodeResources = new ArrayList<ArrayList<Resource>>();
+		for (int n = 0; n < nodes; n++) {
+			nodeResources.add(new ArrayList<Resource>());
+		}
+		for (int i = 0; i < resources; i++) {
+			nodeResources.get(i % nodes).add(new Resource(resourceName(i)));
+		}
+
+		ArrayList<NodeSpecification> specs = new ArrayList<NodeSpecification>();
+		ArrayList<ArrayList<UserScript>> nodeScripts = new ArrayList<ArrayList<UserScript>>();
+		Picker[] local = new Picker[nodes];
+		Picker[] remote = new Picker[nodes];
+		for (int n = 0; n < nodes; n++) {
+			local[n] = new Picker(weights, n, nodes, true);
+			remote[n] = new Picker(weights, n, nodes, false);
+			nodeScripts.add(new ArrayList<UserScript>());
+		}
+
+		for (int u = 0; u < users; u++) {
+			int n = u % nodes;
+			nodeScripts.get(n).add(makeScript(random, local[n], remote[n]));
+		}
+		for (int n = 0; n < nodes; n++) {
+			specs.add(new NodeSpecification(nodeResources.get(n), nodeScripts.get(n), fairnessPolicy));
+		}
+		return specs;
+	}
+
+	// Script of one user: request, hold, release and think, operationsPerUser times.
+	private UserScript makeScript(Random random, Picker local, Picker remote) {
+		ArrayList<Object> steps = new ArrayList<Object>();
+		for (int op = 0; op < operationsPerUser; op++) {
+			boolean isLocal = remote.isEmpty() || (!local.isEmpty() && random.nextDouble() < localRatio);
+			String name = resourceName((isLocal ? local : remote).pick(random));
+			boolean read = random.nextDouble() < readRatio;
+			boolean blocking = random.nextDouble() < blockingRatio;
+			AccessRequestType type = read
+					? (blocking ? AccessRequestType.CONCURRENT_READ_BLOCKING : AccessRequestType.CONCURRENT_READ_NONBLOCKING)
+					: (blocking ? AccessRequestType.EXCLUSIVE_WRITE_BLOCKING : AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING);
+
+			steps.add(new AccessRequest(name, type));
+			long hold = duration(random, holdTime, meanHoldMs);
+			if (hold > 0) {
+				steps.add(new SleepStep(hold));
+			}
+			steps.add(new AccessRelease(name, read ? AccessType.CONCURRENT_READ : AccessType.EXCLUSIVE_WRITE));
+			long think = duration(random, thinkTime, meanThinkMs);
+			if (think > 0 && op < operationsPerUser - 1) {
+				steps.add(new SleepStep(think));
+			}
+		}
+		return UserScript.makeSequential(steps);
+	}
+
+	private static long duration(Random random, Distribution distribution, long mean) {
+		if (distribution == Distribution.UNIFORM) {
+			return Math.round(random.nextDouble() * 2 * mean);
+		} else if (distribution == Distribution.EXPONENTIAL) {
+			return Math.round(-mean * Math.log(1.0 - random.nextDouble()));
+		}
+		return mean;
+	}
+
+	/**
+	 * Picks resources of one node, or of every node but one, in proportion to their
+	 * popularity.
+	 */
+	private static class Picker {
+		private final int[] ranks;			// Ranks of the resources to pick from
+		private final double[] cumulative;	// Running total of their weights
+
+		// Resources of node n (mine) or of every other node (!mine).
+		private Picker(double[] weights, int n, int nodes, boolean mine) {
+			int count = 0;
+			for (int i = 0; i < weights.length; i++) {
+				if ((i % nodes == n) == mine) {
+					count++;
+				}
+			}
+			ranks = new int[count];
+			cumulative = new double[count];
+			double total = 0;
+			int j = 0;
+			for (int i = 0; i < weights.length; i++) {
+				if ((i % nodes == n) == mine) {
+					total += weights[i];
+					ranks[j] = i;
+					cumulative[j] = total;
+					j++;
+				}
+			}
+		}
+
+		private boolean isEmpty() {
+			return ranks.length == 0;
+		}
+
+		private int pick(Random random) {
+			double x = random.nextDouble() * cumulative[cumulative.length - 1];
+			int j = Arrays.binarySearch(cumulative, x);
+			if (j < 0) {
+				j = -j - 1;
+			}
+			return ranks[Math.min(j, ranks.length - 1)];
+		}
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public int getNodes() {
+		return nodes;
+	}
+
+	public void setNodes(int nodes) {
+		this.nodes = nodes;
+	}
+
+	public int getResources() {
+		return resources;
+	}
+
+	public void setResources(int resources) {
+		this.resources = resources;
+	}
+
+	public int getUsers() {
+		return users;
+	}
+
+	/**
+	 * @param users		Number of users over all nodes
+	 */
+	public void setUsers(int users) {
+		this.users = users;
+	}
+
+	public int getOperationsPerUser() {
+		return operationsPerUser;
+	}
+
+	public void setOperationsPerUser(int operationsPerUser) {
+		this.operationsPerUser = operationsPerUser;
+	}
+
+	public Popularity getPopularity() {
+		return popularity;
+	}
+
+	public void setPopularity(Popularity popularity) {
+		this.popularity = popularity;
+	}
+
+	public double getZipfExponent() {
+		return zipfExponent;
+	}
+
+	/**
+	 * @param zipfExponent	Exponent s of Zipf popularity; larger is more skewed
+	 */
+	public void setZipfExponent(double zipfExponent) {
+		this.zipfExponent = zipfExponent;
+	}
+
+	public double getReadRatio() {
+		return readRatio;
+	}
+
+	/**
+	 * @param readRatio		Fraction of requests for reading rather than writing
+	 */
+	public void setReadRatio(double readRatio) {
+		this.readRatio = readRatio;
+	}
+
+	public double getBlockingRatio() {
+		return blockingRatio;
+	}
+
+	/**
+	 * @param blockingRatio	Fraction of requests that wait when the resource is busy,
+	 * 						rather than being denied
+	 */
+	public void setBlockingRatio(double blockingRatio) {
+		this.blockingRatio = blockingRatio;
+	}
+
+	public double getLocalRatio() {
+		return localRatio;
+	}
+
+	/**
+	 * @param localRatio	Fraction of requests for resources of the user's own node
+	 */
+	public void setLocalRatio(double localRatio) {
+		this.localRatio = localRatio;
+	}
+
+	public Distribution getHoldTime() {
+		return holdTime;
+	}
+
+	public long getMeanHoldMs() {
+		return meanHoldMs;
+	}
+
+	/**
+	 * @param holdTime		Distribution of how long a user sleeps between a request and its release
+	 * @param meanHoldMs	Its mean, in milliseconds
+	 */
+	public void setHoldTime(Distribution holdTime, long meanHoldMs) {
+		this.holdTime = holdTime;
+		this.meanHoldMs = meanHoldMs;
+	}
+
+	public Distribution getThinkTime() {
+		return thinkTime;
+	}
+
+	public long getMeanThinkMs() {
+		return meanThinkMs;
+	}
+
+	/**
+	 * @param thinkTime		Distribution of how long a user sleeps between a release and its next request
+	 * @param meanThinkMs	Its mean, in milliseconds
+	 */
+	public void setThinkTime(Distribution thinkTime, long meanThinkMs) {
+		this.thinkTime = thinkTime;
+		this.meanThinkMs = meanThinkMs;
+	}
+
+	public FairnessPolicy getFairnessPolicy() {
+		return fairnessPolicy;
+	}
+
+	public void setFairnessPolicy(FairnessPolicy fairnessPolicy) {
+		this.fairnessPolicy = fairnessPolicy;
+	}
+}